@@ -0,0 +1,54 @@
+package com.quantum.voting.bench;
+
+import com.quantum.voting.utils.AESUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Base64;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Template encryption and the two decryption paths a scan can take:
+ * Base64 JSON body and raw octet-stream body.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AesGcmBenchmark {
+
+    // 16384 is a 128x128 grayscale template from palm-capture-client
+    @Param({"4096", "16384", "65536"})
+    public int templateBytes;
+
+    private byte[] key;
+    private byte[] plain;
+    private String encryptedBase64;
+    private byte[] encrypted;
+
+    @Setup
+    public void setUp() throws Exception {
+        key = AESUtil.generateSessionKeyBytes();
+        plain = new byte[templateBytes];
+        new Random(42).nextBytes(plain);
+        encryptedBase64 = AESUtil.encryptGCM(plain, key);
+        encrypted = Base64.getDecoder().decode(encryptedBase64);
+    }
+
+    @Benchmark
+    public String encryptGCM() throws Exception {
+        return AESUtil.encryptGCM(plain, key);
+    }
+
+    @Benchmark
+    public byte[] decryptGCMBase64() throws Exception {
+        return AESUtil.decryptGCMBase64(encryptedBase64, key);
+    }
+
+    @Benchmark
+    public byte[] decryptGCMBinary() throws Exception {
+        return AESUtil.decryptGCM(encrypted, 0, encrypted.length, key);
+    }
+}
@@ -0,0 +1,38 @@
+package com.quantum.voting.bench;
+
+import com.quantum.voting.utils.AESUtil;
+import com.quantum.voting.utils.AuditHashUtil;
+import org.openjdk.jmh.annotations.*;
+
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The receipt hash computed once per vote, keyed and unkeyed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class AuditHashBenchmark {
+
+    private final UUID ballotId = UUID.randomUUID();
+    private final UUID candidateId = UUID.randomUUID();
+    private final String voterCode = "VOTER-000123";
+    private final LocalDateTime castAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+    private final byte[] sessionKey = AESUtil.generateSessionKeyBytes();
+
+    @Benchmark
+    public String generateAuditHash() throws Exception {
+        return AuditHashUtil.generate(ballotId, voterCode, candidateId, castAt, sessionKey);
+    }
+
+    @Benchmark
+    public String generateAuditHashWithoutKey() throws Exception {
+        return AuditHashUtil.generate(ballotId, voterCode, candidateId, castAt, null);
+    }
+}
@@ -0,0 +1,34 @@
+package com.quantum.voting.bench;
+
+import org.openjdk.jmh.Main;
+
+import java.io.File;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Entry point of benchmarks.jar: plain JMH, except results go to
+ * jmh-results/&lt;timestamp&gt;.json unless -rf/-rff are given, so every run leaves
+ * a file that can be diffed against the last one (e.g. with jmh.morethan.net).
+ * <pre>
+ * mvn -q -pl palmvein-voting-benchmarks -am package
+ * java -jar palmvein-voting-benchmarks/target/benchmarks.jar            # everything
+ * java -jar palmvein-voting-benchmarks/target/benchmarks.jar Similarity # one suite
+ * </pre>
+ */
+public class BenchmarkRunner {
+
+    public static void main(String[] args) throws Exception {
+        List<String> all = new ArrayList<>(Arrays.asList(args));
+        if (!all.contains("-rf") && !all.contains("-rff")) {
+            File dir = new File("jmh-results");
+            if (!dir.exists()) dir.mkdirs();
+            String stamp = LocalDateTime.now().format(DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss"));
+            all.addAll(0, List.of("-rf", "json", "-rff", new File(dir, stamp + ".json").getPath()));
+        }
+        Main.main(all.toArray(String[]::new));
+    }
+}
@@ -0,0 +1,51 @@
+package com.quantum.voting.bench;
+
+import com.quantum.voting.matching.ScalarTemplateMatcher;
+import com.quantum.voting.matching.TemplateMatcher;
+import com.quantum.voting.matching.VectorTemplateMatcher;
+import org.openjdk.jmh.annotations.*;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * One template comparison (what byteArraySimilarity used to be), scalar reference
+ * against the Vector API matcher. A 1:N identify is this times the index size.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+@State(Scope.Thread)
+public class SimilarityBenchmark {
+
+    @Param({"scalar", "vector"})
+    public String matcher;
+
+    // 16384 is a 128x128 grayscale template from palm-capture-client
+    @Param({"4096", "16384", "65536"})
+    public int templateBytes;
+
+    private TemplateMatcher templateMatcher;
+    private byte[] stored;
+    private byte[] scanned;
+
+    @Setup
+    public void setUp() {
+        templateMatcher = "vector".equals(matcher) ? new VectorTemplateMatcher() : new ScalarTemplateMatcher();
+        Random random = new Random(42);
+        stored = new byte[templateBytes];
+        scanned = new byte[templateBytes];
+        random.nextBytes(stored);
+        // a genuine rescan: the same palm with a little sensor noise
+        for (int i = 0; i < templateBytes; i++) {
+            scanned[i] = (byte) Math.max(0, Math.min(255, (stored[i] & 0xFF) + random.nextInt(17) - 8));
+        }
+    }
+
+    @Benchmark
+    public double similarity() {
+        return templateMatcher.similarity(stored, scanned);
+    }
+}
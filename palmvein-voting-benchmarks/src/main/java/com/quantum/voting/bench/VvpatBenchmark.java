@@ -0,0 +1,91 @@
+package com.quantum.voting.bench;
+
+import com.quantum.voting.entity.Ballot;
+import com.quantum.voting.entity.Candidate;
+import com.quantum.voting.entity.Election;
+import com.quantum.voting.entity.Voter;
+import com.quantum.voting.journal.VvpatArchive;
+import com.quantum.voting.service.VvpatService;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * One VVPAT receipt end to end: PDF layout, save and fsync, as a worker does it;
+ * then storing an already rendered receipt for a new ballot each time, as its own
+ * file versus appended to the segmented archive. The fsync dominates on most
+ * disks, so run it on the disk the vvpat folder lives on.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+@State(Scope.Thread)
+public class VvpatBenchmark {
+
+    private Ballot ballot;
+    private Path dir;
+    private byte[] pdf;
+    private VvpatArchive archive;
+
+    @Setup
+    public void setUp() throws IOException {
+        Voter voter = new Voter();
+        voter.setVoterId(UUID.randomUUID());
+        voter.setVoterCode("VOTER-000123");
+        voter.setName("Benchmark Voter");
+
+        Election election = new Election();
+        election.setElectionId(UUID.randomUUID());
+        election.setTitle("Municipal Election 2026");
+
+        Candidate candidate = new Candidate();
+        candidate.setCandidateId(UUID.randomUUID());
+        candidate.setLeaderName("Candidate A");
+        candidate.setPartyName("Party A");
+        candidate.setCity("Pune");
+
+        ballot = new Ballot();
+        ballot.setBallotId(UUID.randomUUID());
+        ballot.setVoter(voter);
+        ballot.setElection(election);
+        ballot.setCandidate(candidate);
+        ballot.setCastAt(LocalDateTime.now());
+
+        dir = Files.createTempDirectory("vvpat-bench");
+        pdf = VvpatService.renderVVPAT(ballot);
+        archive = new VvpatArchive(dir.resolve("archive"), 64L << 20);
+    }
+
+    @Benchmark
+    public String generateVVPAT() throws Exception {
+        return VvpatService.writeVVPAT(ballot.getBallotId(), VvpatService.renderVVPAT(ballot), dir.toFile());
+    }
+
+    @Benchmark
+    public String storeAsFile() throws IOException {
+        return VvpatService.writeVVPAT(UUID.randomUUID(), pdf, dir.resolve("files").toFile());
+    }
+
+    @Benchmark
+    public VvpatArchive.Location storeInArchive() throws IOException {
+        return archive.put(UUID.randomUUID(), pdf);
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        archive.close();
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+        }
+    }
+}
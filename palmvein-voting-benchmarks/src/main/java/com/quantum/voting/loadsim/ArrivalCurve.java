@@ -0,0 +1,64 @@
+package com.quantum.voting.loadsim;
+
+import java.util.Arrays;
+
+/**
+ * Relative voter arrival rate over a polling day (07:00-19:00), as equal-width
+ * slots scaled so the busiest slot is 1.0. The simulator compresses the day
+ * into its run duration and multiplies by the peak rate.
+ */
+final class ArrivalCurve {
+
+    private static final int DAY_START_MINUTES = 7 * 60;
+    private static final int DAY_MINUTES = 12 * 60;
+
+    // queue at opening, peak mid-morning, lunchtime lull, smaller after-work bump
+    private static final double[] MORNING_SURGE = {0.55, 1.0, 0.9, 0.7, 0.55, 0.45, 0.4, 0.45, 0.5, 0.6, 0.7, 0.5};
+
+    private final String name;
+    private final double[] weights;
+
+    private ArrivalCurve(String name, double[] weights) {
+        double max = Arrays.stream(weights).max().orElse(0);
+        if (weights.length == 0 || max <= 0) throw new IllegalArgumentException("Arrival curve needs a positive slot");
+        this.name = name;
+        this.weights = Arrays.stream(weights).map(w -> Math.max(0, w) / max).toArray();
+    }
+
+    /** "morning-surge", "flat", or comma-separated relative rates such as "1,3,2". */
+    static ArrivalCurve parse(String spec) {
+        if (spec == null || spec.isBlank() || spec.equals("morning-surge")) {
+            return new ArrivalCurve("morning-surge", MORNING_SURGE);
+        }
+        if (spec.equals("flat")) return new ArrivalCurve("flat", new double[]{1});
+        double[] weights = Arrays.stream(spec.split(",")).mapToDouble(s -> Double.parseDouble(s.trim())).toArray();
+        return new ArrivalCurve(spec, weights);
+    }
+
+    /** Relative rate in [0, 1] at a point of the day given as a fraction in [0, 1). */
+    double rate(double fraction) {
+        return weights[slot(fraction)];
+    }
+
+    int slot(double fraction) {
+        return Math.min(weights.length - 1, Math.max(0, (int) (fraction * weights.length)));
+    }
+
+    int slots() {
+        return weights.length;
+    }
+
+    double mean() {
+        return Arrays.stream(weights).average().orElse(0);
+    }
+
+    /** Wall-clock start of a slot on the polling day, e.g. "09:00". */
+    String label(int slot) {
+        int minutes = DAY_START_MINUTES + slot * DAY_MINUTES / weights.length;
+        return String.format("%02d:%02d", minutes / 60, minutes % 60);
+    }
+
+    String name() {
+        return name;
+    }
+}
@@ -0,0 +1,467 @@
+package com.quantum.voting.loadsim;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quantum.voting.PalmveinVotingApplication;
+import com.quantum.voting.utils.AESUtil;
+import io.zonky.test.db.postgres.embedded.EmbeddedPostgres;
+import org.springframework.boot.SpringApplication;
+import org.springframework.boot.web.context.WebServerApplicationContext;
+import org.springframework.context.ConfigurableApplicationContext;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.stream.IntStream;
+import java.util.stream.Stream;
+
+/**
+ * Polling-day rehearsal. Boots the real application on a random port against an
+ * embedded PostgreSQL (or --jdbc-url), enrols synthetic voters with encrypted
+ * palm templates through the admin API, then replays a compressed polling day:
+ * voters arrive as a Poisson process shaped by the arrival curve, wait for a free
+ * kiosk, and run login, binary scan and vote over HTTP like the kiosk client.
+ * <p>
+ * Latencies are taken from the scheduled arrival, so a server falling behind
+ * shows up as queue wait instead of being hidden. Prints p50/p99 and throughput
+ * per endpoint plus queue wait per hour of the day, and writes the same as JSON.
+ * <pre>
+ * mvn -q install -DskipTests
+ * mvn -q -pl palmvein-voting-benchmarks exec:exec \
+ *     -Dsim.args="--voters=20000 --duration=300 --peak-rate=150 --kiosks=400"
+ * </pre>
+ * Options (all --name=value): voters, duration (seconds for the whole day),
+ * peak-rate (arrivals/s at the busiest hour), curve (morning-surge, flat or
+ * "1,3,2"), kiosks, think-ms, template-bytes, candidates, seed, report,
+ * jdbc-url, db-user, db-password, db-pool, threads (platform or virtual: the
+ * server's request threads) and compare-threads=true, which runs the same day
+ * once per thread mode, each against a fresh database, and prints them side by side.
+ */
+public class ElectionDaySimulator {
+
+    private static final Set<String> OPTIONS = Set.of("voters", "duration", "peak-rate", "curve", "kiosks",
+            "think-ms", "template-bytes", "candidates", "seed", "report", "jdbc-url", "db-user", "db-password", "db-pool",
+            "threads", "compare-threads");
+    private static final String[] ENDPOINTS = {"login", "scan", "vote"};
+    private static final int IMPORT_CHUNK = 5_000;
+    // 2 x 16 KB Base64 per voter keeps a batch well under the 20 MB post limit
+    private static final int ENROLL_CHUNK = 200;
+    private static final int LEFT = 0;
+    private static final int RIGHT = 1;
+
+    private final Map<String, String> options;
+    private final int voters;
+    private final double durationSeconds;
+    private final double peakRate;
+    private final ArrivalCurve curve;
+    private final int kiosks;
+    private final long thinkMillis;
+    private final int templateBytes;
+    private final int candidates;
+    private final long seed;
+
+    private final ObjectMapper json = new ObjectMapper();
+    private final HttpClient http = HttpClient.newBuilder()
+            .version(HttpClient.Version.HTTP_1_1)
+            .connectTimeout(Duration.ofSeconds(10))
+            .build();
+
+    private final Map<String, LatencyRecorder> endpoints = new LinkedHashMap<>();
+    private final LatencyRecorder queueWait = new LatencyRecorder();
+    private final LatencyRecorder sessions = new LatencyRecorder();
+    private final LatencyRecorder[] slotQueueWait;
+    private final LatencyRecorder[] slotSessions;
+    private final long[] slotArrivals;
+    private final LongAdder failedSessions = new LongAdder();
+
+    private String baseUrl;
+    private byte[][] keys;
+    private UUID electionId;
+    private final List<UUID> candidateIds = new ArrayList<>();
+    private int arrived;
+    private double elapsedSeconds;
+    private double seedSeconds;
+
+    ElectionDaySimulator(Map<String, String> options) {
+        this.options = options;
+        this.voters = Integer.parseInt(options.getOrDefault("voters", "5000"));
+        this.durationSeconds = Double.parseDouble(options.getOrDefault("duration", "120"));
+        this.peakRate = Double.parseDouble(options.getOrDefault("peak-rate", "50"));
+        this.curve = ArrivalCurve.parse(options.get("curve"));
+        this.kiosks = Integer.parseInt(options.getOrDefault("kiosks", "200"));
+        this.thinkMillis = Long.parseLong(options.getOrDefault("think-ms", "0"));
+        this.templateBytes = Integer.parseInt(options.getOrDefault("template-bytes", "16384"));
+        this.candidates = Integer.parseInt(options.getOrDefault("candidates", "5"));
+        this.seed = Long.parseLong(options.getOrDefault("seed", "42"));
+
+        for (String endpoint : ENDPOINTS) endpoints.put(endpoint, new LatencyRecorder());
+        slotQueueWait = new LatencyRecorder[curve.slots()];
+        slotSessions = new LatencyRecorder[curve.slots()];
+        for (int i = 0; i < curve.slots(); i++) {
+            slotQueueWait[i] = new LatencyRecorder();
+            slotSessions[i] = new LatencyRecorder();
+        }
+        slotArrivals = new long[curve.slots()];
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = new LinkedHashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            String name = arg.startsWith("--") && eq > 2 ? arg.substring(2, eq) : null;
+            if (name == null || !OPTIONS.contains(name)) {
+                System.err.println("Unknown option " + arg + "; expected --name=value with name in " + OPTIONS);
+                System.exit(2);
+            }
+            options.put(name, arg.substring(eq + 1));
+        }
+        if (Boolean.parseBoolean(options.remove("compare-threads"))) {
+            compareThreads(options);
+        } else {
+            new ElectionDaySimulator(options).run();
+        }
+        System.exit(0);
+    }
+
+    /**
+     * Same seed, same arrivals, once on platform and once on virtual request threads.
+     */
+    static void compareThreads(Map<String, String> options) throws Exception {
+        String report = options.getOrDefault("report", "loadsim-report.json").replaceFirst("\\.json$", "");
+        Map<String, Map<String, LatencyRecorder.Summary>> byMode = new LinkedHashMap<>();
+        for (String mode : List.of("platform", "virtual")) {
+            Map<String, String> run = new LinkedHashMap<>(options);
+            run.put("threads", mode);
+            run.put("report", report + "-" + mode + ".json");
+            System.out.println("\n=== " + mode + " threads ===");
+            byMode.put(mode, new ElectionDaySimulator(run).run());
+        }
+
+        System.out.printf("%n%-11s %-9s %9s %9s %9s %9s %7s%n", "", "threads", "per sec", "p50 ms", "p99 ms", "max ms", "errors");
+        for (String name : byMode.get("platform").keySet()) {
+            for (Map.Entry<String, Map<String, LatencyRecorder.Summary>> mode : byMode.entrySet()) {
+                LatencyRecorder.Summary s = mode.getValue().get(name);
+                System.out.printf("%-11s %-9s %9.1f %9.1f %9.1f %9.1f %7d%n",
+                        name, mode.getKey(), s.perSecond(), s.p50Ms(), s.p99Ms(), s.maxMs(), s.errors());
+            }
+        }
+    }
+
+    Map<String, LatencyRecorder.Summary> run() throws Exception {
+        Path work = Files.createTempDirectory("election-day");
+        EmbeddedPostgres postgres = null;
+        String jdbcUrl = options.get("jdbc-url");
+        if (jdbcUrl == null) {
+            // production commits wait for the WAL flush; the embedded default does not
+            postgres = EmbeddedPostgres.builder()
+                    .setDataDirectory(work.resolve("pgdata"))
+                    .setServerConfig("synchronous_commit", "on")
+                    .setServerConfig("max_connections", "300")
+                    .start();
+            jdbcUrl = postgres.getJdbcUrl("postgres", "postgres");
+        }
+
+        try (ConfigurableApplicationContext app = startServer(jdbcUrl, work)) {
+            baseUrl = "http://localhost:" + ((WebServerApplicationContext) app).getWebServer().getPort();
+            long started = System.nanoTime();
+            seed();
+            seedSeconds = (System.nanoTime() - started) / 1e9;
+            simulate();
+            return report();
+        } finally {
+            if (postgres != null) postgres.close();
+            try (Stream<Path> files = Files.walk(work)) {
+                files.sorted(Comparator.reverseOrder()).map(Path::toFile).forEach(File::delete);
+            }
+        }
+    }
+
+    private ConfigurableApplicationContext startServer(String jdbcUrl, Path work) {
+        List<String> args = new ArrayList<>(List.of(
+                "--spring.datasource.url=" + jdbcUrl,
+                "--spring.datasource.username=" + options.getOrDefault("db-user", "postgres"),
+                "--spring.datasource.password=" + options.getOrDefault("db-password", ""),
+                "--server.port=0",
+                "--spring.main.banner-mode=off",
+                "--spring.jpa.show-sql=false",
+                "--spring.jpa.properties.hibernate.format_sql=false",
+                "--logging.level.root=WARN",
+                "--journal.dir=" + work.resolve("journal"),
+                "--vvpat.dir=" + work.resolve("vvpat")));
+        if (options.containsKey("db-pool")) {
+            args.add("--spring.datasource.hikari.maximum-pool-size=" + options.get("db-pool"));
+        }
+        if (options.containsKey("threads")) {
+            args.add("--spring.threads.virtual.enabled=" + "virtual".equalsIgnoreCase(options.get("threads")));
+        }
+        return SpringApplication.run(PalmveinVotingApplication.class, args.toArray(String[]::new));
+    }
+
+    // ------------------------------------------------------------------ seeding
+
+    private void seed() throws Exception {
+        for (int from = 0; from < voters; from += IMPORT_CHUNK) {
+            StringBuilder csv = new StringBuilder("voterCode,name\n");
+            for (int i = from; i < Math.min(voters, from + IMPORT_CHUNK); i++) {
+                csv.append(code(i)).append(",Simulated Voter ").append(i).append('\n');
+            }
+            expectOk(post("/api/admin/voters/import", "text/csv", csv.toString()), "voter import");
+        }
+
+        keys = new byte[voters][];
+        int rejected = 0;
+        for (int from = 0; from < voters; from += ENROLL_CHUNK) {
+            List<Map<String, String>> items = IntStream.range(from, Math.min(voters, from + ENROLL_CHUNK))
+                    .parallel()
+                    .mapToObj(i -> {
+                        keys[i] = key(i);
+                        Base64.Encoder b64 = Base64.getEncoder();
+                        return Map.of("voterCode", code(i),
+                                "leftTemplate", b64.encodeToString(template(i, LEFT)),
+                                "rightTemplate", b64.encodeToString(template(i, RIGHT)),
+                                "sessionKey", b64.encodeToString(keys[i]));
+                    })
+                    .toList();
+            HttpResponse<String> response = post("/api/admin/voters/register-templates", "application/json",
+                    json.writeValueAsString(items));
+            expectOk(response, "template enrollment");
+            for (JsonNode result : json.readTree(response.body())) {
+                if (!"REGISTERED".equals(result.path("status").asText())) rejected++;
+            }
+        }
+        if (rejected > 0) throw new IllegalStateException(rejected + " voters failed enrollment");
+
+        LocalDateTime now = LocalDateTime.now();
+        HttpResponse<String> election = post("/api/admin/elections", "application/json", json.writeValueAsString(Map.of(
+                "title", "Election-day simulation", "status", "ACTIVE",
+                "startTime", now.toString(), "endTime", now.plusDays(1).toString())));
+        expectOk(election, "election");
+        electionId = UUID.fromString(json.readTree(election.body()).path("electionId").asText());
+        for (int c = 0; c < candidates; c++) {
+            HttpResponse<String> candidate = post("/api/admin/elections/" + electionId + "/candidates",
+                    "application/json", json.writeValueAsString(Map.of(
+                            "leaderName", "Candidate " + (c + 1), "partyName", "Party " + (c + 1), "city", "Simulation")));
+            expectOk(candidate, "candidate");
+            candidateIds.add(UUID.fromString(json.readTree(candidate.body()).path("candidateId").asText()));
+        }
+    }
+
+    // --------------------------------------------------------------- simulation
+
+    private void simulate() throws InterruptedException {
+        AtomicInteger kioskNo = new AtomicInteger();
+        ThreadPoolExecutor kioskPool = new ThreadPoolExecutor(kiosks, kiosks, 0L, TimeUnit.MILLISECONDS,
+                new LinkedBlockingQueue<>(), r -> {
+            Thread t = new Thread(r, "kiosk-" + kioskNo.incrementAndGet());
+            t.setDaemon(true);
+            return t;
+        });
+        kioskPool.prestartAllCoreThreads();
+
+        System.out.printf("Simulating %.0f s polling day: curve %s, peak %.1f voters/s, %d kiosks, ~%.0f arrivals expected%n",
+                durationSeconds, curve.name(), peakRate, kiosks, peakRate * durationSeconds * curve.mean());
+
+        // thinning: candidate arrivals at the peak rate, kept in proportion to the curve
+        Random random = new Random(seed);
+        long start = System.nanoTime();
+        double t = 0;
+        while (arrived < voters) {
+            t += -Math.log(1 - random.nextDouble()) / peakRate;
+            if (t >= durationSeconds) break;
+            double fraction = t / durationSeconds;
+            if (random.nextDouble() >= curve.rate(fraction)) continue;
+
+            long due = start + (long) (t * 1e9);
+            long wait = due - System.nanoTime();
+            if (wait > 0) LockSupport.parkNanos(wait);
+
+            int voter = arrived++;
+            int slot = curve.slot(fraction);
+            slotArrivals[slot]++;
+            kioskPool.execute(() -> session(voter, due, slot));
+        }
+        if (arrived == voters && t < durationSeconds) {
+            System.out.println("Ran out of enrolled voters at " + String.format("%.0f", t)
+                    + " s; raise --voters for the full day");
+        }
+
+        kioskPool.shutdown();
+        kioskPool.awaitTermination(1, TimeUnit.HOURS);
+        elapsedSeconds = (System.nanoTime() - start) / 1e9;
+    }
+
+    private void session(int voter, long arrivedAt, int slot) {
+        long startedAt = System.nanoTime();
+        queueWait.record(startedAt - arrivedAt);
+        slotQueueWait[slot].record(startedAt - arrivedAt);
+        String code = code(voter);
+        try {
+            if (!call("login", request("/api/voter/login?voterCode=" + code)
+                    .POST(HttpRequest.BodyPublishers.noBody()).build())) return;
+            think();
+
+            // kiosk-side capture and encryption, not part of any server timing
+            byte[] scan = encryptedScan(voter);
+            if (!call("scan", request("/api/voter/scan?voterCode=" + code)
+                    .header("Content-Type", "application/octet-stream")
+                    .POST(HttpRequest.BodyPublishers.ofByteArray(scan)).build())) return;
+            think();
+
+            UUID candidateId = candidateIds.get(ThreadLocalRandom.current().nextInt(candidateIds.size()));
+            if (!call("vote", request("/api/voter/vote?voterCode=" + code + "&electionId=" + electionId
+                    + "&candidateId=" + candidateId).POST(HttpRequest.BodyPublishers.noBody()).build())) return;
+
+            long total = System.nanoTime() - arrivedAt;
+            sessions.record(total);
+            slotSessions[slot].record(total);
+        } catch (Exception e) {
+            failedSessions.increment();
+        }
+    }
+
+    private boolean call(String endpoint, HttpRequest request) throws InterruptedException {
+        LatencyRecorder recorder = endpoints.get(endpoint);
+        long started = System.nanoTime();
+        try {
+            HttpResponse<Void> response = http.send(request, HttpResponse.BodyHandlers.discarding());
+            if (response.statusCode() / 100 == 2) {
+                recorder.record(System.nanoTime() - started);
+                return true;
+            }
+        } catch (IOException e) {
+            // counted below
+        }
+        recorder.error();
+        failedSessions.increment();
+        return false;
+    }
+
+    private void think() throws InterruptedException {
+        if (thinkMillis > 0) Thread.sleep(thinkMillis);
+    }
+
+    // ------------------------------------------------------------------ report
+
+    private Map<String, LatencyRecorder.Summary> report() throws IOException {
+        System.out.printf("%nSeeded %d voters in %.1f s; day ran %.1f s, %d arrivals, %d failed sessions%n%n",
+                voters, seedSeconds, elapsedSeconds, arrived, failedSessions.sum());
+        System.out.printf("%-11s %8s %7s %9s %9s %9s %9s %9s %9s%n",
+                "", "count", "errors", "per sec", "p50 ms", "p90 ms", "p99 ms", "p99.9 ms", "max ms");
+
+        Map<String, LatencyRecorder.Summary> results = new LinkedHashMap<>();
+        for (Map.Entry<String, LatencyRecorder> e : endpoints.entrySet()) {
+            results.put(e.getKey(), line(e.getKey(), e.getValue().summary(elapsedSeconds)));
+        }
+        results.put("queueWait", line("queue wait", queueWait.summary(elapsedSeconds)));
+        results.put("session", line("session", sessions.summary(elapsedSeconds)));
+
+        System.out.printf("%n%-6s %9s %14s %16s%n", "hour", "arrivals", "queue p99 ms", "session p99 ms");
+        List<Map<String, Object>> slots = new ArrayList<>();
+        double slotSeconds = elapsedSeconds / curve.slots();
+        for (int i = 0; i < curve.slots(); i++) {
+            LatencyRecorder.Summary wait = slotQueueWait[i].summary(slotSeconds);
+            LatencyRecorder.Summary session = slotSessions[i].summary(slotSeconds);
+            System.out.printf("%-6s %9d %14.1f %16.1f%n", curve.label(i), slotArrivals[i], wait.p99Ms(), session.p99Ms());
+            Map<String, Object> slot = new LinkedHashMap<>();
+            slot.put("hour", curve.label(i));
+            slot.put("arrivals", slotArrivals[i]);
+            slot.put("queueWait", wait);
+            slot.put("session", session);
+            slots.add(slot);
+        }
+
+        Map<String, Object> report = new LinkedHashMap<>();
+        report.put("options", Map.of("voters", voters, "durationSeconds", durationSeconds, "peakRate", peakRate,
+                "curve", curve.name(), "kiosks", kiosks, "thinkMillis", thinkMillis, "templateBytes", templateBytes,
+                "candidates", candidates, "embeddedPostgres", !options.containsKey("jdbc-url"),
+                "threads", options.getOrDefault("threads", "default")));
+        report.put("seedSeconds", seedSeconds);
+        report.put("elapsedSeconds", elapsedSeconds);
+        report.put("arrivals", arrived);
+        report.put("failedSessions", failedSessions.sum());
+        report.put("results", results);
+        report.put("hours", slots);
+
+        File out = new File(options.getOrDefault("report", "loadsim-report.json"));
+        json.writerWithDefaultPrettyPrinter().writeValue(out, report);
+        System.out.println("\nReport written to " + out.getAbsolutePath());
+        return results;
+    }
+
+    private static LatencyRecorder.Summary line(String name, LatencyRecorder.Summary s) {
+        System.out.printf("%-11s %8d %7d %9.1f %9.1f %9.1f %9.1f %9.1f %9.1f%n",
+                name, s.count(), s.errors(), s.perSecond(), s.p50Ms(), s.p90Ms(), s.p99Ms(), s.p999Ms(), s.maxMs());
+        return s;
+    }
+
+    // ------------------------------------------------------------------ voters
+
+    private static String code(int voter) {
+        return String.format("SIM%07d", voter);
+    }
+
+    private byte[] key(int voter) {
+        byte[] key = new byte[32];
+        new Random(seed * 1_000_003L + voter).nextBytes(key);
+        return key;
+    }
+
+    private byte[] template(int voter, int hand) {
+        byte[] template = new byte[templateBytes];
+        new Random((seed * 31 + voter) * 2 + hand).nextBytes(template);
+        return template;
+    }
+
+    /** The enrolled left palm with a little sensor noise, encrypted as the kiosk sends it. */
+    private byte[] encryptedScan(int voter) throws Exception {
+        byte[] scan = template(voter, LEFT);
+        ThreadLocalRandom random = ThreadLocalRandom.current();
+        for (int i = 0; i < scan.length; i++) {
+            scan[i] = (byte) Math.max(0, Math.min(255, (scan[i] & 0xFF) + random.nextInt(17) - 8));
+        }
+        byte[] out = new byte[AESUtil.encryptedLength(scan.length)];
+        int written = AESUtil.encryptGCM(scan, 0, scan.length, keys[voter], out, 0);
+        return Arrays.copyOf(out, written);
+    }
+
+    // -------------------------------------------------------------------- http
+
+    private HttpRequest.Builder request(String path) {
+        return HttpRequest.newBuilder(URI.create(baseUrl + path)).timeout(Duration.ofSeconds(60));
+    }
+
+    private HttpResponse<String> post(String path, String contentType, String body) throws Exception {
+        return http.send(request(path).header("Content-Type", contentType)
+                .POST(HttpRequest.BodyPublishers.ofString(body)).build(), HttpResponse.BodyHandlers.ofString());
+    }
+
+    private static void expectOk(HttpResponse<String> response, String what) {
+        if (response.statusCode() / 100 != 2) {
+            throw new IllegalStateException(what + " failed: HTTP " + response.statusCode() + " " + response.body());
+        }
+    }
+}
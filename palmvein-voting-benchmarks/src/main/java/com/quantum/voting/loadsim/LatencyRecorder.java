@@ -0,0 +1,40 @@
+package com.quantum.voting.loadsim;
+
+import java.util.Arrays;
+
+/**
+ * Every sample kept (a rehearsal is at most a few hundred thousand requests),
+ * so percentiles are exact rather than bucketed.
+ */
+final class LatencyRecorder {
+
+    record Summary(long count, long errors, double perSecond,
+                   double p50Ms, double p90Ms, double p99Ms, double p999Ms, double maxMs) {}
+
+    private long[] samples = new long[1024];
+    private int count;
+    private long errors;
+
+    synchronized void record(long nanos) {
+        if (count == samples.length) samples = Arrays.copyOf(samples, count * 2);
+        samples[count++] = nanos;
+    }
+
+    synchronized void error() {
+        errors++;
+    }
+
+    synchronized Summary summary(double seconds) {
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        return new Summary(count, errors, seconds > 0 ? count / seconds : 0,
+                percentile(sorted, 0.50), percentile(sorted, 0.90), percentile(sorted, 0.99),
+                percentile(sorted, 0.999), count == 0 ? 0 : sorted[count - 1] / 1e6);
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) return 0;
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(sorted.length - 1, index))] / 1e6;
+    }
+}
@@ -0,0 +1,24 @@
+package com.quantum.voting.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * What the voter gets back after casting: ids and the audit hash, never the voter row.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class BallotReceipt {
+    private String message;
+    private UUID ballotId;
+    private UUID electionId;
+    private UUID candidateId;
+    private LocalDateTime castAt;
+    private String auditHash;
+    private boolean vvpGenerated;
+}
@@ -0,0 +1,11 @@
+package com.quantum.voting.DTO;
+
+import lombok.Data;
+
+@Data
+public class BatchTemplateItem {
+    private String voterCode;
+    private String leftTemplate;
+    private String rightTemplate;
+    private String sessionKey;
+}
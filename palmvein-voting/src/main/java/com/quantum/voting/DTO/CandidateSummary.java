@@ -0,0 +1,27 @@
+package com.quantum.voting.DTO;
+
+import com.quantum.voting.entity.Candidate;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.UUID;
+
+/**
+ * Candidate without the back-reference to its election.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CandidateSummary {
+    private UUID candidateId;
+    private String leaderName;
+    private String partyName;
+    private String city;
+    private int votesCount;
+
+    public static CandidateSummary from(Candidate candidate) {
+        return new CandidateSummary(candidate.getCandidateId(), candidate.getLeaderName(),
+                candidate.getPartyName(), candidate.getCity(), candidate.getVotesCount());
+    }
+}
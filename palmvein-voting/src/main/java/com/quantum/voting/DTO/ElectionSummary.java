@@ -0,0 +1,28 @@
+package com.quantum.voting.DTO;
+
+import com.quantum.voting.entity.Election;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Election header without its candidate collection.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ElectionSummary {
+    private UUID electionId;
+    private String title;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private String status;
+
+    public static ElectionSummary from(Election election) {
+        return new ElectionSummary(election.getElectionId(), election.getTitle(),
+                election.getStartTime(), election.getEndTime(), election.getStatus());
+    }
+}
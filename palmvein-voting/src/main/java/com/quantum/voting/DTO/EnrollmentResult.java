@@ -0,0 +1,14 @@
+package com.quantum.voting.DTO;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class EnrollmentResult {
+    private String voterCode;
+    private String status; // REGISTERED / NOT_FOUND / INVALID / FAILED
+    private String message;
+}
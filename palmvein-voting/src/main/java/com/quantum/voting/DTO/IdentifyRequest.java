@@ -0,0 +1,10 @@
+package com.quantum.voting.DTO;
+
+import lombok.Data;
+
+@Data
+public class IdentifyRequest {
+    private String encryptedTemplate;
+    private String sessionKey;
+    private int topK = 5;
+}
@@ -0,0 +1,48 @@
+package com.quantum.voting.DTO;
+
+import com.quantum.voting.journal.MerkleTree;
+import com.quantum.voting.service.AuditTreeService;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.Base64;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Merkle inclusion proof for one ballot. To check it, start from
+ * leaf = SHA-256(0x00 || ballotId bytes || auditHash bytes), then for each step
+ * hash SHA-256(0x01 || left || right) with the sibling on its side; the result
+ * must equal root. Hashes are Base64.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class InclusionProof {
+    private UUID electionId;
+    private UUID ballotId;
+    private int leafIndex;
+    private int treeSize;
+    private String leaf;
+    private List<Step> path;
+    private String root;
+
+    @Data
+    @NoArgsConstructor
+    @AllArgsConstructor
+    public static class Step {
+        private String hash;
+        private String side;
+    }
+
+    public static InclusionProof from(AuditTreeService.Located located) {
+        Base64.Encoder b64 = Base64.getEncoder();
+        MerkleTree.Proof p = located.proof();
+        List<Step> path = p.path().stream()
+                .map(s -> new Step(b64.encodeToString(s.hash()), s.left() ? "left" : "right"))
+                .toList();
+        return new InclusionProof(located.electionId(), located.ballotId(), p.leafIndex(), p.size(),
+                b64.encodeToString(p.leaf()), path, b64.encodeToString(p.root()));
+    }
+}
@@ -0,0 +1,35 @@
+package com.quantum.voting.DTO;
+
+import com.quantum.voting.entity.Voter;
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Voter row without biometric columns, for admin listings and voter responses.
+ */
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class VoterSummary {
+    private UUID voterId;
+    private String voterCode;
+    private String name;
+    private String mobile;
+    private LocalDateTime dob;
+    private LocalDateTime registeredAt;
+    private boolean leftRegistered;
+    private boolean rightRegistered;
+    private boolean hasVoted;
+    private LocalDateTime lastVotedAt;
+
+    public static VoterSummary from(Voter voter) {
+        return new VoterSummary(voter.getVoterId(), voter.getVoterCode(), voter.getName(),
+                voter.getMobile(), voter.getDob(), voter.getRegisteredAt(),
+                voter.isLeftRegistered(), voter.isRightRegistered(),
+                voter.isHasVoted(), voter.getLastVotedAt());
+    }
+}
@@ -0,0 +1,161 @@
+package com.quantum.voting.config;
+
+import org.springframework.jdbc.datasource.ConnectionProxy;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.SQLTransientConnectionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Caps how many callers hold a pooled connection at once and how many may queue
+ * for one. With virtual threads every request gets its own thread, so thousands
+ * can pile onto a 10-connection pool and sit out its 30 s timeout; here they wait
+ * in a fair semaphore (which parks a virtual thread without pinning it) and are
+ * turned away fast once the queue or the wait is too long. The permit goes back
+ * when the connection is closed.
+ * <p>
+ * A thread that already holds a connection from here gets a second one without
+ * another permit: with permits equal to the pool size, making it queue behind
+ * callers that are waiting for its own first connection would only end in a
+ * timeout and a 503. Such nested checkouts are counted so they can be found.
+ */
+public class AdmissionLimitedDataSource extends DelegatingDataSource {
+
+    private final Semaphore permits;
+    private final int maxConcurrent;
+    private final int maxWaiting;
+    private final long waitMillis;
+    private final AtomicInteger waiting = new AtomicInteger();
+    private final AtomicLong rejected = new AtomicLong();
+    private final AtomicLong nested = new AtomicLong();
+    // connections the current thread holds through us
+    private final ThreadLocal<AtomicInteger> held = ThreadLocal.withInitial(AtomicInteger::new);
+
+    public AdmissionLimitedDataSource(DataSource target, int maxConcurrent, int maxWaiting, long waitMillis) {
+        super(target);
+        this.permits = new Semaphore(maxConcurrent, true);
+        this.maxConcurrent = maxConcurrent;
+        this.maxWaiting = maxWaiting;
+        this.waitMillis = waitMillis;
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        AtomicInteger holds = held.get();
+        boolean admitted = admit(holds);
+        try {
+            return wrap(obtainTargetDataSource().getConnection(), holds, admitted);
+        } catch (SQLException | RuntimeException e) {
+            if (admitted) permits.release();
+            throw e;
+        }
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        AtomicInteger holds = held.get();
+        boolean admitted = admit(holds);
+        try {
+            return wrap(obtainTargetDataSource().getConnection(username, password), holds, admitted);
+        } catch (SQLException | RuntimeException e) {
+            if (admitted) permits.release();
+            throw e;
+        }
+    }
+
+    public int maxConcurrent() {
+        return maxConcurrent;
+    }
+
+    public int active() {
+        return maxConcurrent - permits.availablePermits();
+    }
+
+    public int waiting() {
+        return waiting.get();
+    }
+
+    public long rejected() {
+        return rejected.get();
+    }
+
+    public long nested() {
+        return nested.get();
+    }
+
+    // true if a permit was taken, false for a nested checkout
+    private boolean admit(AtomicInteger holds) throws SQLException {
+        if (holds.get() > 0) {
+            nested.incrementAndGet();
+            return false;
+        }
+        admitQueued();
+        return true;
+    }
+
+    private void admitQueued() throws SQLException {
+        // timed, unlike tryAcquire(), so it does not barge past callers already queued
+        try {
+            if (permits.tryAcquire(0, TimeUnit.MILLISECONDS)) return;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for DB admission", e);
+        }
+
+        if (waiting.incrementAndGet() > maxWaiting) {
+            waiting.decrementAndGet();
+            rejected.incrementAndGet();
+            throw new SQLTransientConnectionException("DB admission queue full (" + maxWaiting + " waiting)");
+        }
+        try {
+            if (!permits.tryAcquire(waitMillis, TimeUnit.MILLISECONDS)) {
+                rejected.incrementAndGet();
+                throw new SQLTransientConnectionException("No DB connection admitted within " + waitMillis + " ms");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new SQLTransientConnectionException("Interrupted waiting for DB admission", e);
+        } finally {
+            waiting.decrementAndGet();
+        }
+    }
+
+    private Connection wrap(Connection target, AtomicInteger holds, boolean admitted) {
+        AtomicBoolean released = new AtomicBoolean();
+        holds.incrementAndGet();
+        return (Connection) Proxy.newProxyInstance(ConnectionProxy.class.getClassLoader(),
+                new Class<?>[]{ConnectionProxy.class},
+                (proxy, method, args) -> switch (method.getName()) {
+                    case "getTargetConnection" -> target;
+                    case "equals" -> proxy == args[0];
+                    case "hashCode" -> System.identityHashCode(proxy);
+                    case "close" -> {
+                        try {
+                            target.close();
+                        } finally {
+                            if (released.compareAndSet(false, true)) {
+                                holds.decrementAndGet();
+                                if (admitted) permits.release();
+                            }
+                        }
+                        yield null;
+                    }
+                    default -> {
+                        try {
+                            yield method.invoke(target, args);
+                        } catch (InvocationTargetException e) {
+                            throw e.getTargetException();
+                        }
+                    }
+                });
+    }
+}
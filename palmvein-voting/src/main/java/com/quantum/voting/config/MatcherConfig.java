@@ -0,0 +1,28 @@
+package com.quantum.voting.config;
+
+import com.quantum.voting.matching.ScalarTemplateMatcher;
+import com.quantum.voting.matching.TemplateMatcher;
+import com.quantum.voting.matching.VectorTemplateMatcher;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+
+@Configuration
+public class MatcherConfig {
+
+    /**
+     * Picks the palm template matcher. "vector" falls back to the scalar
+     * reference when the JVM was started without jdk.incubator.vector.
+     */
+    @Bean
+    public TemplateMatcher templateMatcher(@Value("${palm.matcher:vector}") String matcher) {
+        if ("vector".equalsIgnoreCase(matcher) && vectorApiAvailable()) {
+            return new VectorTemplateMatcher();
+        }
+        return new ScalarTemplateMatcher();
+    }
+
+    private static boolean vectorApiAvailable() {
+        return ModuleLayer.boot().findModule("jdk.incubator.vector").isPresent();
+    }
+}
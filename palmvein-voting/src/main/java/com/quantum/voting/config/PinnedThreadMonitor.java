@@ -0,0 +1,82 @@
+package com.quantum.voting.config;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import jdk.jfr.consumer.RecordedEvent;
+import jdk.jfr.consumer.RecordedFrame;
+import jdk.jfr.consumer.RecordingStream;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * In virtual-thread mode, streams JFR's jdk.VirtualThreadPinned events: a virtual
+ * thread that blocked inside synchronized (or native code) for longer than the
+ * threshold and so held its carrier. Each one counts toward
+ * palmvein.virtual.pinned, and the first time a call site shows up it is logged,
+ * so a library or new code path that pins is visible without a profiler attached.
+ */
+@Component
+@ConditionalOnProperty(name = "spring.threads.virtual.enabled", havingValue = "true")
+public class PinnedThreadMonitor {
+
+    private static final String EVENT = "jdk.VirtualThreadPinned";
+    private static final int MAX_LOGGED_SITES = 100;
+
+    private final Counter pinned;
+    private final long thresholdMillis;
+    private final Set<String> seen = ConcurrentHashMap.newKeySet();
+    private RecordingStream stream;
+
+    public PinnedThreadMonitor(MeterRegistry registry,
+                               @Value("${palm.virtual.pinned-threshold-millis:20}") long thresholdMillis) {
+        this.pinned = Counter.builder("palmvein.virtual.pinned")
+                .description("Virtual threads that blocked while pinned to their carrier")
+                .register(registry);
+        this.thresholdMillis = thresholdMillis;
+    }
+
+    @PostConstruct
+    public void start() {
+        stream = new RecordingStream();
+        stream.enable(EVENT).withThreshold(Duration.ofMillis(thresholdMillis)).withStackTrace();
+        stream.onEvent(EVENT, this::onPinned);
+        stream.startAsync();
+        System.out.println("Watching for pinned virtual threads over " + thresholdMillis + " ms");
+    }
+
+    private void onPinned(RecordedEvent event) {
+        pinned.increment();
+        String site = site(event);
+        if (seen.size() < MAX_LOGGED_SITES && seen.add(site)) {
+            System.out.println("Virtual thread pinned for " + event.getDuration().toMillis() + " ms at " + site);
+        }
+    }
+
+    // first application frame, else the top frame
+    private static String site(RecordedEvent event) {
+        if (event.getStackTrace() == null) return "unknown";
+        RecordedFrame top = null;
+        for (RecordedFrame f : event.getStackTrace().getFrames()) {
+            if (!f.isJavaFrame()) continue;
+            if (top == null) top = f;
+            if (f.getMethod().getType().getName().startsWith("com.quantum.voting.")) return frame(f);
+        }
+        return top == null ? "unknown" : frame(top);
+    }
+
+    private static String frame(RecordedFrame f) {
+        return f.getMethod().getType().getName() + "." + f.getMethod().getName() + ":" + f.getLineNumber();
+    }
+
+    @PreDestroy
+    public void stop() {
+        if (stream != null) stream.close();
+    }
+}
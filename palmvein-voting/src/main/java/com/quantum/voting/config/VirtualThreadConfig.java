@@ -0,0 +1,69 @@
+package com.quantum.voting.config;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.binder.MeterBinder;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.core.env.Environment;
+
+import javax.sql.DataSource;
+
+/**
+ * Support for spring.threads.virtual.enabled, which moves Tomcat request handling
+ * and the scheduler onto virtual threads. Those stop costing a platform thread
+ * while they block on Postgres or the journal fsync, so the connection pool
+ * becomes the limit; db.admission puts a bounded, fail-fast queue in front of it.
+ */
+@Configuration
+public class VirtualThreadConfig {
+
+    @Bean
+    public static BeanPostProcessor dbAdmissionLimiter(Environment env) {
+        return new BeanPostProcessor() {
+            @Override
+            public Object postProcessAfterInitialization(Object bean, String beanName) {
+                if (!(bean instanceof DataSource ds) || bean instanceof AdmissionLimitedDataSource
+                        || !env.getProperty("db.admission.enabled", Boolean.class, false)) {
+                    return bean;
+                }
+                int maxConcurrent = env.getProperty("db.admission.max-concurrent", Integer.class, 0);
+                if (maxConcurrent <= 0) {
+                    // exactly the pool, so Hikari itself never has a queue
+                    maxConcurrent = env.getProperty("spring.datasource.hikari.maximum-pool-size", Integer.class, 10);
+                }
+                int maxWaiting = env.getProperty("db.admission.max-waiting", Integer.class, 1000);
+                long waitMillis = env.getProperty("db.admission.wait-millis", Long.class, 2000L);
+                System.out.println("DB admission limit on " + beanName + ": " + maxConcurrent
+                        + " concurrent, " + maxWaiting + " waiting, " + waitMillis + " ms");
+                return new AdmissionLimitedDataSource(ds, maxConcurrent, maxWaiting, waitMillis);
+            }
+        };
+    }
+
+    @Bean
+    public MeterBinder dbAdmissionMetrics(DataSource dataSource) {
+        return registry -> {
+            AdmissionLimitedDataSource limiter;
+            try {
+                if (!dataSource.isWrapperFor(AdmissionLimitedDataSource.class)) return;
+                limiter = dataSource.unwrap(AdmissionLimitedDataSource.class);
+            } catch (Exception e) {
+                return;
+            }
+            Gauge.builder("palmvein.db.admission.active", limiter, AdmissionLimitedDataSource::active)
+                    .description("Callers holding an admitted connection")
+                    .register(registry);
+            Gauge.builder("palmvein.db.admission.waiting", limiter, AdmissionLimitedDataSource::waiting)
+                    .description("Callers queued for DB admission")
+                    .register(registry);
+            FunctionCounter.builder("palmvein.db.admission.rejected", limiter, AdmissionLimitedDataSource::rejected)
+                    .description("Connection requests turned away by the admission limit")
+                    .register(registry);
+            FunctionCounter.builder("palmvein.db.admission.nested", limiter, AdmissionLimitedDataSource::nested)
+                    .description("Second connections taken by a thread that already held one")
+                    .register(registry);
+        };
+    }
+}
@@ -1,14 +1,39 @@
 package com.quantum.voting.controller;
 
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quantum.voting.DTO.BatchTemplateItem;
+import com.quantum.voting.DTO.CandidateSummary;
+import com.quantum.voting.DTO.ElectionSummary;
+import com.quantum.voting.DTO.EnrollmentResult;
 import com.quantum.voting.DTO.RegisterTemplateRequest;
+import com.quantum.voting.DTO.VoterSummary;
 import com.quantum.voting.entity.Candidate;
 import com.quantum.voting.entity.Election;
 import com.quantum.voting.entity.Voter;
+import com.quantum.voting.journal.BallotJournal;
 import com.quantum.voting.service.AdminService;
+import com.quantum.voting.service.ResultsStreamService;
+import com.quantum.voting.service.VoterImportService;
+import com.quantum.voting.service.VoterLookupCache;
+import com.quantum.voting.service.VoterQueryService;
+import com.quantum.voting.utils.BinaryBody;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+import org.springframework.web.multipart.MultipartFile;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.PrintWriter;
+import java.io.UncheckedIOException;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.UUID;
@@ -19,6 +44,15 @@ import java.util.UUID;
 public class AdminController {
 
     private final AdminService adminService;
+    private final ResultsStreamService resultsStreamService;
+    private final VoterImportService voterImportService;
+    private final VoterQueryService voterQueryService;
+    private final VoterLookupCache voterLookupCache;
+    private final BallotJournal ballotJournal;
+    private final ObjectMapper objectMapper;
+
+    @Value("${palm.upload.max-bytes:262144}")
+    private int maxUploadBytes;
 
     @PostMapping("/login")
     public ResponseEntity<String> login(@RequestBody Map<String, String> body) {
@@ -30,13 +64,59 @@ public class AdminController {
     }
 
     @PostMapping("/voters")
-    public ResponseEntity<Voter> createVoter(@RequestBody Voter voter) {
-        return ResponseEntity.ok(adminService.createVoter(voter));
+    public ResponseEntity<VoterSummary> createVoter(@RequestBody Voter voter) {
+        return ResponseEntity.ok(VoterSummary.from(adminService.createVoter(voter)));
     }
 
+    /**
+     * Whole roll as a streamed JSON array of summaries (no biometric columns).
+     */
     @GetMapping("/voters")
-    public ResponseEntity<List<Voter>> getVoters() {
-        return ResponseEntity.ok(adminService.getAllVoters());
+    public ResponseEntity<StreamingResponseBody> getVoters(@RequestParam(required = false) Boolean registered,
+                                                           @RequestParam(required = false) Boolean voted) {
+        StreamingResponseBody body = out -> voterQueryService.streamAll(out, registered, voted);
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_JSON).body(body);
+    }
+
+    /**
+     * Keyset page: pass the returned nextCursor as after to get the next page.
+     */
+    @GetMapping("/voters/page")
+    public ResponseEntity<Map<String, Object>> getVoterPage(@RequestParam(required = false) String after,
+                                                            @RequestParam(defaultValue = "100") int limit,
+                                                            @RequestParam(required = false) Boolean registered,
+                                                            @RequestParam(required = false) Boolean voted) {
+        List<VoterSummary> items = voterQueryService.page(after, limit, registered, voted);
+        String nextCursor = items.size() < Math.max(1, Math.min(limit, VoterQueryService.MAX_PAGE_SIZE))
+                ? null : items.get(items.size() - 1).getVoterCode();
+
+        Map<String, Object> page = new HashMap<>();
+        page.put("items", items);
+        page.put("nextCursor", nextCursor);
+        return ResponseEntity.ok(page);
+    }
+
+    /**
+     * Streaming roll import. Body is CSV (header: voterCode,name,mobile,dob) or NDJSON;
+     * the response is NDJSON progress/error lines followed by a summary.
+     */
+    @PostMapping(value = "/voters/import", consumes = {"text/csv", "application/x-ndjson"})
+    public void importVoters(HttpServletRequest request, HttpServletResponse response) throws IOException {
+        VoterImportService.Format format = request.getContentType().startsWith("text/csv")
+                ? VoterImportService.Format.CSV : VoterImportService.Format.NDJSON;
+
+        response.setContentType("application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        PrintWriter out = response.getWriter();
+
+        voterImportService.importVoters(request.getReader(), format, line -> {
+            try {
+                out.println(objectMapper.writeValueAsString(line));
+                out.flush();
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+        });
     }
 
     @PostMapping("/voters/{voterCode}/register-template")
@@ -52,17 +132,87 @@ public class AdminController {
                     request.getSessionKey()
             );
 
-            if (voter == null) {
-                return ResponseEntity.badRequest().body("Voter not found");
-            }
+            return templateRegistered(voter);
 
-            return ResponseEntity.ok(voter);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Failed: " + e.getMessage());
+        }
+    }
 
+    /**
+     * Binary enrollment: multipart parts "left" and/or "right" carry the raw template bytes.
+     */
+    @PostMapping(value = "/voters/{voterCode}/register-template", consumes = MediaType.MULTIPART_FORM_DATA_VALUE)
+    public ResponseEntity<?> registerTemplateMultipart(
+            @PathVariable String voterCode,
+            @RequestPart(required = false) MultipartFile left,
+            @RequestPart(required = false) MultipartFile right,
+            @RequestParam(required = false) String sessionKey
+    ) {
+        try {
+            Voter voter = adminService.registerPalmTemplate(voterCode, readPart(left), readPart(right), sessionKey);
+            return templateRegistered(voter);
+        } catch (MaxUploadSizeExceededException e) {
+            return ResponseEntity.status(413).body(e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError().body("Failed: " + e.getMessage());
         }
     }
 
+    /**
+     * Binary enrollment of one hand: the body is the raw template, hand is left or right.
+     */
+    @PostMapping(value = "/voters/{voterCode}/register-template", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<?> registerTemplateBinary(
+            @PathVariable String voterCode,
+            @RequestParam String hand,
+            @RequestParam(required = false) String sessionKey,
+            HttpServletRequest request
+    ) {
+        boolean isLeft = "left".equalsIgnoreCase(hand);
+        if (!isLeft && !"right".equalsIgnoreCase(hand)) {
+            return ResponseEntity.badRequest().body("hand must be left or right");
+        }
+        try {
+            byte[] template = BinaryBody.read(request.getInputStream(), request.getContentLengthLong(), maxUploadBytes);
+            Voter voter = isLeft
+                    ? adminService.registerPalmTemplate(voterCode, template, null, sessionKey)
+                    : adminService.registerPalmTemplate(voterCode, null, template, sessionKey);
+            return templateRegistered(voter);
+        } catch (MaxUploadSizeExceededException e) {
+            return ResponseEntity.status(413).body(e.getMessage());
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Failed: " + e.getMessage());
+        }
+    }
+
+    private byte[] readPart(MultipartFile part) throws IOException {
+        if (part == null || part.isEmpty()) return null;
+        try (InputStream in = part.getInputStream()) {
+            return BinaryBody.read(in, part.getSize(), maxUploadBytes);
+        }
+    }
+
+    private ResponseEntity<?> templateRegistered(Voter voter) {
+        if (voter == null) {
+            return ResponseEntity.badRequest().body("Voter not found");
+        }
+        return ResponseEntity.ok(VoterSummary.from(voter));
+    }
+
+    /**
+     * Batch enrollment for templates captured offline; one result per voter.
+     */
+    @PostMapping("/voters/register-templates")
+    public ResponseEntity<?> registerTemplates(@RequestBody List<BatchTemplateItem> items) {
+        if (items == null || items.isEmpty()) return ResponseEntity.badRequest().body("No voters supplied");
+        try {
+            List<EnrollmentResult> results = adminService.registerPalmTemplates(items);
+            return ResponseEntity.ok(results);
+        } catch (Exception e) {
+            return ResponseEntity.internalServerError().body("Failed: " + e.getMessage());
+        }
+    }
 
     // -------------------------
     // Create Election
@@ -71,7 +221,7 @@ public class AdminController {
     public ResponseEntity<?> createElection(@RequestBody Election election) {
         try {
             Election saved = adminService.createElection(election);
-            return ResponseEntity.ok(saved);
+            return ResponseEntity.ok(ElectionSummary.from(saved));
         } catch (IllegalArgumentException ex) {
             return ResponseEntity.badRequest().body(ex.getMessage());
         } catch (Exception e) {
@@ -87,11 +237,34 @@ public class AdminController {
                                           @RequestBody Candidate candidate) {
         Candidate saved = adminService.addCandidateToElection(electionId, candidate);
         if (saved == null) return ResponseEntity.badRequest().body("Election not found");
-        return ResponseEntity.ok(saved);
+        return ResponseEntity.ok(CandidateSummary.from(saved));
+    }
+
+    @PostMapping("/elections/{electionId}/close")
+    public ResponseEntity<?> closeElection(@PathVariable UUID electionId) {
+        Election closed = adminService.closeElection(electionId);
+        if (closed == null) return ResponseEntity.badRequest().body("Election not found");
+        return ResponseEntity.ok(ElectionSummary.from(closed));
     }
 
     @GetMapping("/elections")
-    public ResponseEntity<List<Election>> listElections() {
-        return ResponseEntity.ok(adminService.getAllElections());
+    public ResponseEntity<List<ElectionSummary>> listElections() {
+        return ResponseEntity.ok(adminService.getAllElections().stream().map(ElectionSummary::from).toList());
+    }
+
+    @GetMapping("/journal")
+    public ResponseEntity<Map<String, Object>> journalStatus() {
+        return ResponseEntity.ok(ballotJournal.status());
+    }
+
+    @GetMapping("/cache-stats")
+    public ResponseEntity<Map<String, Object>> cacheStats() {
+        return ResponseEntity.ok(Map.of("voterLookup", voterLookupCache.stats()));
+    }
+
+    @GetMapping(value = "/elections/{electionId}/results/stream", produces = MediaType.TEXT_EVENT_STREAM_VALUE)
+    public ResponseEntity<SseEmitter> streamResults(@PathVariable UUID electionId) {
+        SseEmitter emitter = resultsStreamService.subscribe(electionId);
+        return emitter == null ? ResponseEntity.notFound().build() : ResponseEntity.ok(emitter);
     }
 }
@@ -1,19 +1,36 @@
 package com.quantum.voting.controller;
 
+import com.quantum.voting.DTO.BallotReceipt;
+import com.quantum.voting.DTO.IdentifyRequest;
+import com.quantum.voting.DTO.InclusionProof;
+import com.quantum.voting.DTO.VoterSummary;
 import com.quantum.voting.entity.Ballot;
 import com.quantum.voting.entity.Voter;
 import com.quantum.voting.repository.BallotRepository;
+import com.quantum.voting.matching.TemplateIndex;
+import com.quantum.voting.service.AuditTreeService;
+import com.quantum.voting.service.ElectionCatalog;
+import com.quantum.voting.service.IdentificationService;
 import com.quantum.voting.service.VoterService;
+import com.quantum.voting.service.VvpatService;
+import com.quantum.voting.utils.BinaryBody;
+import com.quantum.voting.utils.FileRegionResponse;
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
 import lombok.Data;
 import lombok.RequiredArgsConstructor;
-import org.springframework.core.io.InputStreamResource;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
 import org.springframework.http.HttpHeaders;
 import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
 
-import java.io.File;
-import java.io.FileInputStream;
+import java.io.IOException;
+import java.util.Base64;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 import java.util.UUID;
@@ -25,6 +42,13 @@ public class VoterController {
 
     private final VoterService voterService;
     private final BallotRepository ballotRepository;
+    private final IdentificationService identificationService;
+    private final ElectionCatalog electionCatalog;
+    private final AuditTreeService auditTreeService;
+    private final VvpatService vvpatService;
+
+    @Value("${palm.upload.max-bytes:262144}")
+    private int maxUploadBytes;
 
     // ✅ FIXED: Always returns ResponseEntity<Object>
     @PostMapping("/login")
@@ -32,7 +56,7 @@ public class VoterController {
         Optional<Voter> voter = voterService.login(voterCode);
 
         if (voter.isPresent()) {
-            return ResponseEntity.ok(voter.get());
+            return ResponseEntity.ok(VoterSummary.from(voter.get()));
         }
 
         return ResponseEntity.status(404)
@@ -48,6 +72,34 @@ public class VoterController {
         }
 
         double score = voterService.verifyPalmTemplateScore(voterOpt.get(), request.getEncryptedTemplate());
+        return scanResult(score);
+    }
+
+    /**
+     * Binary scan: the body is the raw nonce || ciphertext, with no Base64 or JSON wrapping.
+     */
+    @PostMapping(value = "/scan", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Object> scanPalmBinary(@RequestParam String voterCode,
+                                                 HttpServletRequest request) throws IOException {
+        Optional<Voter> voterOpt = voterService.login(voterCode);
+        if (voterOpt.isEmpty()) {
+            return ResponseEntity.status(404)
+                    .body(Map.of("verified", false, "score", 0.0, "message", "Voter not found"));
+        }
+
+        byte[] encrypted;
+        try {
+            encrypted = BinaryBody.read(request.getInputStream(), request.getContentLengthLong(), maxUploadBytes);
+        } catch (MaxUploadSizeExceededException e) {
+            return ResponseEntity.status(413)
+                    .body(Map.of("verified", false, "score", 0.0, "message", e.getMessage()));
+        }
+
+        double score = voterService.verifyPalmTemplateScore(voterOpt.get(), encrypted, encrypted.length);
+        return scanResult(score);
+    }
+
+    private ResponseEntity<Object> scanResult(double score) {
         boolean verified = score >= 0.80;
 
         Map<String, Object> response = Map.of(
@@ -59,6 +111,61 @@ public class VoterController {
                 : ResponseEntity.status(401).body(response);
     }
 
+    @PostMapping("/identify")
+    public ResponseEntity<Object> identifyPalm(@RequestBody IdentifyRequest request) {
+        if (!identificationService.isReady()) {
+            return ResponseEntity.status(503)
+                    .body(Map.of("message", "Template index not ready"));
+        }
+
+        return identifyResult(identificationService.identify(
+                request.getEncryptedTemplate(), request.getSessionKey(), request.getTopK()));
+    }
+
+    /**
+     * Binary identify: the body is the raw nonce || ciphertext scan.
+     */
+    @PostMapping(value = "/identify", consumes = MediaType.APPLICATION_OCTET_STREAM_VALUE)
+    public ResponseEntity<Object> identifyPalmBinary(@RequestParam String sessionKey,
+                                                     @RequestParam(defaultValue = "5") int topK,
+                                                     HttpServletRequest request) throws IOException {
+        if (!identificationService.isReady()) {
+            return ResponseEntity.status(503)
+                    .body(Map.of("message", "Template index not ready"));
+        }
+
+        byte[] encrypted;
+        try {
+            encrypted = BinaryBody.read(request.getInputStream(), request.getContentLengthLong(), maxUploadBytes);
+        } catch (MaxUploadSizeExceededException e) {
+            return ResponseEntity.status(413).body(Map.of("message", e.getMessage()));
+        }
+
+        return identifyResult(identificationService.identify(encrypted, encrypted.length, sessionKey, topK));
+    }
+
+    private ResponseEntity<Object> identifyResult(List<TemplateIndex.Match> candidates) {
+        boolean verified = !candidates.isEmpty() && candidates.get(0).score() >= 0.80;
+
+        Map<String, Object> response = Map.of(
+                "verified", verified,
+                "candidates", candidates
+        );
+
+        return verified ? ResponseEntity.ok(response)
+                : ResponseEntity.status(401).body(response);
+    }
+
+    /**
+     * Active elections with their candidates, served from the in-memory catalog.
+     * The ETag is the catalog version, so polling kiosks get 304 until it changes.
+     */
+    @GetMapping("/elections")
+    public ResponseEntity<List<ElectionCatalog.ElectionEntry>> activeElections() {
+        ElectionCatalog.Snapshot catalog = electionCatalog.snapshot();
+        return ResponseEntity.ok().eTag(Long.toString(catalog.version())).body(catalog.elections());
+    }
+
     @PostMapping("/vote")
     public ResponseEntity<Object> castVote(@RequestParam String voterCode,
                                            @RequestParam UUID electionId,
@@ -69,47 +176,70 @@ public class VoterController {
             return ResponseEntity.status(404).body("Voter not found");
 
         try {
-            Ballot ballot = voterService.castVote(voterOpt.get(), electionId, candidateId);
+            BallotReceipt receipt = voterService.castVote(voterOpt.get(), electionId, candidateId);
 
-            if (ballot == null)
+            if (receipt == null)
                 return ResponseEntity.badRequest().body("Vote failed (already voted or invalid)");
 
-            return ResponseEntity.ok(Map.of(
-                    "message", "Vote cast successfully",
-                    "path", ballot.getVvpPath(),
-                    "auditHash", ballot.getAuditHash(),
-                    "ballotId", ballot.getBallotId()
-            ));
+            // VVPAT is rendered asynchronously; poll /ballot/{id}/vvp until it is ready
+            return ResponseEntity.ok(receipt);
 
+        } catch (DataIntegrityViolationException e) {
+            // lost a race with a concurrent vote for the same election
+            return ResponseEntity.badRequest().body("Vote failed (already voted or invalid)");
+        } catch (CannotGetJdbcConnectionException e) {
+            // turned away by the DB admission limit; the claim was released, so the kiosk can resend
+            return ResponseEntity.status(503).header(HttpHeaders.RETRY_AFTER, "1")
+                    .body("Busy, please retry: " + e.getMessage());
         } catch (Exception e) {
             return ResponseEntity.internalServerError()
                     .body("Error casting vote: " + e.getMessage());
         }
     }
 
+    /**
+     * Proof that the ballot is a leaf of its election's audit tree, with the root it proves against.
+     */
+    @GetMapping("/ballot/{id}/proof")
+    public ResponseEntity<Object> inclusionProof(@PathVariable UUID id) {
+        Optional<AuditTreeService.Located> located = auditTreeService.proof(id);
+        if (located.isEmpty()) return ResponseEntity.status(404).body("Ballot not found");
+        return ResponseEntity.ok(InclusionProof.from(located.get()));
+    }
+
+    @GetMapping("/elections/{electionId}/audit-root")
+    public ResponseEntity<Object> auditRoot(@PathVariable UUID electionId) {
+        AuditTreeService.Root root = auditTreeService.root(electionId);
+        return ResponseEntity.ok(Map.of(
+                "electionId", root.electionId(),
+                "size", root.size(),
+                "root", Base64.getEncoder().encodeToString(root.root())));
+    }
+
+    /**
+     * The receipt PDF, straight from disk with ETag and Range support
+     * (see {@link FileRegionResponse}); null return means the body was written.
+     */
     @GetMapping("/ballot/{id}/vvp")
-    public ResponseEntity<Object> downloadVVP(@PathVariable UUID id) {
+    public ResponseEntity<Object> downloadVVP(@PathVariable UUID id,
+                                              HttpServletRequest request,
+                                              HttpServletResponse response) {
         Optional<Ballot> ballotOpt = ballotRepository.findById(id);
         if (ballotOpt.isEmpty()) return ResponseEntity.status(404).body("Ballot not found");
 
         Ballot ballot = ballotOpt.get();
         if (!ballot.isVvpGenerated()) return ResponseEntity.badRequest().body("VVPAT not generated yet");
 
-        File file = new File(ballot.getVvpPath());
-        if (!file.exists()) return ResponseEntity.status(404).body("VVPAT file missing");
+        VvpatService.StoredReceipt receipt = vvpatService.stored(ballot);
+        if (receipt == null) return ResponseEntity.status(404).body("VVPAT file missing");
 
         try {
-            InputStreamResource resource = new InputStreamResource(new FileInputStream(file));
-            HttpHeaders headers = new HttpHeaders();
-            headers.add(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=" + file.getName());
-
-            return ResponseEntity.ok()
-                    .headers(headers)
-                    .contentLength(file.length())
-                    .contentType(MediaType.APPLICATION_PDF)
-                    .body(resource);
-
+            FileRegionResponse.send(request, response, receipt.file(), receipt.offset(), receipt.length(),
+                    receipt.etag(), MediaType.APPLICATION_PDF_VALUE, "attachment; filename=" + id + ".pdf");
+            return null;
         } catch (Exception e) {
+            if (response.isCommitted()) return null;
+            response.reset();
             return ResponseEntity.internalServerError().body("Failed to read VVPAT file");
         }
     }
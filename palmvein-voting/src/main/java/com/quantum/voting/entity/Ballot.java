@@ -10,7 +10,9 @@ import java.util.UUID;
 @Setter
 @NoArgsConstructor
 @AllArgsConstructor
-@Table(name = "ballots")
+@Table(name = "ballots", uniqueConstraints =
+        @UniqueConstraint(name = "uk_ballots_voter_election", columnNames = {"voter_id", "election_id"}),
+        indexes = @Index(name = "idx_ballots_cast_at", columnList = "castAt")) // journal catch-up reads the tail
 public class Ballot {
 
     @Id
@@ -33,4 +35,7 @@ public class Ballot {
     private boolean vvpGenerated = false;
     private String vvpPath;
     private String auditHash;
+
+    /** Position of this ballot's leaf in its election's audit tree; null until assigned. */
+    private Integer auditLeafIndex;
 }
@@ -27,18 +27,10 @@ public class Voter {
     private LocalDateTime dob;
     private LocalDateTime registeredAt = LocalDateTime.now();
 
-    @Column(columnDefinition = "BYTEA")
-    private byte[] leftTemplate;
-
-    @Column(columnDefinition = "BYTEA")
-
-    private byte[] rightTemplate;
-
     private boolean leftRegistered = false;
     private boolean rightRegistered = false;
     private boolean hasVoted = false;
     private LocalDateTime lastVotedAt;
 
-    @Column(columnDefinition = "BYTEA")
-    private byte[] templateEncryptionKey; // QKD session key
+    // templates and key live in VoterBiometrics
 }
@@ -0,0 +1,30 @@
+package com.quantum.voting.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.util.UUID;
+
+/**
+ * Encrypted palm templates and their key, kept out of the hot voters table.
+ * Shares the voter's primary key and is only read on the matching path.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "voter_biometrics")
+public class VoterBiometrics {
+
+    @Id
+    private UUID voterId;
+
+    @Column(columnDefinition = "BYTEA")
+    private byte[] leftTemplate;
+
+    @Column(columnDefinition = "BYTEA")
+    private byte[] rightTemplate;
+
+    @Column(columnDefinition = "BYTEA")
+    private byte[] templateEncryptionKey; // QKD session key
+}
@@ -0,0 +1,33 @@
+package com.quantum.voting.entity;
+
+import jakarta.persistence.*;
+import lombok.*;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Outbox row for a VVPAT still to be rendered; written in the vote transaction.
+ */
+@Entity
+@Getter
+@Setter
+@NoArgsConstructor
+@AllArgsConstructor
+@Table(name = "vvpat_outbox", indexes = @Index(name = "idx_vvpat_outbox_status", columnList = "status, createdAt"))
+public class VvpatJob {
+
+    public static final String PENDING = "PENDING";
+    public static final String DONE = "DONE";
+    public static final String FAILED = "FAILED";
+
+    @Id
+    private UUID ballotId;
+
+    @Column(nullable = false)
+    private String status = PENDING; // PENDING / DONE / FAILED
+
+    private int attempts = 0;
+    private String lastError;
+    private LocalDateTime createdAt = LocalDateTime.now();
+    private LocalDateTime updatedAt;
+}
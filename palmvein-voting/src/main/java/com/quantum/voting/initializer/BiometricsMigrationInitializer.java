@@ -0,0 +1,72 @@
+package com.quantum.voting.initializer;
+
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.CommandLineRunner;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+/**
+ * Move of templates from the legacy voters columns into voter_biometrics.
+ * The copy only inserts voters that have no voter_biometrics row yet, so it can run on
+ * every start while the columns exist; a row already there (re-enrolled since) is kept
+ * and counted. Hibernate's ddl update never drops columns, and this only does so when
+ * biometrics.migration.drop-legacy-columns is set and every legacy voter is verified to
+ * have a row, in the same transaction as the copy.
+ */
+@Component
+@RequiredArgsConstructor
+public class BiometricsMigrationInitializer implements CommandLineRunner {
+
+    private static final String HAS_LEGACY = "(v.left_template IS NOT NULL OR v.right_template IS NOT NULL " +
+            "OR v.template_encryption_key IS NOT NULL)";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    @Value("${biometrics.migration.drop-legacy-columns:false}")
+    private boolean dropLegacyColumns;
+
+    @Override
+    public void run(String... args) {
+        Integer legacy = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM information_schema.columns " +
+                        "WHERE table_name = 'voters' AND column_name = 'left_template'",
+                Integer.class);
+        if (legacy == null || legacy == 0) return;
+
+        transactionTemplate.executeWithoutResult(status -> {
+            int copied = jdbcTemplate.update(
+                    "INSERT INTO voter_biometrics (voter_id, left_template, right_template, template_encryption_key) " +
+                            "SELECT v.voter_id, v.left_template, v.right_template, v.template_encryption_key " +
+                            "FROM voters v WHERE " + HAS_LEGACY + " " +
+                            "ON CONFLICT (voter_id) DO NOTHING");
+            long withLegacy = count("SELECT COUNT(*) FROM voters v WHERE " + HAS_LEGACY);
+            long missing = count("SELECT COUNT(*) FROM voters v WHERE " + HAS_LEGACY +
+                    " AND NOT EXISTS (SELECT 1 FROM voter_biometrics b WHERE b.voter_id = v.voter_id)");
+            // templates may differ only in framing; a different key means a newer enrolment
+            long newer = count("SELECT COUNT(*) FROM voters v JOIN voter_biometrics b ON b.voter_id = v.voter_id " +
+                    "WHERE " + HAS_LEGACY + " AND b.template_encryption_key IS DISTINCT FROM v.template_encryption_key");
+
+            System.out.println("Biometrics migration: " + withLegacy + " voters with legacy templates, "
+                    + copied + " copied now, " + newer + " kept their newer voter_biometrics row, "
+                    + missing + " not in voter_biometrics");
+
+            if (missing != 0) {
+                System.out.println("WARNING: legacy template columns kept, " + missing + " voters were not copied");
+            } else if (!dropLegacyColumns) {
+                System.out.println("Legacy template columns kept; set biometrics.migration.drop-legacy-columns=true to drop them");
+            } else {
+                jdbcTemplate.execute("ALTER TABLE voters DROP COLUMN left_template, " +
+                        "DROP COLUMN right_template, DROP COLUMN template_encryption_key");
+                System.out.println("Legacy template columns dropped from voters");
+            }
+        });
+    }
+
+    private long count(String sql) {
+        Long n = jdbcTemplate.queryForObject(sql, Long.class);
+        return n == null ? 0 : n;
+    }
+}
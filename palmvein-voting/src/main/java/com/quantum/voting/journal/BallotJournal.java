@@ -0,0 +1,331 @@
+package com.quantum.voting.journal;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.actuate.health.Health;
+import org.springframework.boot.actuate.health.HealthIndicator;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.security.MessageDigest;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.ZoneOffset;
+import java.util.Base64;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Tamper-evident copy of every committed ballot, next to Postgres.
+ * Each vote is appended after its row commits and the request waits for the
+ * group fsync. On startup the chain is verified, then topped up from the ballots
+ * table with anything it is missing (first run, or a crash between the two
+ * writes), so replaying it always covers the database. Only the tail is compared
+ * id by id: ballots cast from the journal's latest cast_at minus
+ * journal.catch-up-window-seconds on. Older ones are compared by count, and only
+ * when the counts differ is the whole table read.
+ * <p>
+ * The journal's header names the database it was written for (a random id kept
+ * in ballot_journal_identity). A journal written for another database, or one
+ * without a header that holds ballots this database lacks, is moved aside and
+ * rebuilt from the ballots table. A journal of this database that holds ballots
+ * the table lacks (a restore from backup) stops startup: those are acknowledged
+ * votes, and replaying it would mark their voters as having voted.
+ * <p>
+ * A failed append or fsync cannot be retried safely, so the journal then reports
+ * DEGRADED on /actuator/health until a restart re-journals the missing ballots from
+ * the database; each vote acknowledged without a durable record counts toward
+ * palmvein.journal.failures.
+ */
+@Component
+@DependsOn("entityManagerFactory") // catch-up reads the ballots table
+public class BallotJournal implements HealthIndicator {
+
+    public static final Status DEGRADED = new Status("DEGRADED", "Ballots are committed without a durable journal record");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final boolean enabled;
+    private final String dir;
+    private final long segmentBytes;
+    private final long groupCommitMicros;
+    private final long catchUpWindowMicros;
+    private final Counter appendFailures;
+    private final Counter syncFailures;
+    // the first failure since start; the file refuses every later append
+    private final AtomicReference<String> failure = new AtomicReference<>();
+    private JournalFile file;
+
+    public BallotJournal(JdbcTemplate jdbcTemplate,
+                         MeterRegistry registry,
+                         @Value("${journal.enabled:true}") boolean enabled,
+                         @Value("${journal.dir:journal/}") String dir,
+                         @Value("${journal.segment-bytes:67108864}") long segmentBytes,
+                         @Value("${journal.group-commit-micros:200}") long groupCommitMicros,
+                         @Value("${journal.catch-up-window-seconds:600}") long catchUpWindowSeconds) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.enabled = enabled;
+        this.dir = dir;
+        this.segmentBytes = segmentBytes;
+        this.groupCommitMicros = groupCommitMicros;
+        this.catchUpWindowMicros = catchUpWindowSeconds * 1_000_000L;
+        this.appendFailures = failures(registry, "append");
+        this.syncFailures = failures(registry, "sync");
+        Gauge.builder("palmvein.journal.degraded", failure, f -> f.get() == null ? 0 : 1)
+                .description("1 once the ballot journal has failed; cleared by a restart")
+                .register(registry);
+    }
+
+    private static Counter failures(MeterRegistry registry, String stage) {
+        return Counter.builder("palmvein.journal.failures")
+                .description("Ballots acknowledged without a durable journal record")
+                .tags("stage", stage)
+                .register(registry);
+    }
+
+    @PostConstruct
+    public void open() throws IOException {
+        if (!enabled) return;
+        long started = System.currentTimeMillis();
+        Path path = Paths.get(dir);
+        UUID identity = databaseIdentity();
+        UUID recorded = JournalFile.readIdentity(path);
+        if (recorded != null && !recorded.equals(identity)) {
+            setAside(path, "it was written for database " + recorded + ", this is " + identity);
+        }
+        boolean headerless = recorded == null && JournalFile.hasSegments(path);
+
+        file = new JournalFile(path, segmentBytes, groupCommitMicros);
+        System.out.println("Ballot journal verified: " + file.size() + " records in "
+                + (System.currentTimeMillis() - started) + " ms");
+        Tail tail = tail();
+        long foreign = foreignBallots(tail);
+        if (foreign > 0 && headerless) {
+            file.close();
+            setAside(path, "it has no header and holds " + foreign + " ballots this database does not");
+            file = new JournalFile(path, segmentBytes, groupCommitMicros);
+            tail = tail();
+        } else if (foreign > 0) {
+            file.close();
+            file = null;
+            throw new IllegalStateException("Ballot journal " + path.toAbsolutePath() + " holds " + foreign
+                    + " acknowledged ballots missing from the database; restore them, or move the journal aside");
+        }
+        if (!identity.equals(recorded)) JournalFile.writeIdentity(path, identity);
+        catchUp(tail);
+    }
+
+    public boolean isEnabled() {
+        return file != null;
+    }
+
+    /**
+     * Append a committed ballot; returns its sequence number, or 0 when the journal
+     * is off or the append failed. A failure is not thrown: the vote already stands
+     * in Postgres and the next start re-adds it. It degrades the journal instead.
+     */
+    public long append(UUID ballotId, UUID electionId, UUID candidateId, UUID voterId,
+                       LocalDateTime castAt, byte[] auditDigest) {
+        if (file == null) return 0;
+        try {
+            return file.append(ballotId, electionId, candidateId, voterId, micros(castAt), auditDigest);
+        } catch (IOException e) {
+            appendFailures.increment();
+            degrade("append failed for ballot " + ballotId + ": " + e.getMessage());
+            return 0;
+        }
+    }
+
+    /**
+     * Wait for the group fsync that covers {@code seq}; false if it never reached disk,
+     * in which case the journal is degraded.
+     */
+    public boolean awaitDurable(long seq) {
+        if (file == null || seq <= 0) return false;
+        try {
+            file.awaitDurable(seq);
+            return true;
+        } catch (IOException e) {
+            syncFailures.increment();
+            degrade("sync failed at seq " + seq + ": " + e.getMessage());
+            return false;
+        }
+    }
+
+    private void degrade(String why) {
+        if (failure.compareAndSet(null, why)) {
+            System.out.println("WARNING: ballot journal degraded, votes are kept in Postgres only until restart: " + why);
+        }
+    }
+
+    @Override
+    public Health health() {
+        Health.Builder health = failure.get() != null ? Health.status(DEGRADED) : Health.up();
+        return health.withDetails(status()).build();
+    }
+
+    /**
+     * Verified, in-order pass over every journaled ballot.
+     */
+    public void replay(Consumer<JournalFile.Entry> consumer) throws IOException {
+        if (file == null) throw new IllegalStateException("Ballot journal is disabled");
+        file.replay(consumer);
+    }
+
+    public Map<String, Object> status() {
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("enabled", file != null);
+        if (file != null) {
+            status.put("records", file.size());
+            status.put("head", Base64.getEncoder().encodeToString(file.headHash()));
+        }
+        if (failure.get() != null) status.put("failure", failure.get());
+        return status;
+    }
+
+    @PreDestroy
+    public void close() throws IOException {
+        if (file != null) file.close();
+    }
+
+    // the id this database's journal must carry, created on first use
+    private UUID databaseIdentity() {
+        jdbcTemplate.execute("CREATE TABLE IF NOT EXISTS ballot_journal_identity (" +
+                "journal_id uuid PRIMARY KEY, created_at timestamp NOT NULL DEFAULT now())");
+        List<UUID> ids = jdbcTemplate.queryForList(
+                "SELECT journal_id FROM ballot_journal_identity ORDER BY created_at LIMIT 1", UUID.class);
+        if (!ids.isEmpty()) return ids.get(0);
+        UUID id = UUID.randomUUID();
+        jdbcTemplate.update("INSERT INTO ballot_journal_identity (journal_id) VALUES (?)", id);
+        return id;
+    }
+
+    /**
+     * The ballots compared id by id at startup: cast_at from {@code from} (epoch micros) on,
+     * and the ids the journal holds in that stretch.
+     */
+    private record Tail(long from, Set<UUID> journaled) {
+
+        boolean whole() {
+            return from == Long.MIN_VALUE;
+        }
+
+        String where() {
+            return whole() ? "" : " WHERE cast_at >= ?";
+        }
+
+        Object[] args() {
+            return whole() ? new Object[0] : new Object[]{timestamp(from)};
+        }
+    }
+
+    // older than the window, the journal and the table were matched at an earlier start; a count shows if that still holds
+    private Tail tail() throws IOException {
+        if (file.size() == 0) return new Tail(Long.MIN_VALUE, Set.of());
+        long from = file.maxCastAtMicros() - catchUpWindowMicros;
+        Set<UUID> journaled = new HashSet<>();
+        long[] older = {0};
+        file.replay(e -> {
+            if (e.castAtMicros() >= from) journaled.add(e.ballotId());
+            else older[0]++;
+        });
+        Long tableOlder = jdbcTemplate.queryForObject(
+                "SELECT count(*) FROM ballots WHERE cast_at < ? OR cast_at IS NULL", Long.class, timestamp(from));
+        if (tableOlder != null && tableOlder == older[0]) return new Tail(from, journaled);
+
+        System.out.println("Ballot journal holds " + older[0] + " ballots cast before " + timestamp(from)
+                + ", the database " + tableOlder + "; comparing all ballots");
+        Set<UUID> all = new HashSet<>();
+        file.replay(e -> all.add(e.ballotId()));
+        return new Tail(Long.MIN_VALUE, all);
+    }
+
+    // journaled ballots of the tail the ballots table does not have
+    private long foreignBallots(Tail tail) {
+        if (tail.journaled().isEmpty()) return 0;
+        long[] found = {0};
+        jdbcTemplate.query("SELECT ballot_id FROM ballots" + tail.where(), rs -> {
+            if (tail.journaled().contains(rs.getObject(1, UUID.class))) found[0]++;
+        }, tail.args());
+        return tail.journaled().size() - found[0];
+    }
+
+    // keep a journal we will not use, under journal/set-aside-<time>/
+    private static void setAside(Path path, String reason) throws IOException {
+        Path target = path.resolve("set-aside-" + System.currentTimeMillis());
+        Files.createDirectories(target);
+        try (Stream<Path> files = Files.list(path)) {
+            for (Path f : files.filter(Files::isRegularFile).toList()) {
+                Files.move(f, target.resolve(f.getFileName()));
+            }
+        }
+        System.out.println("WARNING: ballot journal moved to " + target + " and rebuilt from the database: " + reason);
+    }
+
+    // append every ballot of the tail the journal does not have yet
+    private void catchUp(Tail tail) throws IOException {
+        long[] added = {0};
+        jdbcTemplate.query("SELECT ballot_id, election_id, candidate_id, voter_id, cast_at, audit_hash " +
+                "FROM ballots" + tail.where() + " ORDER BY audit_leaf_index NULLS LAST, cast_at, ballot_id", rs -> {
+            UUID ballotId = rs.getObject(1, UUID.class);
+            if (tail.journaled().contains(ballotId)) return;
+            Timestamp castAt = rs.getTimestamp(5);
+            try {
+                file.append(ballotId, rs.getObject(2, UUID.class), rs.getObject(3, UUID.class),
+                        rs.getObject(4, UUID.class), castAt == null ? 0 : micros(castAt.toLocalDateTime()),
+                        auditDigest(rs.getString(6)));
+            } catch (IOException e) {
+                throw new UncheckedIOException(e);
+            }
+            added[0]++;
+        }, tail.args());
+        file.awaitDurable(file.size());
+        System.out.println("Ballot journal caught up: " + added[0] + " ballots added from the database");
+    }
+
+    private static long micros(LocalDateTime t) {
+        return t.toEpochSecond(ZoneOffset.UTC) * 1_000_000L + t.getNano() / 1_000;
+    }
+
+    private static Timestamp timestamp(long micros) {
+        return Timestamp.valueOf(LocalDateTime.ofEpochSecond(Math.floorDiv(micros, 1_000_000L),
+                (int) Math.floorMod(micros, 1_000_000L) * 1_000, ZoneOffset.UTC));
+    }
+
+    /**
+     * The 32 bytes stored for an audit hash: the decoded Base64 SHA-256, or a digest
+     * of anything else so it still fits.
+     */
+    public static byte[] auditDigest(String auditHash) {
+        if (auditHash == null) return new byte[32];
+        try {
+            byte[] raw = Base64.getDecoder().decode(auditHash);
+            if (raw.length == 32) return raw;
+        } catch (IllegalArgumentException ignored) {
+            // fall through
+        }
+        try {
+            return MessageDigest.getInstance("SHA-256").digest(auditHash.getBytes(StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
@@ -0,0 +1,456 @@
+package com.quantum.voting.journal;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.LockSupport;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Consumer;
+import java.util.stream.Stream;
+
+/**
+ * Append-only, hash-chained ballot log in fixed-size memory-mapped segments.
+ * <p>
+ * Record layout (148 bytes, big-endian):
+ * <pre>
+ *   0  int   magic
+ *   4  long  seq (1-based, contiguous)
+ *  12  16B   ballotId | 28 electionId | 44 candidateId | 60 voterId
+ *  76  long  castAt, epoch micros (UTC wall clock)
+ *  84  32B   audit hash
+ * 116  32B   chain = SHA-256(previous chain || bytes 0..115)
+ * </pre>
+ * Appends copy into the mapping under a lock; a single sync thread forces the
+ * dirty range and wakes every waiter it covered, so concurrent votes share one
+ * fsync (group commit). Opening replays and verifies the whole chain. Within the
+ * last segment the log ends at the first record that is empty or does not chain:
+ * the mapping can reach disk out of order on power loss, so later pages may
+ * survive an earlier lost one, and none of those records were acknowledged. They
+ * are wiped and counted. Earlier segments were forced whole before the next one
+ * was opened, so any break there is reported as tampering.
+ * <p>
+ * {@code ballots.header} names the database the journal belongs to (see
+ * {@link #readIdentity}); the segments themselves do not depend on it.
+ */
+public class JournalFile implements AutoCloseable {
+
+    public record Entry(long seq, UUID ballotId, UUID electionId, UUID candidateId, UUID voterId,
+                        long castAtMicros, byte[] auditHash, byte[] chainHash) {}
+
+    public static final int RECORD_BYTES = 148;
+    static final int MAGIC = 0x42414C31; // "BAL1"
+    private static final int BODY_BYTES = 116;
+    private static final int HASH_BYTES = 32;
+    private static final byte[] ZERO_CHUNK = new byte[64 * 1024];
+    private static final String HEADER_FILE = "ballots.header";
+    private static final int HEADER_MAGIC = 0x42484431; // "BHD1"
+
+    private final Path dir;
+    private final int recordsPerSegment;
+    private final long groupCommitNanos;
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition dirty = lock.newCondition();
+    private final Condition synced = lock.newCondition();
+    private final MessageDigest digest = sha256();
+    private final byte[] body = new byte[BODY_BYTES];
+
+    private int segmentNo;
+    private FileChannel channel;
+    private MappedByteBuffer buffer;
+    private int writePos;          // bytes used in the current segment
+    private int syncedPos;         // bytes forced in the current segment
+    private long lastSeq;
+    private long durableSeq;
+    private long maxCastAtMicros = Long.MIN_VALUE;
+    private byte[] lastHash = new byte[HASH_BYTES];
+    private IOException failure;
+    private boolean closed;
+    private final Thread syncer;
+
+    public JournalFile(Path dir, long segmentBytes, long groupCommitMicros) throws IOException {
+        this.dir = dir;
+        this.recordsPerSegment = (int) Math.max(1, Math.min(segmentBytes, Integer.MAX_VALUE) / RECORD_BYTES);
+        this.groupCommitNanos = TimeUnit.MICROSECONDS.toNanos(Math.max(0, groupCommitMicros));
+        Files.createDirectories(dir);
+
+        List<Path> segments = segments();
+        if (segments.isEmpty()) {
+            openSegment(1);
+        } else {
+            verify(segments, null, true);
+        }
+        durableSeq = lastSeq;
+
+        syncer = new Thread(this::syncLoop, "ballot-journal-sync");
+        syncer.setDaemon(true);
+        syncer.start();
+    }
+
+    /**
+     * Append one ballot; returns its sequence number. Not durable until {@link #awaitDurable}.
+     */
+    public long append(UUID ballotId, UUID electionId, UUID candidateId, UUID voterId,
+                       long castAtMicros, byte[] auditHash) throws IOException {
+        lock.lock();
+        try {
+            if (closed) throw new IOException("Ballot journal is closed");
+            if (failure != null) throw failure;
+            if (writePos + RECORD_BYTES > recordsPerSegment * RECORD_BYTES) rollOver();
+
+            long seq = lastSeq + 1;
+            ByteBuffer b = ByteBuffer.wrap(body);
+            b.putInt(MAGIC).putLong(seq);
+            putUuid(b, ballotId);
+            putUuid(b, electionId);
+            putUuid(b, candidateId);
+            putUuid(b, voterId);
+            b.putLong(castAtMicros);
+            b.put(auditHash, 0, HASH_BYTES);
+
+            digest.update(lastHash);
+            digest.update(body);
+            byte[] chain = digest.digest();
+
+            buffer.put(writePos, body);
+            buffer.put(writePos + BODY_BYTES, chain);
+            writePos += RECORD_BYTES;
+            lastSeq = seq;
+            lastHash = chain;
+            maxCastAtMicros = Math.max(maxCastAtMicros, castAtMicros);
+            dirty.signal();
+            return seq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Block until the record with this sequence number has been forced to disk.
+     */
+    public void awaitDurable(long seq) throws IOException {
+        lock.lock();
+        try {
+            while (durableSeq < seq) {
+                if (failure != null) throw failure;
+                if (closed) throw new IOException("Ballot journal is closed");
+                synced.awaitUninterruptibly();
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long size() {
+        lock.lock();
+        try {
+            return lastSeq;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Latest cast time in the log (epoch micros), or Long.MIN_VALUE when it is empty.
+     */
+    public long maxCastAtMicros() {
+        lock.lock();
+        try {
+            return maxCastAtMicros;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public byte[] headHash() {
+        lock.lock();
+        try {
+            return lastHash.clone();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Stream every record from disk in order, verifying the chain on the way.
+     * Only records durable at call time are guaranteed to be seen.
+     */
+    public void replay(Consumer<Entry> consumer) throws IOException {
+        verify(segments(), consumer, false);
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            dirty.signal();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+        try {
+            syncer.join(5_000);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        lock.lock();
+        try {
+            if (buffer != null) buffer.force();
+            if (channel != null) channel.close();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void syncLoop() {
+        while (true) {
+            MappedByteBuffer target;
+            int from, to;
+            long upTo;
+            lock.lock();
+            try {
+                while (lastSeq == durableSeq && !closed) dirty.awaitUninterruptibly();
+                if (closed && lastSeq == durableSeq) return;
+            } finally {
+                lock.unlock();
+            }
+
+            // let a few more votes land in the same fsync
+            if (groupCommitNanos > 0) LockSupport.parkNanos(groupCommitNanos);
+
+            lock.lock();
+            try {
+                target = buffer;
+                from = syncedPos;
+                to = writePos;
+                upTo = lastSeq;
+            } finally {
+                lock.unlock();
+            }
+
+            IOException error = null;
+            try {
+                if (to > from) target.force(from, to - from);
+            } catch (UncheckedIOException e) {
+                error = e.getCause();
+            }
+
+            lock.lock();
+            try {
+                if (error != null) {
+                    failure = error;
+                } else {
+                    if (target == buffer) syncedPos = Math.max(syncedPos, to);
+                    durableSeq = Math.max(durableSeq, upTo);
+                }
+                synced.signalAll();
+                if (failure != null) return;
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    // caller holds the lock; the old segment is forced whole before moving on
+    private void rollOver() throws IOException {
+        buffer.force();
+        channel.close();
+        openSegment(segmentNo + 1);
+    }
+
+    private void openSegment(int no) throws IOException {
+        segmentNo = no;
+        channel = FileChannel.open(segmentPath(no), StandardOpenOption.CREATE,
+                StandardOpenOption.READ, StandardOpenOption.WRITE);
+        buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, (long) recordsPerSegment * RECORD_BYTES);
+        writePos = 0;
+        syncedPos = 0;
+    }
+
+    /**
+     * Walk all segments checking magic, sequence and chain. When opening, leave the
+     * last segment mapped for writing right after the last valid record.
+     */
+    private void verify(List<Path> segments, Consumer<Entry> consumer, boolean opening) throws IOException {
+        MessageDigest md = sha256();
+        byte[] prev = new byte[HASH_BYTES];
+        byte[] rec = new byte[RECORD_BYTES];
+        long seq = 0;
+        long maxCastAt = Long.MIN_VALUE;
+
+        for (int s = 0; s < segments.size(); s++) {
+            Path path = segments.get(s);
+            boolean lastSegment = s == segments.size() - 1;
+            try (FileChannel ch = FileChannel.open(path, StandardOpenOption.READ)) {
+                int records = (int) (ch.size() / RECORD_BYTES);
+                MappedByteBuffer in = ch.map(FileChannel.MapMode.READ_ONLY, 0, (long) records * RECORD_BYTES);
+                int pos = 0;
+                for (int r = 0; r < records; r++, pos += RECORD_BYTES) {
+                    in.get(pos, rec);
+                    if (isZero(rec)) {
+                        if (!lastSegment) throw broken(path, seq + 1, "data after end of log");
+                        break;
+                    }
+
+                    md.update(prev);
+                    md.update(rec, 0, BODY_BYTES);
+                    byte[] chain = md.digest();
+                    ByteBuffer b = ByteBuffer.wrap(rec);
+                    boolean ok = b.getInt(0) == MAGIC && b.getLong(4) == seq + 1
+                            && MessageDigest.isEqual(chain, Arrays.copyOfRange(rec, BODY_BYTES, RECORD_BYTES));
+                    if (!ok) {
+                        // in the last segment: torn by a crash, or being written right now
+                        if (!lastSegment) throw broken(path, seq + 1, "hash chain mismatch");
+                        break;
+                    }
+
+                    seq++;
+                    prev = chain;
+                    maxCastAt = Math.max(maxCastAt, b.getLong(76));
+                    if (consumer != null) consumer.accept(decode(rec, chain));
+                }
+                if (opening && lastSegment) {
+                    int dropped = nonZeroRecords(in, pos, records);
+                    lastSeq = seq;
+                    lastHash = prev;
+                    maxCastAtMicros = maxCastAt;
+                    openSegment(segmentNumber(path));
+                    wipe(pos, Math.min(records * RECORD_BYTES, buffer.capacity()));
+                    writePos = pos;
+                    syncedPos = pos;
+                    buffer.force();
+                    if (dropped > 0) {
+                        System.out.println("Ballot journal " + path.getFileName() + ": log ends at seq " + seq
+                                + ", dropped " + dropped + " unacknowledged records after it");
+                    }
+                }
+            }
+        }
+    }
+
+    private static Entry decode(byte[] rec, byte[] chain) {
+        ByteBuffer b = ByteBuffer.wrap(rec);
+        long seq = b.getLong(4);
+        b.position(12);
+        UUID ballot = new UUID(b.getLong(), b.getLong());
+        UUID election = new UUID(b.getLong(), b.getLong());
+        UUID candidate = new UUID(b.getLong(), b.getLong());
+        UUID voter = new UUID(b.getLong(), b.getLong());
+        long castAt = b.getLong();
+        byte[] audit = new byte[HASH_BYTES];
+        b.get(audit);
+        return new Entry(seq, ballot, election, candidate, voter, castAt, audit, chain);
+    }
+
+    private static IOException broken(Path path, long seq, String why) {
+        return new IOException("Ballot journal " + path.getFileName() + " broken at seq " + seq + ": " + why);
+    }
+
+    // records from pos on that hold anything at all
+    private static int nonZeroRecords(MappedByteBuffer in, int pos, int records) {
+        byte[] rec = new byte[RECORD_BYTES];
+        int count = 0;
+        for (int p = pos; p < records * RECORD_BYTES; p += RECORD_BYTES) {
+            in.get(p, rec);
+            if (!isZero(rec)) count++;
+        }
+        return count;
+    }
+
+    // caller holds the lock or is the constructor; zero [from, to) of the open segment
+    private void wipe(int from, int to) {
+        for (int p = from; p < to; p += ZERO_CHUNK.length) {
+            buffer.put(p, ZERO_CHUNK, 0, Math.min(ZERO_CHUNK.length, to - p));
+        }
+    }
+
+    private static boolean isZero(byte[] b) {
+        for (byte x : b) if (x != 0) return false;
+        return true;
+    }
+
+    private static void putUuid(ByteBuffer b, UUID id) {
+        b.putLong(id == null ? 0 : id.getMostSignificantBits());
+        b.putLong(id == null ? 0 : id.getLeastSignificantBits());
+    }
+
+    /**
+     * The database identity recorded in the journal's header, or null for a journal
+     * without one (new, or written before headers existed).
+     */
+    public static UUID readIdentity(Path dir) throws IOException {
+        Path header = dir.resolve(HEADER_FILE);
+        if (!Files.exists(header)) return null;
+        ByteBuffer b = ByteBuffer.wrap(Files.readAllBytes(header));
+        if (b.remaining() < 20 || b.getInt() != HEADER_MAGIC) throw new IOException("Unreadable " + header);
+        return new UUID(b.getLong(), b.getLong());
+    }
+
+    /**
+     * Record the database identity, replacing the header atomically.
+     */
+    public static void writeIdentity(Path dir, UUID identity) throws IOException {
+        Files.createDirectories(dir);
+        ByteBuffer b = ByteBuffer.allocate(28);
+        b.putInt(HEADER_MAGIC);
+        putUuid(b, identity);
+        b.putLong(System.currentTimeMillis());
+        Path tmp = dir.resolve(HEADER_FILE + ".tmp");
+        try (FileChannel ch = FileChannel.open(tmp, StandardOpenOption.CREATE, StandardOpenOption.WRITE,
+                StandardOpenOption.TRUNCATE_EXISTING)) {
+            ch.write(b.flip());
+            ch.force(true);
+        }
+        Files.move(tmp, dir.resolve(HEADER_FILE), StandardCopyOption.ATOMIC_MOVE, StandardCopyOption.REPLACE_EXISTING);
+    }
+
+    /** True if the directory holds journal segments. */
+    public static boolean hasSegments(Path dir) throws IOException {
+        if (!Files.isDirectory(dir)) return false;
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.anyMatch(p -> p.getFileName().toString().matches("ballots-\\d{6}\\.journal"));
+        }
+    }
+
+    private List<Path> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return new ArrayList<>(files
+                    .filter(p -> p.getFileName().toString().matches("ballots-\\d{6}\\.journal"))
+                    .sorted()
+                    .toList());
+        }
+    }
+
+    private Path segmentPath(int no) {
+        return dir.resolve(String.format("ballots-%06d.journal", no));
+    }
+
+    private static int segmentNumber(Path path) {
+        String name = path.getFileName().toString();
+        return Integer.parseInt(name.substring("ballots-".length(), name.length() - ".journal".length()));
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
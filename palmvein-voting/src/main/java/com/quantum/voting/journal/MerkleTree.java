@@ -0,0 +1,133 @@
+package com.quantum.voting.journal;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * Append-only SHA-256 Merkle tree that keeps every level, so an append rehashes
+ * only the path from the new leaf to the root and a proof is read straight out
+ * of the stored nodes. An odd last node is carried up unchanged, which keeps
+ * every level a plain prefix and never rewrites a finished subtree.
+ * <p>
+ * Leaves are SHA-256(0x00 || ballotId || auditHash) and inner nodes
+ * SHA-256(0x01 || left || right). Not thread-safe; callers serialise.
+ */
+public class MerkleTree {
+
+    /** One sibling on the way up; {@code left} means it goes before the running hash. */
+    public record Step(byte[] hash, boolean left) {}
+
+    public record Proof(int leafIndex, int size, byte[] leaf, List<Step> path, byte[] root) {}
+
+    public static final int HASH_BYTES = 32;
+    private static final byte LEAF = 0x00;
+    private static final byte NODE = 0x01;
+
+    private final MessageDigest digest = sha256();
+    private byte[][] levels = new byte[1][HASH_BYTES * 16];
+    private int size;
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Add a leaf hash; returns its index. O(log n) hashes.
+     */
+    public int append(byte[] leaf) {
+        int index = size++;
+        set(0, index, leaf, 0);
+        for (int k = 0; count(k) > 1; k++) {
+            int left = (index >> k) & ~1;
+            int parent = left >> 1;
+            if (left + 1 < count(k)) {
+                digest.update(NODE);
+                digest.update(levels[k], left * HASH_BYTES, HASH_BYTES);
+                digest.update(levels[k], (left + 1) * HASH_BYTES, HASH_BYTES);
+                set(k + 1, parent, digest.digest(), 0);
+            } else {
+                set(k + 1, parent, levels[k], left * HASH_BYTES);
+            }
+        }
+        return index;
+    }
+
+    /** Current root; the hash of nothing for an empty tree. */
+    public byte[] root() {
+        if (size == 0) return sha256().digest();
+        int k = 0;
+        while (count(k) > 1) k++;
+        return node(k, 0);
+    }
+
+    public Proof proof(int index) {
+        if (index < 0 || index >= size) throw new IndexOutOfBoundsException(index);
+        List<Step> path = new ArrayList<>();
+        int idx = index;
+        int k = 0;
+        for (; count(k) > 1; k++) {
+            int sibling = idx ^ 1;
+            if (sibling < count(k)) path.add(new Step(node(k, sibling), sibling < idx));
+            idx >>= 1;
+        }
+        return new Proof(index, size, node(0, index), List.copyOf(path), node(k, 0));
+    }
+
+    public static byte[] leaf(UUID ballotId, byte[] auditHash) {
+        MessageDigest d = sha256();
+        d.update(LEAF);
+        d.update(ByteBuffer.allocate(16)
+                .putLong(ballotId.getMostSignificantBits())
+                .putLong(ballotId.getLeastSignificantBits())
+                .array());
+        d.update(auditHash);
+        return d.digest();
+    }
+
+    /**
+     * What a client does with a proof: fold the path into the leaf and compare to the root.
+     */
+    public static boolean verify(byte[] leaf, List<Step> path, byte[] root) {
+        MessageDigest d = sha256();
+        byte[] h = leaf;
+        for (Step step : path) {
+            d.update(NODE);
+            d.update(step.left() ? step.hash() : h);
+            d.update(step.left() ? h : step.hash());
+            h = d.digest();
+        }
+        return MessageDigest.isEqual(h, root);
+    }
+
+    // nodes at level k for the current size
+    private int count(int k) {
+        return ((size - 1) >> k) + 1;
+    }
+
+    private byte[] node(int k, int i) {
+        return Arrays.copyOfRange(levels[k], i * HASH_BYTES, (i + 1) * HASH_BYTES);
+    }
+
+    private void set(int k, int i, byte[] src, int srcPos) {
+        if (k == levels.length) {
+            levels = Arrays.copyOf(levels, k + 1);
+            levels[k] = new byte[HASH_BYTES * 16];
+        }
+        int end = (i + 1) * HASH_BYTES;
+        if (end > levels[k].length) levels[k] = Arrays.copyOf(levels[k], Math.max(end, levels[k].length * 2));
+        System.arraycopy(src, srcPos, levels[k], i * HASH_BYTES, HASH_BYTES);
+    }
+
+    private static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
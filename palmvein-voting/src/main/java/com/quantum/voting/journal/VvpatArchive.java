@@ -0,0 +1,340 @@
+package com.quantum.voting.journal;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.zip.CRC32;
+
+/**
+ * Append-only store for VVPAT receipt PDFs: a few large segment files instead of
+ * one small file per ballot, with an offset index keyed by ballotId.
+ * <p>
+ * A segment {@code vvpat-NNNNNN.seg} holds records of
+ * <pre>
+ *   0  int   magic
+ *   4  16B   ballotId
+ *  20  int   length
+ *  24  int   CRC-32 of the PDF
+ *  28  ...   PDF bytes
+ * </pre>
+ * and {@code vvpat-NNNNNN.idx} one 32-byte entry per record (ballotId, offset of
+ * the PDF bytes, length, CRC), which is all that is read back at startup. The
+ * first writer to need an fsync forces both files for everyone queued behind it.
+ * Opening re-checks the last segment against its CRCs: entries whose bytes never
+ * reached disk are dropped, records the index missed are re-indexed, and a torn
+ * tail is cut off. Earlier segments were forced when they were closed.
+ */
+public class VvpatArchive implements AutoCloseable {
+
+    public record Location(int segment, long offset, int length, int crc) {
+
+        /** Strong validator: the bytes at a location never change. */
+        public String etag() {
+            return "\"" + Integer.toHexString(crc) + "-" + Integer.toHexString(length) + "\"";
+        }
+    }
+
+    static final int MAGIC = 0x56565031; // "VVP1"
+    private static final int HEADER_BYTES = 28;
+    private static final int INDEX_BYTES = 32;
+
+    private final Path dir;
+    private final long segmentBytes;
+    private final Map<UUID, Location> index = new ConcurrentHashMap<>();
+
+    private final ReentrantLock lock = new ReentrantLock();
+    private final Condition synced = lock.newCondition();
+    private int segmentNo;
+    private FileChannel data;
+    private FileChannel idx;
+    private long dataPos;
+    private long idxPos;
+    private long appended;     // records written since open
+    private long durable;      // records forced since open
+    private boolean syncing;
+    private boolean closed;
+
+    public VvpatArchive(Path dir, long segmentBytes) throws IOException {
+        this.dir = dir;
+        this.segmentBytes = Math.max(segmentBytes, HEADER_BYTES + 1);
+        Files.createDirectories(dir);
+
+        List<Integer> segments = segments();
+        for (int i = 0; i < segments.size() - 1; i++) loadIndex(segments.get(i));
+        openSegment(segments.isEmpty() ? 1 : segments.get(segments.size() - 1));
+        recover();
+    }
+
+    /**
+     * Store a receipt and return once it is on disk. A ballot that is already
+     * archived keeps its first copy (a retried job after a crash), returned once
+     * that copy is on disk too.
+     */
+    public Location put(UUID ballotId, byte[] pdf) throws IOException {
+        Location location;
+        long ticket;
+        lock.lock();
+        try {
+            if (closed) throw new IOException("VVPAT archive is closed");
+            Location existing = index.get(ballotId);
+            if (existing != null) {
+                // its writer may still be waiting for the fsync; everything appended so far covers it
+                ticket = appended;
+                location = existing;
+            } else {
+                location = append(ballotId, pdf);
+                ticket = ++appended;
+            }
+        } finally {
+            lock.unlock();
+        }
+        sync(ticket);
+        return location;
+    }
+
+    // caller holds the lock
+    private Location append(UUID ballotId, byte[] pdf) throws IOException {
+        if (dataPos > 0 && dataPos + HEADER_BYTES + pdf.length > segmentBytes) rollOver();
+
+        CRC32 crc = new CRC32();
+        crc.update(pdf);
+        Location location = new Location(segmentNo, dataPos + HEADER_BYTES, pdf.length, (int) crc.getValue());
+
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        header.putInt(MAGIC);
+        putUuid(header, ballotId);
+        header.putInt(pdf.length).putInt(location.crc()).flip();
+        writeFully(data, header, dataPos);
+        writeFully(data, ByteBuffer.wrap(pdf), location.offset());
+        dataPos = location.offset() + pdf.length;
+
+        writeFully(idx, entry(ballotId, location), idxPos);
+        idxPos += INDEX_BYTES;
+
+        index.put(ballotId, location);
+        return location;
+    }
+
+    public Location get(UUID ballotId) {
+        return index.get(ballotId);
+    }
+
+    /** The segment file holding a location, for serving it straight off disk. */
+    public Path file(Location location) {
+        return segmentPath(location.segment(), ".seg");
+    }
+
+    /** Human-readable pointer for the ballot row, e.g. {@code vvpat-000003.seg@1048604}. */
+    public String locator(Location location) {
+        return file(location).getFileName() + "@" + location.offset();
+    }
+
+    public byte[] read(Location location) throws IOException {
+        try (FileChannel ch = FileChannel.open(file(location), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate(location.length());
+            readFully(ch, buf, location.offset());
+            return buf.array();
+        }
+    }
+
+    public int size() {
+        return index.size();
+    }
+
+    @Override
+    public void close() throws IOException {
+        lock.lock();
+        try {
+            if (closed) return;
+            closed = true;
+            awaitSyncIdle();
+            data.force(false);
+            idx.force(false);
+            data.close();
+            idx.close();
+            synced.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // ------------------------------------------------------------------ group fsync
+
+    /**
+     * Wait until record {@code ticket} is forced. Whoever finds no fsync running
+     * does it, outside the lock, for every record appended so far.
+     */
+    private void sync(long ticket) throws IOException {
+        lock.lock();
+        try {
+            while (durable < ticket) {
+                if (syncing) {
+                    synced.awaitUninterruptibly();
+                    continue;
+                }
+                if (closed) return; // close() forced everything
+                syncing = true;
+                long target = appended;
+                FileChannel d = data, i = idx;
+                lock.unlock();
+                try {
+                    d.force(false);
+                    i.force(false);
+                } finally {
+                    lock.lock();
+                    syncing = false;
+                    synced.signalAll();
+                }
+                durable = Math.max(durable, target);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds the lock; a leader may be forcing the channels we are about to close
+    private void awaitSyncIdle() {
+        while (syncing) synced.awaitUninterruptibly();
+    }
+
+    // caller holds the lock
+    private void rollOver() throws IOException {
+        awaitSyncIdle();
+        data.force(false);
+        idx.force(false);
+        data.close();
+        idx.close();
+        durable = appended;
+        synced.signalAll();
+        openSegment(segmentNo + 1);
+    }
+
+    // ------------------------------------------------------------------ open / recovery
+
+    private void openSegment(int no) throws IOException {
+        segmentNo = no;
+        data = FileChannel.open(segmentPath(no, ".seg"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        idx = FileChannel.open(segmentPath(no, ".idx"),
+                StandardOpenOption.CREATE, StandardOpenOption.READ, StandardOpenOption.WRITE);
+        dataPos = data.size();
+        idxPos = idx.size() - idx.size() % INDEX_BYTES;
+    }
+
+    private void loadIndex(int no) throws IOException {
+        try (FileChannel ch = FileChannel.open(segmentPath(no, ".idx"), StandardOpenOption.READ)) {
+            ByteBuffer buf = ByteBuffer.allocate((int) (ch.size() - ch.size() % INDEX_BYTES));
+            readFully(ch, buf, 0);
+            buf.flip();
+            while (buf.remaining() >= INDEX_BYTES) {
+                UUID ballotId = new UUID(buf.getLong(), buf.getLong());
+                index.put(ballotId, new Location(no, buf.getLong(), buf.getInt(), buf.getInt()));
+            }
+        }
+    }
+
+    // the open segment: keep index entries whose bytes check out, then pick up records past them
+    private void recover() throws IOException {
+        long dataSize = data.size();
+        ByteBuffer entries = ByteBuffer.allocate((int) idxPos);
+        readFully(idx, entries, 0);
+        entries.flip();
+
+        long goodIdx = 0;
+        long goodData = 0;
+        while (entries.remaining() >= INDEX_BYTES) {
+            UUID ballotId = new UUID(entries.getLong(), entries.getLong());
+            Location l = new Location(segmentNo, entries.getLong(), entries.getInt(), entries.getInt());
+            if (l.offset() < HEADER_BYTES || l.length() < 0 || l.offset() + l.length() > dataSize
+                    || crc(l) != l.crc()) break;
+            index.put(ballotId, l);
+            goodIdx += INDEX_BYTES;
+            goodData = l.offset() + l.length();
+        }
+        long dropped = (idxPos - goodIdx) / INDEX_BYTES;
+        idxPos = goodIdx;
+
+        long reindexed = 0;
+        ByteBuffer header = ByteBuffer.allocate(HEADER_BYTES);
+        while (goodData + HEADER_BYTES <= dataSize) {
+            header.clear();
+            readFully(data, header, goodData);
+            header.flip();
+            if (header.getInt() != MAGIC) break;
+            UUID ballotId = new UUID(header.getLong(), header.getLong());
+            Location l = new Location(segmentNo, goodData + HEADER_BYTES, header.getInt(), header.getInt());
+            if (l.length() < 0 || l.offset() + l.length() > dataSize || crc(l) != l.crc()) break;
+            writeFully(idx, entry(ballotId, l), idxPos);
+            idxPos += INDEX_BYTES;
+            index.put(ballotId, l);
+            goodData = l.offset() + l.length();
+            reindexed++;
+        }
+
+        idx.truncate(idxPos);
+        data.truncate(goodData);
+        dataPos = goodData;
+        data.force(false);
+        idx.force(false);
+        if (dropped > 0 || reindexed > 0 || goodData < dataSize) {
+            System.out.println("VVPAT archive recovered " + segmentPath(segmentNo, ".seg").getFileName()
+                    + ": " + dropped + " index entries dropped, " + reindexed + " records re-indexed, "
+                    + (dataSize - goodData) + " torn bytes cut");
+        }
+    }
+
+    private int crc(Location l) throws IOException {
+        ByteBuffer buf = ByteBuffer.allocate(l.length());
+        readFully(data, buf, l.offset());
+        CRC32 crc = new CRC32();
+        crc.update(buf.flip());
+        return (int) crc.getValue();
+    }
+
+    private List<Integer> segments() throws IOException {
+        try (Stream<Path> files = Files.list(dir)) {
+            return files.map(p -> p.getFileName().toString())
+                    .filter(n -> n.matches("vvpat-\\d{6}\\.seg"))
+                    .map(n -> Integer.parseInt(n.substring(6, 12)))
+                    .sorted()
+                    .toList();
+        }
+    }
+
+    private Path segmentPath(int no, String suffix) {
+        return dir.resolve(String.format("vvpat-%06d%s", no, suffix));
+    }
+
+    private static ByteBuffer entry(UUID ballotId, Location l) {
+        ByteBuffer e = ByteBuffer.allocate(INDEX_BYTES);
+        putUuid(e, ballotId);
+        e.putLong(l.offset()).putInt(l.length()).putInt(l.crc());
+        return e.flip();
+    }
+
+    private static void putUuid(ByteBuffer b, UUID id) {
+        b.putLong(id.getMostSignificantBits()).putLong(id.getLeastSignificantBits());
+    }
+
+    private static void writeFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) pos += ch.write(buf, pos);
+    }
+
+    private static void readFully(FileChannel ch, ByteBuffer buf, long pos) throws IOException {
+        while (buf.hasRemaining()) {
+            int n = ch.read(buf, pos);
+            if (n < 0) throw new IOException("Unexpected end of " + ch);
+            pos += n;
+        }
+    }
+}
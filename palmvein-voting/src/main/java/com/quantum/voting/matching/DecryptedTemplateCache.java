@@ -0,0 +1,274 @@
+package com.quantum.voting.matching;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+/**
+ * Short-lived cache of decrypted palm templates (and the voter's key) keyed by
+ * voterId, so a voter retrying a bad capture pays for one decrypt instead of three.
+ * Bounded by entry count, total bytes and TTL; evicted plaintext is zeroed.
+ * Callers only see the arrays inside {@link #withTemplates}, under a read
+ * lock, so an entry can never be wiped while it is being matched.
+ * <p>
+ * A voter with a load in flight has a version that {@link #invalidate} bumps; the
+ * load is kept only if the version is unchanged when it finishes, so a read that
+ * started before a re-enrollment committed is wiped and read again, never cached.
+ */
+@Component
+public class DecryptedTemplateCache {
+
+    @FunctionalInterface
+    public interface Loader {
+        /** Returns {key, left, right}; any may be null. */
+        byte[][] load() throws Exception;
+    }
+
+    @FunctionalInterface
+    public interface TemplateFunction<T> {
+        T apply(byte[] key, byte[] left, byte[] right) throws Exception;
+    }
+
+    private static final class Entry {
+        final byte[] key;
+        final byte[] left;
+        final byte[] right;
+        final long expiresAt;
+        final long bytes;
+        final ReentrantReadWriteLock lock = new ReentrantReadWriteLock();
+        boolean wiped = false;
+
+        Entry(byte[][] plain, long expiresAt) {
+            this.key = plain[0];
+            this.left = plain[1];
+            this.right = plain[2];
+            this.expiresAt = expiresAt;
+            this.bytes = (left == null ? 0 : left.length) + (right == null ? 0 : right.length);
+        }
+
+        void wipe() {
+            lock.writeLock().lock();
+            try {
+                if (key != null) Arrays.fill(key, (byte) 0);
+                if (left != null) Arrays.fill(left, (byte) 0);
+                if (right != null) Arrays.fill(right, (byte) 0);
+                wiped = true;
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+
+    // per-voter version, kept only while a load for that voter is in flight
+    private static final class Load {
+        long version;
+        int loaders;
+    }
+
+    private final LinkedHashMap<UUID, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final HashMap<UUID, Load> loads = new HashMap<>();
+    private final ReentrantLock mapLock = new ReentrantLock();
+    private final int maxEntries;
+    private final long maxBytes;
+    private final long ttlMillis;
+    private long totalBytes = 0;
+
+    public DecryptedTemplateCache(@Value("${palm.template-cache.max-entries:2048}") int maxEntries,
+                                  @Value("${palm.template-cache.max-bytes:67108864}") long maxBytes,
+                                  @Value("${palm.template-cache.ttl-seconds:120}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.maxBytes = maxBytes;
+        this.ttlMillis = ttlSeconds * 1000;
+    }
+
+    /**
+     * Runs fn over the voter's decrypted templates, decrypting via loader on a miss.
+     */
+    public <T> T withTemplates(UUID voterId, Loader loader, TemplateFunction<T> fn) throws Exception {
+        if (maxEntries <= 0 || voterId == null) {
+            Entry once = new Entry(loader.load(), 0);
+            try {
+                return fn.apply(once.key, once.left, once.right);
+            } finally {
+                once.wipe();
+            }
+        }
+
+        while (true) {
+            Entry entry = lookup(voterId);
+            if (entry == null) {
+                entry = load(voterId, loader);
+                // invalidated while it loaded
+                if (entry == null) continue;
+            }
+
+            entry.lock.readLock().lock();
+            try {
+                // evicted between lookup and lock: go round again
+                if (!entry.wiped) return fn.apply(entry.key, entry.left, entry.right);
+            } finally {
+                entry.lock.readLock().unlock();
+            }
+        }
+    }
+
+    /**
+     * Copy of the voter's key if their templates are cached (a vote right after a scan), else null.
+     */
+    public byte[] copyKey(UUID voterId) {
+        if (maxEntries <= 0 || voterId == null) return null;
+        Entry entry = lookup(voterId);
+        if (entry == null) return null;
+
+        entry.lock.readLock().lock();
+        try {
+            return entry.wiped || entry.key == null ? null : entry.key.clone();
+        } finally {
+            entry.lock.readLock().unlock();
+        }
+    }
+
+    /** Whether the voter's templates are cached and not expired. */
+    public boolean contains(UUID voterId) {
+        return maxEntries > 0 && voterId != null && lookup(voterId) != null;
+    }
+
+    public void invalidate(UUID voterId) {
+        Entry removed;
+        mapLock.lock();
+        try {
+            removed = entries.remove(voterId);
+            if (removed != null) totalBytes -= removed.bytes;
+            Load load = loads.get(voterId);
+            if (load != null) load.version++;
+        } finally {
+            mapLock.unlock();
+        }
+        if (removed != null) removed.wipe();
+    }
+
+    public int size() {
+        mapLock.lock();
+        try {
+            return entries.size();
+        } finally {
+            mapLock.unlock();
+        }
+    }
+
+    /** Zero expired plaintext even if nobody asks for it again. */
+    @Scheduled(fixedDelayString = "${palm.template-cache.sweep-millis:15000}")
+    public void sweepExpired() {
+        List<Entry> expired = new ArrayList<>();
+        long now = System.currentTimeMillis();
+        mapLock.lock();
+        try {
+            Iterator<Entry> it = entries.values().iterator();
+            while (it.hasNext()) {
+                Entry e = it.next();
+                if (e.expiresAt <= now) {
+                    it.remove();
+                    totalBytes -= e.bytes;
+                    expired.add(e);
+                }
+            }
+        } finally {
+            mapLock.unlock();
+        }
+        expired.forEach(Entry::wipe);
+    }
+
+    private Entry lookup(UUID voterId) {
+        Entry expired = null;
+        mapLock.lock();
+        try {
+            Entry e = entries.get(voterId);
+            if (e == null) return null;
+            if (e.expiresAt > System.currentTimeMillis()) return e;
+            entries.remove(voterId);
+            totalBytes -= e.bytes;
+            expired = e;
+        } finally {
+            mapLock.unlock();
+        }
+        expired.wipe();
+        return null;
+    }
+
+    /** Load and cache the voter's templates; null if they were invalidated meanwhile. */
+    private Entry load(UUID voterId, Loader loader) throws Exception {
+        Load load;
+        long version;
+        mapLock.lock();
+        try {
+            load = loads.computeIfAbsent(voterId, id -> new Load());
+            load.loaders++;
+            version = load.version;
+        } finally {
+            mapLock.unlock();
+        }
+
+        byte[][] plain;
+        try {
+            plain = loader.load();
+        } catch (Throwable t) {
+            mapLock.lock();
+            try {
+                finished(voterId, load);
+            } finally {
+                mapLock.unlock();
+            }
+            throw t;
+        }
+        return insert(voterId, new Entry(plain, System.currentTimeMillis() + ttlMillis), load, version);
+    }
+
+    // caller holds mapLock
+    private void finished(UUID voterId, Load load) {
+        if (--load.loaders == 0) loads.remove(voterId);
+    }
+
+    private Entry insert(UUID voterId, Entry fresh, Load load, long version) {
+        List<Entry> evicted = new ArrayList<>();
+        Entry winner;
+        mapLock.lock();
+        try {
+            finished(voterId, load);
+            Entry raced = entries.get(voterId);
+            if (load.version != version) {
+                winner = null;
+                evicted.add(fresh);
+            } else if (raced != null) {
+                winner = raced;
+                evicted.add(fresh);
+            } else {
+                winner = fresh;
+                entries.put(voterId, fresh);
+                totalBytes += fresh.bytes;
+                Iterator<Map.Entry<UUID, Entry>> it = entries.entrySet().iterator();
+                while ((entries.size() > maxEntries || totalBytes > maxBytes) && it.hasNext()) {
+                    Entry eldest = it.next().getValue();
+                    if (eldest == fresh) break;
+                    it.remove();
+                    totalBytes -= eldest.bytes;
+                    evicted.add(eldest);
+                }
+            }
+        } finally {
+            mapLock.unlock();
+        }
+        evicted.forEach(Entry::wipe);
+        return winner;
+    }
+}
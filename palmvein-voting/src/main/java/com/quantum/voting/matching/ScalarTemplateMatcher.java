@@ -0,0 +1,29 @@
+package com.quantum.voting.matching;
+
+/**
+ * Reference byte-at-a-time cosine similarity.
+ * Kept as the baseline every other matcher is checked against.
+ */
+public class ScalarTemplateMatcher implements TemplateMatcher {
+
+    @Override
+    public double similarity(byte[] a, byte[] b) {
+        if (a == null || b == null || a.length == 0 || b.length == 0) return 0.0;
+        int len = Math.min(a.length, b.length);
+        double dot = 0.0, magA = 0.0, magB = 0.0;
+        for (int i = 0; i < len; i++) {
+            double va = a[i] & 0xFF;
+            double vb = b[i] & 0xFF;
+            dot += va * vb;
+            magA += va * va;
+            magB += vb * vb;
+        }
+        return cosine(dot, magA, magB);
+    }
+
+    static double cosine(double dot, double magA, double magB) {
+        if (magA == 0.0 || magB == 0.0) return 0.0;
+        double cosine = dot / (Math.sqrt(magA) * Math.sqrt(magB));
+        return Math.min(1.0, Math.max(0.0, cosine));
+    }
+}
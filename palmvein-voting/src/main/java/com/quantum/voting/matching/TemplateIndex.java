@@ -0,0 +1,161 @@
+package com.quantum.voting.matching;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.PriorityQueue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+
+/**
+ * Resident, sharded index of enrolled palm templates for 1:N identification.
+ * Templates are stored as block-averaged sketches so millions of voters fit
+ * in memory; searches fan out across shards on the fork-join pool and return
+ * the top-k voters by best-hand similarity.
+ */
+@Component
+public class TemplateIndex {
+
+    public record Match(UUID voterId, String voterCode, double score) {}
+
+    private record Entry(UUID voterId, String voterCode, byte[] left, byte[] right) {}
+
+    private static final Comparator<Match> BY_SCORE = Comparator.comparingDouble(Match::score);
+
+    private final TemplateMatcher matcher;
+    private final int sketchSize;
+    private final ConcurrentHashMap<UUID, Entry>[] shards;
+    private volatile boolean ready = false;
+
+    @SuppressWarnings("unchecked")
+    public TemplateIndex(TemplateMatcher matcher,
+                         @Value("${palm.index.shards:0}") int shardCount,
+                         @Value("${palm.index.sketch-size:1024}") int sketchSize) {
+        this.matcher = matcher;
+        this.sketchSize = sketchSize;
+        int n = shardCount > 0 ? shardCount : Runtime.getRuntime().availableProcessors() * 2;
+        this.shards = new ConcurrentHashMap[n];
+        for (int i = 0; i < n; i++) shards[i] = new ConcurrentHashMap<>();
+    }
+
+    /**
+     * Adds or refreshes a voter. A null hand keeps whatever was indexed before.
+     */
+    public void put(UUID voterId, String voterCode, byte[] leftPlain, byte[] rightPlain) {
+        byte[] left = leftPlain != null ? sketch(leftPlain) : null;
+        byte[] right = rightPlain != null ? sketch(rightPlain) : null;
+        shardFor(voterId).merge(voterId, new Entry(voterId, voterCode, left, right),
+                (old, now) -> new Entry(voterId, voterCode,
+                        now.left() != null ? now.left() : old.left(),
+                        now.right() != null ? now.right() : old.right()));
+    }
+
+    public void remove(UUID voterId) {
+        shardFor(voterId).remove(voterId);
+    }
+
+    public int size() {
+        int total = 0;
+        for (ConcurrentHashMap<UUID, Entry> shard : shards) total += shard.size();
+        return total;
+    }
+
+    public boolean isReady() {
+        return ready;
+    }
+
+    /** Whether full templates are kept, so search scores are the real similarity. */
+    public boolean isExact() {
+        return sketchSize <= 0;
+    }
+
+    public void markReady() {
+        this.ready = true;
+    }
+
+    /**
+     * Top-k enrolled voters for a decrypted scan, best sketch score first. Sketch
+     * scores are for shortlisting only; they are not comparable to the full-template
+     * acceptance threshold.
+     */
+    public List<Match> search(byte[] scanPlain, int k) {
+        if (scanPlain == null || scanPlain.length == 0 || k <= 0) return List.of();
+        PriorityQueue<Match> top = ForkJoinPool.commonPool()
+                .invoke(new ShardSearch(sketch(scanPlain), k, 0, shards.length));
+        List<Match> result = new ArrayList<>(top);
+        result.sort(BY_SCORE.reversed());
+        return result;
+    }
+
+    private ConcurrentHashMap<UUID, Entry> shardFor(UUID voterId) {
+        return shards[Math.floorMod(voterId.hashCode(), shards.length)];
+    }
+
+    /**
+     * Averages consecutive runs of the template down to sketchSize buckets.
+     */
+    byte[] sketch(byte[] template) {
+        if (sketchSize <= 0 || template.length <= sketchSize) return template.clone();
+        byte[] out = new byte[sketchSize];
+        long len = template.length;
+        for (int bucket = 0; bucket < sketchSize; bucket++) {
+            int from = (int) (bucket * len / sketchSize);
+            int to = (int) ((bucket + 1) * len / sketchSize);
+            int sum = 0;
+            for (int i = from; i < to; i++) sum += template[i] & 0xFF;
+            out[bucket] = (byte) (sum / (to - from));
+        }
+        return out;
+    }
+
+    private class ShardSearch extends RecursiveTask<PriorityQueue<Match>> {
+
+        private final byte[] probe;
+        private final int k;
+        private final int from;
+        private final int to;
+
+        ShardSearch(byte[] probe, int k, int from, int to) {
+            this.probe = probe;
+            this.k = k;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected PriorityQueue<Match> compute() {
+            if (to - from == 1) return scan(shards[from]);
+
+            int mid = (from + to) >>> 1;
+            ShardSearch left = new ShardSearch(probe, k, from, mid);
+            left.fork();
+            PriorityQueue<Match> merged = new ShardSearch(probe, k, mid, to).compute();
+            for (Match m : left.join()) offer(merged, m);
+            return merged;
+        }
+
+        private PriorityQueue<Match> scan(ConcurrentHashMap<UUID, Entry> shard) {
+            PriorityQueue<Match> top = new PriorityQueue<>(k + 1, BY_SCORE);
+            for (Entry e : shard.values()) {
+                double score = Math.max(matcher.similarity(e.left(), probe),
+                        matcher.similarity(e.right(), probe));
+                if (score > 0.0) offer(top, new Match(e.voterId(), e.voterCode(), score));
+            }
+            return top;
+        }
+
+        private void offer(PriorityQueue<Match> top, Match m) {
+            if (top.size() < k) {
+                top.add(m);
+            } else if (m.score() > top.peek().score()) {
+                top.poll();
+                top.add(m);
+            }
+        }
+    }
+}
@@ -0,0 +1,15 @@
+package com.quantum.voting.matching;
+
+/**
+ * Scores a decrypted palm template against a freshly scanned one.
+ * Implementations must return the clamped cosine similarity in [0, 1]
+ * over the common prefix of both arrays, treating bytes as unsigned.
+ */
+public interface TemplateMatcher {
+
+    double similarity(byte[] a, byte[] b);
+
+    default String name() {
+        return getClass().getSimpleName();
+    }
+}
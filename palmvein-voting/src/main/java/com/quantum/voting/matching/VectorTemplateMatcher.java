@@ -0,0 +1,63 @@
+package com.quantum.voting.matching;
+
+import jdk.incubator.vector.ByteVector;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+/**
+ * SIMD cosine similarity using the Vector API.
+ * Bytes are widened into int lanes (masked to unsigned) and multiply-accumulated; the int
+ * accumulators are drained into longs before they can overflow, so the sums
+ * are exact and the score matches {@link ScalarTemplateMatcher} bit for bit.
+ * Requires {@code --add-modules jdk.incubator.vector} at compile and run time.
+ */
+public class VectorTemplateMatcher implements TemplateMatcher {
+
+    private static final VectorSpecies<Byte> BYTES = ByteVector.SPECIES_PREFERRED;
+    private static final VectorSpecies<Integer> INTS = IntVector.SPECIES_PREFERRED;
+    private static final int PARTS = BYTES.length() / INTS.length();
+
+    // lanes are reduced in int arithmetic, so bound the sum across all lanes:
+    // each step adds at most BYTES.length() * 255 * 255
+    private static final int STEPS_PER_DRAIN = Integer.MAX_VALUE / (BYTES.length() * 255 * 255);
+
+    @Override
+    public double similarity(byte[] a, byte[] b) {
+        if (a == null || b == null || a.length == 0 || b.length == 0) return 0.0;
+        int len = Math.min(a.length, b.length);
+        int upper = BYTES.loopBound(len);
+
+        long dot = 0, magA = 0, magB = 0;
+        int i = 0;
+        while (i < upper) {
+            IntVector accDot = IntVector.zero(INTS);
+            IntVector accA = IntVector.zero(INTS);
+            IntVector accB = IntVector.zero(INTS);
+            int stop = Math.min(upper, i + STEPS_PER_DRAIN * BYTES.length());
+            for (; i < stop; i += BYTES.length()) {
+                ByteVector va = ByteVector.fromArray(BYTES, a, i);
+                ByteVector vb = ByteVector.fromArray(BYTES, b, i);
+                for (int part = 0; part < PARTS; part++) {
+                    IntVector ia = ((IntVector) va.convertShape(VectorOperators.B2I, INTS, part)).and(0xFF);
+                    IntVector ib = ((IntVector) vb.convertShape(VectorOperators.B2I, INTS, part)).and(0xFF);
+                    accDot = accDot.add(ia.mul(ib));
+                    accA = accA.add(ia.mul(ia));
+                    accB = accB.add(ib.mul(ib));
+                }
+            }
+            dot += accDot.reduceLanesToLong(VectorOperators.ADD);
+            magA += accA.reduceLanesToLong(VectorOperators.ADD);
+            magB += accB.reduceLanesToLong(VectorOperators.ADD);
+        }
+
+        for (; i < len; i++) {
+            int va = a[i] & 0xFF;
+            int vb = b[i] & 0xFF;
+            dot += va * vb;
+            magA += va * va;
+            magB += vb * vb;
+        }
+        return ScalarTemplateMatcher.cosine(dot, magA, magB);
+    }
+}
@@ -1,12 +1,23 @@
 package com.quantum.voting.repository;
 
 import com.quantum.voting.entity.Ballot;
-import com.quantum.voting.entity.Election;
-import com.quantum.voting.entity.Voter;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
+import java.util.List;
 import java.util.UUID;
 
 public interface BallotRepository extends JpaRepository<Ballot, UUID> {
-    boolean existsByVoterAndElection(Voter voter, Election election);
+    @Query("select b.candidate.candidateId, count(b) from Ballot b group by b.candidate.candidateId")
+    List<Object[]> countByCandidate();
+
+    @Query("select b.candidate.candidateId, count(b) from Ballot b where b.election.electionId = :electionId " +
+            "group by b.candidate.candidateId")
+    List<Object[]> countByCandidate(@Param("electionId") UUID electionId);
+
+    @Modifying
+    @Query("update Ballot b set b.vvpPath = :path, b.vvpGenerated = true where b.ballotId = :ballotId")
+    int markVvpGenerated(@Param("ballotId") UUID ballotId, @Param("path") String path);
 }
@@ -1,7 +1,27 @@
 package com.quantum.voting.repository;
 import com.quantum.voting.entity.Candidate;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
 
+import java.util.List;
 import java.util.UUID;
 
-public interface CandidateRepository extends JpaRepository<Candidate, UUID> {}
+public interface CandidateRepository extends JpaRepository<Candidate, UUID> {
+
+    List<Candidate> findByElectionElectionId(UUID electionId);
+
+    @Transactional
+    @Modifying
+    @Query("update Candidate c set c.votesCount = " +
+            "(select count(b) from Ballot b where b.candidate = c)")
+    int reconcileVotesFromBallots();
+
+    @Transactional
+    @Modifying
+    @Query("update Candidate c set c.votesCount = " +
+            "(select count(b) from Ballot b where b.candidate = c) where c.election.electionId = :electionId")
+    int reconcileVotesFromBallots(@Param("electionId") UUID electionId);
+}
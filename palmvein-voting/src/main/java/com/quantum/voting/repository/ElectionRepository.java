@@ -3,10 +3,15 @@ package com.quantum.voting.repository;
 import com.quantum.voting.entity.Election;
 
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 import java.util.List;
 import java.util.UUID;
 
 public interface ElectionRepository extends JpaRepository<Election, UUID> {
     List<Election> findByStatus(String status);
-}
\ No newline at end of file
+
+    @Query("select distinct e from Election e left join fetch e.candidates where e.status = :status")
+    List<Election> findWithCandidatesByStatus(@Param("status") String status);
+}
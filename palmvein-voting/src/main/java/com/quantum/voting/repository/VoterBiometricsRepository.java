@@ -0,0 +1,36 @@
+package com.quantum.voting.repository;
+
+import com.quantum.voting.entity.VoterBiometrics;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface VoterBiometricsRepository extends JpaRepository<VoterBiometrics, UUID> {
+
+    @Query("select b.templateEncryptionKey from VoterBiometrics b where b.voterId = :voterId")
+    byte[] findKeyByVoterId(@Param("voterId") UUID voterId);
+
+    /** {VoterBiometrics, voterCode} pairs in voterId order, for warming the identification index. */
+    @Query("select b, v.voterCode from VoterBiometrics b, Voter v where v.voterId = b.voterId " +
+            "and b.voterId > :after order by b.voterId")
+    List<Object[]> findWithVoterCodeAfter(@Param("after") UUID after, Pageable page);
+
+    /**
+     * Compare-and-set: writes only if the row still holds {@code oldLeft}/{@code oldRight},
+     * so a rewrite racing a re-enrolment cannot put the old ciphertext back. Returns 0 if it lost.
+     */
+    @Transactional
+    @Modifying
+    @Query("update VoterBiometrics b set b.leftTemplate = :left, b.rightTemplate = :right where b.voterId = :voterId " +
+            "and (b.leftTemplate = :oldLeft or (b.leftTemplate is null and :oldLeft is null)) " +
+            "and (b.rightTemplate = :oldRight or (b.rightTemplate is null and :oldRight is null))")
+    int updateTemplates(@Param("voterId") UUID voterId,
+                        @Param("oldLeft") byte[] oldLeft, @Param("oldRight") byte[] oldRight,
+                        @Param("left") byte[] left, @Param("right") byte[] right);
+}
@@ -2,9 +2,20 @@ package com.quantum.voting.repository;
 
 import com.quantum.voting.entity.Voter;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
+
+import java.util.Collection;
+import java.util.List;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 public interface VoterRepository extends JpaRepository<Voter, UUID> {
     Optional<Voter> findByVoterCode(String voterCode);
+
+    List<Voter> findByVoterCodeIn(Collection<String> voterCodes);
+
+    @Query("select v.voterCode from Voter v where v.voterCode in :codes")
+    Set<String> findExistingVoterCodes(@Param("codes") Collection<String> codes);
 }
@@ -0,0 +1,12 @@
+package com.quantum.voting.repository;
+
+import com.quantum.voting.entity.VvpatJob;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.JpaRepository;
+
+import java.util.List;
+import java.util.UUID;
+
+public interface VvpatJobRepository extends JpaRepository<VvpatJob, UUID> {
+    List<VvpatJob> findByStatusOrderByCreatedAt(String status, Pageable page);
+}
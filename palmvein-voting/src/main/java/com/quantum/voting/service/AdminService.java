@@ -1,37 +1,65 @@
 package com.quantum.voting.service;
 
+import com.quantum.voting.DTO.BatchTemplateItem;
+import com.quantum.voting.DTO.EnrollmentResult;
 import com.quantum.voting.entity.Candidate;
 import com.quantum.voting.entity.Election;
 import com.quantum.voting.entity.Voter;
+import com.quantum.voting.entity.VoterBiometrics;
+import com.quantum.voting.matching.DecryptedTemplateCache;
+import com.quantum.voting.matching.TemplateIndex;
 import com.quantum.voting.repository.CandidateRepository;
 import com.quantum.voting.repository.ElectionRepository;
+import com.quantum.voting.repository.VoterBiometricsRepository;
 import com.quantum.voting.repository.VoterRepository;
+import com.quantum.voting.service.HotPathMetrics.Stage;
 import com.quantum.voting.utils.AESUtil;
+import com.quantum.voting.utils.TemplateCodec;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
+import java.util.UUID;
+import java.util.stream.IntStream;
 
 @Service
 @RequiredArgsConstructor
 public class AdminService {
 
     private final VoterRepository voterRepository;
+    private final VoterBiometricsRepository voterBiometricsRepository;
     private final ElectionRepository electionRepository;
     private final CandidateRepository candidateRepository;
     private final QKDService qkdService; // Ensure injected
+    private final TemplateIndex templateIndex;
+    private final DecryptedTemplateCache decryptedTemplateCache;
+    private final VoteTallyService voteTallyService;
+    private final VotedSetService votedSetService;
+    private final VoterLookupCache voterLookupCache;
+    private final ElectionCatalog electionCatalog;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final HotPathMetrics metrics;
 
     public Voter createVoter(Voter voter) {
         Optional<Voter> existing = voterRepository.findByVoterCode(voter.getVoterCode());
         return existing.orElseGet(() -> voterRepository.save(voter));
     }
 
-    public List<Voter> getAllVoters() {
-        return voterRepository.findAll();
-    }
-
     public boolean login(String username, String password) {
         return "admin1".equals(username) && "admin123".equals(password);
     }
@@ -39,45 +67,259 @@ public class AdminService {
     /**
      * Secure upload of palm templates
      */
+    @Transactional
     public Voter registerPalmTemplate(String voterCode,
                                       String leftTemplateBase64,
                                       String rightTemplateBase64,
                                       String sessionKeyBase64) throws Exception {
+        long started = metrics.start();
+        byte[] leftPlain = decodeTemplate(leftTemplateBase64);
+        byte[] rightPlain = decodeTemplate(rightTemplateBase64);
+        metrics.stop(Stage.REGISTER_DECODE, started);
+        return registerPalmTemplate(voterCode, leftPlain, rightPlain, sessionKeyBase64);
+    }
+
+    /**
+     * Same as above with raw template bytes, as read from a binary upload.
+     */
+    @Transactional
+    public Voter registerPalmTemplate(String voterCode,
+                                      byte[] leftPlain,
+                                      byte[] rightPlain,
+                                      String sessionKeyBase64) throws Exception {
 
+        long started = metrics.start();
         Optional<Voter> voterOpt = voterRepository.findByVoterCode(voterCode);
         if (voterOpt.isEmpty()) return null;
 
         Voter voter = voterOpt.get();
+        Map<UUID, byte[]> proposed = new HashMap<>();
+        proposed.put(voter.getVoterId(), newKey(sessionKeyBase64));
+        byte[] keyBytes = claimKeys(proposed).get(voter.getVoterId());
+        if (keyBytes == null) throw new IllegalArgumentException("Invalid session key");
+        VoterBiometrics bio = voterBiometricsRepository.findById(voter.getVoterId()).orElseThrow();
+        metrics.stop(Stage.REGISTER_LOOKUP, started);
+
+        started = metrics.start();
+        EncryptedTemplates enc = encryptTemplates(voter, keyBytes, leftPlain, rightPlain);
+        metrics.stop(Stage.REGISTER_ENCRYPT, started);
+
+        if (enc.left() != null) {
+            bio.setLeftTemplate(enc.left());
+            voter.setLeftRegistered(true);
+        }
+        if (enc.right() != null) {
+            bio.setRightTemplate(enc.right());
+            voter.setRightRegistered(true);
+        }
+        bio.setTemplateEncryptionKey(enc.keyBytes());
+
+        // the rows are flushed here; the commit itself is after this method returns
+        started = metrics.start();
+        voterBiometricsRepository.saveAndFlush(bio);
+        Voter saved = voterRepository.saveAndFlush(voter);
+        metrics.stop(Stage.REGISTER_PERSIST, started);
+        templatesChanged(enc);
+        return saved;
+    }
+
+    /**
+     * Enrol many voters in one call: keys are claimed and templates encrypted inside
+     * the write transaction, in parallel across cores, and written with a single JDBC
+     * batch. Returns one result per request item.
+     */
+    public List<EnrollmentResult> registerPalmTemplates(List<BatchTemplateItem> items) {
+        Set<String> codes = new HashSet<>();
+        for (BatchTemplateItem item : items) {
+            if (item.getVoterCode() != null) codes.add(item.getVoterCode());
+        }
+        Map<String, Voter> voters = new HashMap<>();
+        for (Voter v : voterRepository.findByVoterCodeIn(codes)) voters.put(v.getVoterCode(), v);
+
+        // a voter appearing twice could end up with templates under two different keys
+        Set<String> seen = new HashSet<>();
+        List<Boolean> duplicate = new ArrayList<>(items.size());
+        for (BatchTemplateItem item : items) duplicate.add(!seen.add(String.valueOf(item.getVoterCode())));
+
+        // decoding and proposing keys needs no rows, so it stays outside the transaction
+        Outcome[] outcomes = new Outcome[items.size()];
+        byte[][][] plain = new byte[items.size()][][];
+        Map<UUID, byte[]> proposed = new HashMap<>();
+        for (int i = 0; i < items.size(); i++) {
+            BatchTemplateItem item = items.get(i);
+            Voter voter = voters.get(item.getVoterCode());
+            try {
+                if (duplicate.get(i)) {
+                    outcomes[i] = Outcome.failed(item, "INVALID", "Duplicate voterCode in batch");
+                } else if (voter == null) {
+                    outcomes[i] = Outcome.failed(item, "NOT_FOUND", "Voter not found");
+                } else {
+                    plain[i] = new byte[][]{
+                            decodeTemplate(item.getLeftTemplate()), decodeTemplate(item.getRightTemplate())};
+                    proposed.put(voter.getVoterId(), newKey(item.getSessionKey()));
+                }
+            } catch (Exception e) {
+                outcomes[i] = Outcome.failed(item, "FAILED", e.getMessage());
+            }
+        }
+
+        List<EncryptedTemplates> toWrite = transactionTemplate.execute(status -> {
+            Map<UUID, byte[]> keys = claimKeys(proposed);
+
+            // AESUtil pools its ciphers, so the common pool workers reuse them rather than building their own
+            IntStream.range(0, items.size()).parallel().filter(i -> outcomes[i] == null).forEach(i -> {
+                BatchTemplateItem item = items.get(i);
+                Voter voter = voters.get(item.getVoterCode());
+                byte[] keyBytes = keys.get(voter.getVoterId());
+                if (keyBytes == null) {
+                    outcomes[i] = Outcome.failed(item, "FAILED", "Invalid session key");
+                    return;
+                }
+                try {
+                    EncryptedTemplates enc = encryptTemplates(voter, keyBytes, plain[i][0], plain[i][1]);
+                    outcomes[i] = enc.left() == null && enc.right() == null
+                            ? Outcome.failed(item, "INVALID", "No template supplied")
+                            : new Outcome(new EnrollmentResult(item.getVoterCode(), "REGISTERED", null), enc);
+                } catch (Exception e) {
+                    outcomes[i] = Outcome.failed(item, "FAILED", e.getMessage());
+                }
+            });
+
+            List<EncryptedTemplates> encrypted = Arrays.stream(outcomes)
+                    .map(Outcome::enc).filter(Objects::nonNull).toList();
+            jdbcTemplate.batchUpdate(
+                    "INSERT INTO voter_biometrics (voter_id, left_template, right_template, template_encryption_key) " +
+                            "VALUES (?, ?, ?, ?) ON CONFLICT (voter_id) DO UPDATE SET " +
+                            "left_template = COALESCE(EXCLUDED.left_template, voter_biometrics.left_template), " +
+                            "right_template = COALESCE(EXCLUDED.right_template, voter_biometrics.right_template), " +
+                            "template_encryption_key = EXCLUDED.template_encryption_key",
+                    encrypted, 500, (ps, enc) -> {
+                        ps.setObject(1, enc.voter().getVoterId());
+                        ps.setBytes(2, enc.left());
+                        ps.setBytes(3, enc.right());
+                        ps.setBytes(4, enc.keyBytes());
+                    });
+            jdbcTemplate.batchUpdate(
+                    "UPDATE voters SET left_registered = left_registered OR ?, " +
+                            "right_registered = right_registered OR ? WHERE voter_id = ?",
+                    encrypted, 500, (ps, enc) -> {
+                        ps.setBoolean(1, enc.left() != null);
+                        ps.setBoolean(2, enc.right() != null);
+                        ps.setObject(3, enc.voter().getVoterId());
+                    });
+            return encrypted;
+        });
+
+        toWrite.forEach(this::templatesChanged);
+        return Arrays.stream(outcomes).map(Outcome::result).toList();
+    }
+
+    private record Outcome(EnrollmentResult result, EncryptedTemplates enc) {
+        static Outcome failed(BatchTemplateItem item, String status, String message) {
+            return new Outcome(new EnrollmentResult(item.getVoterCode(), status, message), null);
+        }
+    }
 
-        // Determine which session key to use
+    private record EncryptedTemplates(Voter voter, byte[] keyBytes,
+                                      byte[] left, byte[] right,
+                                      byte[] leftPlain, byte[] rightPlain) {}
+
+    /**
+     * Key for a voter who has none yet: the supplied session key, else a fresh QKD key.
+     * Null when the session key is not a Base64 AES key, which only matters if no key
+     * is stored; it must not become the voter's key.
+     */
+    private byte[] newKey(String sessionKeyBase64) throws Exception {
         String keyBase64 = (sessionKeyBase64 == null || sessionKeyBase64.isBlank())
                 ? qkdService.generateSessionKey()       // QKD generated
                 : sessionKeyBase64;
+        try {
+            byte[] keyBytes = AESUtil.base64ToKeyBytes(keyBase64);
+            return keyBytes.length == 16 || keyBytes.length == 24 || keyBytes.length == 32 ? keyBytes : null;
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
 
-        byte[] keyBytes = AESUtil.base64ToKeyBytes(keyBase64);
+    /**
+     * Give each voter without a stored key the proposed one and return every voter's
+     * key, with their voter_biometrics rows locked until the caller's transaction ends.
+     * A voter keeps one key for both hands: an existing key always wins, so two
+     * enrolments racing on the same voter encrypt under the same key.
+     */
+    private Map<UUID, byte[]> claimKeys(Map<UUID, byte[]> proposed) {
+        // voterId order, so two batches lock shared voters in the same order
+        List<Map.Entry<UUID, byte[]>> claims = proposed.entrySet().stream()
+                .filter(e -> e.getValue() != null)
+                .sorted(Map.Entry.comparingByKey())
+                .toList();
+        jdbcTemplate.batchUpdate(
+                "INSERT INTO voter_biometrics (voter_id, template_encryption_key) VALUES (?, ?) " +
+                        "ON CONFLICT (voter_id) DO UPDATE SET template_encryption_key = " +
+                        "CASE WHEN octet_length(voter_biometrics.template_encryption_key) > 0 " +
+                        "THEN voter_biometrics.template_encryption_key ELSE EXCLUDED.template_encryption_key END",
+                claims, 500, (ps, claim) -> {
+                    ps.setObject(1, claim.getKey());
+                    ps.setBytes(2, claim.getValue());
+                });
+
+        Map<UUID, byte[]> keys = new HashMap<>();
+        if (proposed.isEmpty()) return keys;
+        jdbcTemplate.query(
+                "SELECT voter_id, template_encryption_key FROM voter_biometrics " +
+                        "WHERE voter_id = ANY (?) ORDER BY voter_id FOR UPDATE",
+                ps -> ps.setArray(1, ps.getConnection().createArrayOf("uuid", proposed.keySet().toArray())),
+                rs -> {
+                    byte[] key = rs.getBytes(2);
+                    if (key != null && key.length > 0) keys.put(rs.getObject(1, UUID.class), key);
+                });
+        return keys;
+    }
+
+    /** Encrypt whichever hands were supplied under the voter's key. */
+    private EncryptedTemplates encryptTemplates(Voter voter,
+                                                byte[] keyBytes,
+                                                byte[] leftPlain,
+                                                byte[] rightPlain) throws Exception {
+        if (leftPlain != null && leftPlain.length == 0) leftPlain = null;
+        if (rightPlain != null && rightPlain.length == 0) rightPlain = null;
 
         // Encrypt LEFT palm template
-        if (leftTemplateBase64 != null && !leftTemplateBase64.isBlank()) {
-            byte[] leftRawBytes = Base64.getDecoder().decode(leftTemplateBase64);
-            String encryptedLeft = AESUtil.encryptGCM(leftRawBytes, keyBytes); // <-- new method
-            voter.setLeftTemplate(encryptedLeft.getBytes());
-            voter.setLeftRegistered(true);
-        }
+        byte[] left = leftPlain == null ? null : TemplateCodec.encrypt(leftPlain, keyBytes);
 
         // Encrypt RIGHT palm template
-        if (rightTemplateBase64 != null && !rightTemplateBase64.isBlank()) {
-            byte[] rightRawBytes = Base64.getDecoder().decode(rightTemplateBase64);
-            String encryptedRight = AESUtil.encryptGCM(rightRawBytes, keyBytes); // <-- new method
-            voter.setRightTemplate(encryptedRight.getBytes());
-            voter.setRightRegistered(true);
-        }
+        byte[] right = rightPlain == null ? null : TemplateCodec.encrypt(rightPlain, keyBytes);
+
+        return new EncryptedTemplates(voter, keyBytes, left, right, leftPlain, rightPlain);
+    }
 
-        // Store AES key bytes if first time
-        if (voter.getTemplateEncryptionKey() == null) {
-            voter.setTemplateEncryptionKey(keyBytes);
+    private static byte[] decodeTemplate(String base64) {
+        return base64 == null || base64.isBlank() ? null : Base64.getDecoder().decode(base64);
+    }
+
+    /**
+     * Drop cached copies and re-index once the caller's transaction commits, or right
+     * away outside one; before the commit a reader would just cache the old row again,
+     * and a rollback would leave the index matching templates that were never stored.
+     */
+    private void templatesChanged(EncryptedTemplates enc) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    publishTemplates(enc);
+                }
+            });
+        } else {
+            publishTemplates(enc);
         }
+    }
 
-        return voterRepository.save(voter);
+    private void publishTemplates(EncryptedTemplates enc) {
+        Voter voter = enc.voter();
+        decryptedTemplateCache.invalidate(voter.getVoterId());
+        voterLookupCache.invalidate(voter.getVoterCode());
+        templateIndex.put(voter.getVoterId(), voter.getVoterCode(), enc.leftPlain(), enc.rightPlain());
     }
 
     public Election createElection(Election election) {
@@ -87,17 +329,49 @@ public class AdminService {
         if (election.getStatus() == null) {
             election.setStatus("ACTIVE");
         }
-        return electionRepository.save(election);
+        Election saved = electionRepository.save(election);
+        electionCatalog.refresh();
+        return saved;
     }
 
-    public Candidate addCandidateToElection(java.util.UUID electionId, Candidate candidate) {
+    public Candidate addCandidateToElection(UUID electionId, Candidate candidate) {
         Optional<Election> eOpt = electionRepository.findById(electionId);
         if (eOpt.isEmpty()) return null;
 
         Election election = eOpt.get();
         candidate.setElection(election);
         if (candidate.getVotesCount() < 0) candidate.setVotesCount(0);
-        return candidateRepository.save(candidate);
+        Candidate saved = candidateRepository.save(candidate);
+        electionCatalog.refresh();
+        return saved;
+    }
+
+    /**
+     * Close an election, then recount its candidates from ballots.
+     * The row lock waits for votes in flight (each holds a key-share lock on the election until it
+     * commits) and votes queued behind it see CLOSED, so no ballot lands after the close commits.
+     * Only then does the election leave the catalog and the voted set, and the recount runs last.
+     */
+    public Election closeElection(UUID electionId) {
+        List<UUID> candidateIds = new ArrayList<>();
+        Election saved = transactionTemplate.execute(status -> {
+            List<UUID> locked = jdbcTemplate.queryForList(
+                    "SELECT election_id FROM elections WHERE election_id = ? FOR UPDATE", UUID.class, electionId);
+            if (locked.isEmpty()) return null;
+
+            Election election = electionRepository.findById(electionId).orElseThrow();
+            election.setStatus("CLOSED");
+            if (election.getCandidates() != null) {
+                election.getCandidates().forEach(c -> candidateIds.add(c.getCandidateId()));
+            }
+            return electionRepository.save(election);
+        });
+        if (saved == null) return null;
+
+        electionCatalog.rebuild();
+        votedSetService.forget(electionId);
+        voteTallyService.reconcile(electionId, candidateIds);
+        return saved;
     }
 
     public List<Election> getAllElections() {
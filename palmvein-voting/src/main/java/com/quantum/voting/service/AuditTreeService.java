@@ -0,0 +1,188 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.journal.BallotJournal;
+import com.quantum.voting.journal.MerkleTree;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * One incremental Merkle tree per election over the ballots' audit hashes, so a
+ * voter can get a short proof that their receipt is part of the published root.
+ * <p>
+ * A ballot goes into the journal and its election's tree under the same
+ * per-election lock, so the leaf order is the election's journal order; a ballot
+ * whose journal append fails gets no leaf until the next start re-journals it.
+ * Each leaf's index is also stored on the ballot (audit_leaf_index), so a rebuild
+ * from the ballots table, or a journal re-created from it, keeps the published
+ * order. The lock is a {@link ReentrantLock} rather than a monitor because the
+ * journal append can do file IO, which would pin a virtual thread to its carrier
+ * inside synchronized.
+ */
+@Service
+@RequiredArgsConstructor
+@DependsOn("entityManagerFactory") // the fallback rebuild reads the ballots table
+public class AuditTreeService {
+
+    public record Located(UUID electionId, UUID ballotId, MerkleTree.Proof proof) {}
+
+    public record Root(UUID electionId, int size, byte[] root) {}
+
+    private static final class ElectionTree {
+        final ReentrantLock lock = new ReentrantLock();
+        final MerkleTree tree = new MerkleTree();
+        final Map<UUID, Integer> leaves = new ConcurrentHashMap<>();
+    }
+
+    private static final String SAVE_LEAF_SQL = "UPDATE ballots SET audit_leaf_index = ? WHERE ballot_id = ?";
+
+    private final BallotJournal ballotJournal;
+    private final JdbcTemplate jdbcTemplate;
+
+    private final Map<UUID, ElectionTree> trees = new ConcurrentHashMap<>();
+    // journaled leaves whose index is not on the ballot row yet; the journal holds their order meanwhile
+    private final Map<UUID, Integer> unsavedLeaves = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void build() throws IOException {
+        trees.clear();
+        long started = System.currentTimeMillis();
+        long[] loaded = {0};
+        long[] moved = {0};
+        if (ballotJournal.isEnabled()) {
+            ballotJournal.replay(e -> {
+                add(tree(e.electionId()), e.ballotId(), e.auditHash());
+                loaded[0]++;
+            });
+        } else {
+            jdbcTemplate.query("SELECT election_id, ballot_id, audit_hash, audit_leaf_index FROM ballots " +
+                    "ORDER BY audit_leaf_index NULLS LAST, cast_at, ballot_id", rs -> {
+                UUID ballotId = rs.getObject(2, UUID.class);
+                int index = add(tree(rs.getObject(1, UUID.class)), ballotId, BallotJournal.auditDigest(rs.getString(3)));
+                int stored = rs.getInt(4);
+                if (!rs.wasNull() && stored != index) moved[0]++;
+                loaded[0]++;
+            });
+        }
+        int saved = saveMissingLeafIndexes();
+        System.out.println("Audit trees built: " + loaded[0] + " ballots across " + trees.size()
+                + " elections in " + (System.currentTimeMillis() - started) + " ms; "
+                + saved + " leaf indexes stored");
+        if (moved[0] > 0) {
+            System.out.println("WARNING: " + moved[0] + " ballots rebuilt at a different leaf index than stored");
+        }
+    }
+
+    /**
+     * Journal the committed ballot, add its leaf, then wait for the journal fsync.
+     * Without a journal the leaf index is written to the ballot before returning.
+     */
+    public void record(UUID ballotId, UUID electionId, UUID candidateId, UUID voterId,
+                       LocalDateTime castAt, String auditHash) {
+        byte[] digest = BallotJournal.auditDigest(auditHash);
+        ElectionTree t = tree(electionId);
+        boolean journaled = ballotJournal.isEnabled();
+        long seq = 0;
+        int index;
+        t.lock.lock();
+        try {
+            if (journaled) {
+                seq = ballotJournal.append(ballotId, electionId, candidateId, voterId, castAt, digest);
+                if (seq == 0) {
+                    // a leaf here would sit before ballots the restart journals after it
+                    System.out.println("No audit leaf for ballot " + ballotId + " until the next start re-journals it");
+                    return;
+                }
+            }
+            index = add(t, ballotId, digest);
+        } finally {
+            t.lock.unlock();
+        }
+
+        if (journaled) {
+            unsavedLeaves.put(ballotId, index);
+            ballotJournal.awaitDurable(seq);
+        } else {
+            jdbcTemplate.update(SAVE_LEAF_SQL, index, ballotId);
+        }
+    }
+
+    /**
+     * Write journaled leaf indexes back to their ballots in one batch.
+     */
+    @Scheduled(fixedDelayString = "${audit.leaf-flush-millis:1000}")
+    @PreDestroy
+    public void flushLeafIndexes() {
+        if (unsavedLeaves.isEmpty()) return;
+        List<Object[]> batch = new ArrayList<>();
+        for (Map.Entry<UUID, Integer> e : unsavedLeaves.entrySet()) {
+            batch.add(new Object[]{e.getValue(), e.getKey()});
+        }
+        jdbcTemplate.batchUpdate(SAVE_LEAF_SQL, batch);
+        for (Object[] row : batch) unsavedLeaves.remove((UUID) row[1], (Integer) row[0]);
+    }
+
+    public Optional<Located> proof(UUID ballotId) {
+        for (Map.Entry<UUID, ElectionTree> e : trees.entrySet()) {
+            ElectionTree t = e.getValue();
+            Integer index = t.leaves.get(ballotId);
+            if (index == null) continue;
+            t.lock.lock();
+            try {
+                return Optional.of(new Located(e.getKey(), ballotId, t.tree.proof(index)));
+            } finally {
+                t.lock.unlock();
+            }
+        }
+        return Optional.empty();
+    }
+
+    public Root root(UUID electionId) {
+        ElectionTree t = trees.get(electionId);
+        if (t == null) return new Root(electionId, 0, new MerkleTree().root());
+        t.lock.lock();
+        try {
+            return new Root(electionId, t.tree.size(), t.tree.root());
+        } finally {
+            t.lock.unlock();
+        }
+    }
+
+    // ballots from before the column, or journaled but not flushed before a stop
+    private int saveMissingLeafIndexes() {
+        List<Object[]> batch = new ArrayList<>();
+        jdbcTemplate.query("SELECT election_id, ballot_id FROM ballots WHERE audit_leaf_index IS NULL", rs -> {
+            ElectionTree t = trees.get(rs.getObject(1, UUID.class));
+            UUID ballotId = rs.getObject(2, UUID.class);
+            Integer index = t == null ? null : t.leaves.get(ballotId);
+            if (index != null) batch.add(new Object[]{index, ballotId});
+        });
+        if (!batch.isEmpty()) jdbcTemplate.batchUpdate(SAVE_LEAF_SQL, batch);
+        return batch.size();
+    }
+
+    private ElectionTree tree(UUID electionId) {
+        return trees.computeIfAbsent(electionId, id -> new ElectionTree());
+    }
+
+    // caller holds the tree's lock, or is the single startup thread
+    private static int add(ElectionTree t, UUID ballotId, byte[] auditDigest) {
+        int index = t.tree.append(MerkleTree.leaf(ballotId, auditDigest));
+        t.leaves.put(ballotId, index);
+        return index;
+    }
+}
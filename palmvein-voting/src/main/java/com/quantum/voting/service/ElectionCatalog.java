@@ -0,0 +1,110 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.entity.Candidate;
+import com.quantum.voting.entity.Election;
+import com.quantum.voting.repository.ElectionRepository;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Immutable snapshot of the active elections and their candidates, loaded with
+ * one fetch-join query and swapped in whole whenever an election or candidate
+ * is added or an election closes. Readers never query and never see a half-built
+ * catalog; each snapshot carries a version usable as an ETag.
+ */
+@Service
+@RequiredArgsConstructor
+public class ElectionCatalog {
+
+    public record CandidateEntry(UUID candidateId, String leaderName, String partyName, String city) {}
+
+    public record ElectionEntry(UUID electionId, String title, LocalDateTime startTime, LocalDateTime endTime,
+                                String status, List<CandidateEntry> candidates) {
+
+        public boolean hasCandidate(UUID candidateId) {
+            for (CandidateEntry c : candidates) {
+                if (c.candidateId().equals(candidateId)) return true;
+            }
+            return false;
+        }
+    }
+
+    public record Snapshot(long version, List<ElectionEntry> elections, Map<UUID, ElectionEntry> byId) {}
+
+    private final ElectionRepository electionRepository;
+
+    // seeded from the clock so versions (and ETags) do not repeat across restarts
+    private final AtomicLong versions = new AtomicLong(System.currentTimeMillis());
+    private volatile Snapshot snapshot = new Snapshot(0, List.of(), Map.of());
+    // not synchronized: the query inside would pin a virtual thread to its carrier
+    private final ReentrantLock rebuildLock = new ReentrantLock();
+
+    @PostConstruct
+    public void rebuild() {
+        rebuildLock.lock();
+        try {
+            List<Election> active = electionRepository.findWithCandidatesByStatus("ACTIVE");
+
+            List<ElectionEntry> elections = active.stream()
+                    .sorted(Comparator.comparing(Election::getStartTime, Comparator.nullsLast(Comparator.naturalOrder())))
+                    .map(ElectionCatalog::entry)
+                    .toList();
+            Map<UUID, ElectionEntry> byId = new HashMap<>();
+            for (ElectionEntry e : elections) byId.put(e.electionId(), e);
+
+            snapshot = new Snapshot(versions.incrementAndGet(), elections, Map.copyOf(byId));
+        } finally {
+            rebuildLock.unlock();
+        }
+    }
+
+    /**
+     * Rebuild once the caller's transaction commits, or right away outside one.
+     */
+    public void refresh() {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    rebuild();
+                }
+            });
+        } else {
+            rebuild();
+        }
+    }
+
+    public Snapshot snapshot() {
+        return snapshot;
+    }
+
+    /** The election if it is currently active, otherwise null. */
+    public ElectionEntry active(UUID electionId) {
+        return electionId == null ? null : snapshot.byId().get(electionId);
+    }
+
+    private static ElectionEntry entry(Election e) {
+        List<CandidateEntry> candidates = e.getCandidates() == null ? List.of()
+                : e.getCandidates().stream()
+                .map(ElectionCatalog::entry)
+                .toList();
+        return new ElectionEntry(e.getElectionId(), e.getTitle(), e.getStartTime(), e.getEndTime(),
+                e.getStatus(), candidates);
+    }
+
+    private static CandidateEntry entry(Candidate c) {
+        return new CandidateEntry(c.getCandidateId(), c.getLeaderName(), c.getPartyName(), c.getCity());
+    }
+}
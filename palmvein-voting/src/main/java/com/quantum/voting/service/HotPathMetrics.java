@@ -0,0 +1,136 @@
+package com.quantum.voting.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Per-stage timers for the scan, vote, VVPAT and enrollment paths, published as
+ * palmvein_stage_seconds{op,stage} on /actuator/prometheus. Every meter is
+ * registered up front so the hot path never looks one up. With
+ * palm.metrics.enabled=false nothing is registered and {@link #start()} does not
+ * read the clock, so an instrumented stage costs one branch.
+ */
+@Component
+public class HotPathMetrics {
+
+    public enum Stage {
+        SCAN_DECODE("scan", "base64"),
+        SCAN_LOAD("scan", "template-load"),
+        SCAN_DECRYPT("scan", "aes-gcm"),
+        SCAN_MATCH("scan", "similarity"),
+        SCAN_TOTAL("scan", "total"),
+        VOTE_CLAIM("vote", "voted-set"),
+        VOTE_KEY("vote", "key-lookup"),
+        VOTE_HASH("vote", "audit-hash"),
+        VOTE_COMMIT("vote", "db-commit"),
+        VOTE_JOURNAL("vote", "journal"),
+        VOTE_TOTAL("vote", "total"),
+        VVPAT_LOAD("vvpat", "db-load"),
+        VVPAT_RENDER("vvpat", "pdf-render"),
+        VVPAT_WRITE("vvpat", "disk-write"),
+        REGISTER_DECODE("register", "base64"),
+        REGISTER_LOOKUP("register", "db-lookup"),
+        REGISTER_ENCRYPT("register", "aes-gcm"),
+        REGISTER_PERSIST("register", "db-save");
+
+        private final String op;
+        private final String stage;
+
+        Stage(String op, String stage) {
+            this.op = op;
+            this.stage = stage;
+        }
+    }
+
+    public enum Event {
+        TEMPLATE_CACHE_MISS("scan", "template-cache-miss"),
+        VOTE_CAST("vote", "cast"),
+        VOTE_REJECTED("vote", "rejected"),
+        VOTE_FAILED("vote", "failed"),
+        VOTE_AFTER_COMMIT_FAILED("vote", "after-commit-failed"),
+        VVPAT_DONE("vvpat", "done"),
+        VVPAT_FAILED("vvpat", "failed");
+
+        private final String op;
+        private final String event;
+
+        Event(String op, String event) {
+            this.op = op;
+            this.event = event;
+        }
+    }
+
+    // scores are recorded in thousandths: fixed histogram buckets round a recorded value
+    // up to a whole number, which would put every raw similarity in the 1.0 bucket
+    private static final double SCORE_SCALE = 1000;
+    // fine around the 800 (0.80) acceptance threshold, where a drift in sensors shows first
+    private static final double[] SCORE_BUCKETS =
+            {100, 200, 300, 400, 500, 600, 700, 750, 800, 850, 900, 950, 980, 990, 1000};
+
+    private final boolean enabled;
+    private final Timer[] timers = new Timer[Stage.values().length];
+    private final Counter[] counters = new Counter[Event.values().length];
+    private DistributionSummary leftScore;
+    private DistributionSummary rightScore;
+    private DistributionSummary bestScore;
+
+    public HotPathMetrics(MeterRegistry registry,
+                         @Value("${palm.metrics.enabled:true}") boolean enabled,
+                         @Value("${palm.metrics.histograms:true}") boolean histograms) {
+        this.enabled = enabled;
+        if (!enabled) return;
+
+        for (Stage s : Stage.values()) {
+            timers[s.ordinal()] = Timer.builder("palmvein.stage")
+                    .description("Time spent in one stage of a hot path")
+                    .tags("op", s.op, "stage", s.stage)
+                    .publishPercentileHistogram(histograms)
+                    .minimumExpectedValue(Duration.ofNanos(1_000))
+                    .maximumExpectedValue(Duration.ofSeconds(10))
+                    .register(registry);
+        }
+        for (Event e : Event.values()) {
+            counters[e.ordinal()] = Counter.builder("palmvein.events")
+                    .tags("op", e.op, "event", e.event)
+                    .register(registry);
+        }
+        leftScore = score(registry, "left");
+        rightScore = score(registry, "right");
+        bestScore = score(registry, "best");
+    }
+
+    public long start() {
+        return enabled ? System.nanoTime() : 0;
+    }
+
+    public void stop(Stage stage, long started) {
+        if (enabled) timers[stage.ordinal()].record(System.nanoTime() - started, TimeUnit.NANOSECONDS);
+    }
+
+    public void count(Event event) {
+        if (enabled) counters[event.ordinal()].increment();
+    }
+
+    public void scores(double left, double right) {
+        if (!enabled) return;
+        leftScore.record(left);
+        rightScore.record(right);
+        bestScore.record(Math.max(left, right));
+    }
+
+    private static DistributionSummary score(MeterRegistry registry, String hand) {
+        return DistributionSummary.builder("palmvein.match.score")
+                .description("Cosine similarity of a scan against the enrolled template, in thousandths")
+                .tags("hand", hand)
+                .scale(SCORE_SCALE)
+                .serviceLevelObjectives(SCORE_BUCKETS)
+                .register(registry);
+    }
+}
@@ -0,0 +1,132 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.entity.VoterBiometrics;
+import com.quantum.voting.matching.TemplateIndex;
+import com.quantum.voting.repository.VoterBiometricsRepository;
+import com.quantum.voting.utils.AESUtil;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayList;
+import java.util.Base64;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 1:N palm identification against the resident {@link TemplateIndex}: the index
+ * shortlists by sketch, the full templates decide. The search itself never reads
+ * Postgres; re-scoring reads the shortlisted voters the template cache lacks.
+ */
+@Service
+@RequiredArgsConstructor
+public class IdentificationService {
+
+    private static final int LOAD_PAGE_SIZE = 500;
+    private static final int MAX_TOP_K = 50;
+
+    private final VoterBiometricsRepository voterBiometricsRepository;
+    private final TemplateIndex templateIndex;
+    private final VoterService voterService;
+
+    @Value("${palm.index.enabled:true}")
+    private boolean enabled;
+
+    /** Warm the index off the startup thread so the app can serve 1:1 traffic meanwhile. */
+    @EventListener(ApplicationReadyEvent.class)
+    public void loadIndex() {
+        if (!enabled) return;
+        Thread loader = new Thread(this::loadAll, "template-index-loader");
+        loader.setDaemon(true);
+        loader.start();
+    }
+
+    private void loadAll() {
+        UUID after = new UUID(0L, 0L);
+        long started = System.currentTimeMillis();
+        while (true) {
+            List<Object[]> page = voterBiometricsRepository.findWithVoterCodeAfter(after, PageRequest.of(0, LOAD_PAGE_SIZE));
+            if (page.isEmpty()) break;
+            for (Object[] row : page) index((VoterBiometrics) row[0], (String) row[1]);
+            after = ((VoterBiometrics) page.get(page.size() - 1)[0]).getVoterId();
+        }
+        templateIndex.markReady();
+        System.out.println("Template index loaded: " + templateIndex.size() + " voters in "
+                + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    private void index(VoterBiometrics bio, String voterCode) {
+        byte[] keyBytes = bio.getTemplateEncryptionKey();
+        if (keyBytes == null || keyBytes.length == 0) return;
+        try {
+            byte[][] plain = voterService.decryptStoredTemplates(bio);
+            templateIndex.put(bio.getVoterId(), voterCode, plain[0], plain[1]);
+        } catch (Exception e) {
+            System.out.println("Skipping unreadable templates for voter " + voterCode);
+        }
+    }
+
+    public boolean isReady() {
+        return enabled && templateIndex.isReady();
+    }
+
+    /**
+     * Decrypts a scan with the kiosk's session key and returns the closest enrolled voters.
+     */
+    public List<TemplateIndex.Match> identify(String encryptedTemplateB64, String sessionKeyB64, int topK) {
+        if (encryptedTemplateB64 == null || encryptedTemplateB64.isBlank()) return List.of();
+        try {
+            byte[] combined = Base64.getDecoder().decode(encryptedTemplateB64);
+            return identify(combined, combined.length, sessionKeyB64, topK);
+        } catch (IllegalArgumentException e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * Same as above for a raw nonce || ciphertext scan.
+     */
+    public List<TemplateIndex.Match> identify(byte[] encrypted, int length, String sessionKeyB64, int topK) {
+        try {
+            if (encrypted == null || length == 0
+                    || sessionKeyB64 == null || sessionKeyB64.isBlank()) return List.of();
+
+            byte[] keyBytes = AESUtil.base64ToKeyBytes(sessionKeyB64);
+            byte[] scannedPlain = AESUtil.decryptGCM(encrypted, 0, length, keyBytes);
+            int k = Math.max(1, Math.min(topK, MAX_TOP_K));
+            return rescore(templateIndex.search(scannedPlain, k), scannedPlain);
+        } catch (Exception e) {
+            return List.of();
+        }
+    }
+
+    /**
+     * The index only shortlists: its scores come from block-averaged sketches, which
+     * lose the detail that separates two palms, so they are not comparable to the
+     * 0.80 acceptance threshold. Each shortlisted voter is re-scored against the full
+     * decrypted templates and the result is ranked by that score. Shortlisted voters
+     * missing from the template cache cost one query between them, at most k rows.
+     * An index that keeps full templates (sketch-size 0) already has the real scores.
+     */
+    private List<TemplateIndex.Match> rescore(List<TemplateIndex.Match> shortlist, byte[] scannedPlain) {
+        List<TemplateIndex.Match> rescored = new ArrayList<>(shortlist.size());
+        if (templateIndex.isExact()) {
+            for (TemplateIndex.Match m : shortlist) if (m.score() > 0.0) rescored.add(m);
+            return rescored;
+        }
+
+        Map<UUID, Double> scores = voterService.matchDecrypted(
+                shortlist.stream().map(TemplateIndex.Match::voterId).toList(), scannedPlain);
+        for (TemplateIndex.Match m : shortlist) {
+            Double score = scores.get(m.voterId());
+            if (score != null && score > 0.0) rescored.add(new TemplateIndex.Match(m.voterId(), m.voterCode(), score));
+        }
+        rescored.sort(Comparator.comparingDouble(TemplateIndex.Match::score).reversed());
+        return rescored;
+    }
+}
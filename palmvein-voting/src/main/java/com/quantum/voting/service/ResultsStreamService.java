@@ -0,0 +1,246 @@
+package com.quantum.voting.service;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.event.EventListener;
+import org.springframework.http.MediaType;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Live election results over Server-Sent Events.
+ * Committed votes only bump in-memory deltas; a scheduler drains them once per
+ * window, serializes one event per election and fans it out to every
+ * subscriber, so the cost per vote is independent of the number of dashboards
+ * and no query is issued per vote.
+ * <p>
+ * The scheduler only queues events; a small sender pool writes them, at most
+ * one task per subscriber at a time, so a dashboard on a slow link cannot stall
+ * the window for everyone else or the other scheduled jobs. A subscriber more
+ * than results.stream.max-pending events behind is dropped; its client
+ * reconnects and starts again from a snapshot. Only elections in the
+ * {@link ElectionCatalog} can be streamed, and an election's entry goes away
+ * with its last subscriber.
+ */
+@Service
+@RequiredArgsConstructor
+public class ResultsStreamService {
+
+    private static final int HEARTBEAT_EVERY_WINDOWS = 60;
+
+    private record Event(String name, String json) {}
+
+    private static final class Subscriber {
+        final UUID electionId;
+        final SseEmitter emitter;
+        final BlockingQueue<Event> pending;
+        final AtomicBoolean draining = new AtomicBoolean();
+
+        Subscriber(UUID electionId, SseEmitter emitter, int maxPending) {
+            this.electionId = electionId;
+            this.emitter = emitter;
+            this.pending = new ArrayBlockingQueue<>(maxPending);
+        }
+    }
+
+    private final VoteTallyService voteTallyService;
+    private final ElectionCatalog electionCatalog;
+    private final ObjectMapper objectMapper;
+
+    private final Map<UUID, CopyOnWriteArrayList<Subscriber>> subscribers = new ConcurrentHashMap<>();
+    private final Map<UUID, Map<UUID, LongAdder>> deltas = new ConcurrentHashMap<>();
+    private long windows = 0;
+    private ExecutorService senders;
+
+    @Value("${results.stream.timeout-millis:1800000}")
+    private long emitterTimeoutMillis;
+
+    @Value("${results.stream.senders:4}")
+    private int senderCount;
+
+    @Value("${results.stream.max-pending:40}")
+    private int maxPending;
+
+    @Value("${spring.threads.virtual.enabled:false}")
+    private boolean virtualThreads;
+
+    @PostConstruct
+    public void start() {
+        AtomicInteger threadNo = new AtomicInteger();
+        ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name("results-sender-", 1).factory()
+                : r -> {
+                    Thread t = new Thread(r, "results-sender-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                };
+        // at most one queued task per subscriber, so the queue is bounded by the subscriber count
+        senders = Executors.newFixedThreadPool(Math.max(1, senderCount), threads);
+    }
+
+    @PreDestroy
+    public void stop() {
+        senders.shutdownNow();
+    }
+
+    /**
+     * Open a stream for an active election; the first event is a full snapshot.
+     * Null when the election is not in the catalog.
+     */
+    public SseEmitter subscribe(UUID electionId) {
+        ElectionCatalog.ElectionEntry election = electionCatalog.active(electionId);
+        if (election == null) return null;
+
+        SseEmitter emitter = newEmitter();
+        Subscriber subscriber = new Subscriber(electionId, emitter, Math.max(1, maxPending));
+
+        // queued ahead of any tally, so the snapshot always arrives first
+        Map<UUID, Long> totals = new LinkedHashMap<>();
+        for (ElectionCatalog.CandidateEntry c : election.candidates()) {
+            totals.put(c.candidateId(), voteTallyService.count(c.candidateId()));
+        }
+        subscriber.pending.add(new Event("snapshot", toJson(electionId, Map.of(), totals)));
+
+        Runnable remove = () -> remove(subscriber);
+        emitter.onCompletion(remove);
+        emitter.onTimeout(remove);
+        emitter.onError(e -> remove.run());
+        subscribers.compute(electionId, (id, list) -> {
+            if (list == null) list = new CopyOnWriteArrayList<>();
+            list.add(subscriber);
+            return list;
+        });
+        schedule(subscriber);
+        return emitter;
+    }
+
+    SseEmitter newEmitter() {
+        return new SseEmitter(emitterTimeoutMillis);
+    }
+
+    // atomic with subscribe, so a subscriber never joins a list that was just dropped
+    private void remove(Subscriber s) {
+        subscribers.computeIfPresent(s.electionId, (id, list) -> {
+            list.remove(s);
+            return list.isEmpty() ? null : list;
+        });
+    }
+
+    @EventListener
+    public void onVoteCounted(VoteCountedEvent vote) {
+        if (!subscribers.containsKey(vote.electionId())) return;
+        deltas.computeIfAbsent(vote.electionId(), id -> new ConcurrentHashMap<>())
+                .computeIfAbsent(vote.candidateId(), id -> new LongAdder())
+                .increment();
+    }
+
+    @Scheduled(fixedDelayString = "${results.stream.window-millis:250}")
+    public void publish() {
+        deltas.forEach((electionId, perCandidate) -> {
+            // nobody is watching any more (or the last one left as this was counted)
+            if (!subscribers.containsKey(electionId)) {
+                deltas.remove(electionId, perCandidate);
+                return;
+            }
+            Map<UUID, Long> changed = new HashMap<>();
+            Map<UUID, Long> totals = new HashMap<>();
+            perCandidate.forEach((candidateId, adder) -> {
+                long d = adder.sumThenReset();
+                if (d != 0) {
+                    changed.put(candidateId, d);
+                    totals.put(candidateId, voteTallyService.count(candidateId));
+                }
+            });
+            if (!changed.isEmpty()) broadcast(electionId, "tally", toJson(electionId, changed, totals));
+        });
+
+        if (++windows % HEARTBEAT_EVERY_WINDOWS == 0) {
+            subscribers.forEach((electionId, list) -> broadcast(electionId, "heartbeat", "{}"));
+        }
+    }
+
+    public int subscriberCount(UUID electionId) {
+        List<Subscriber> list = subscribers.get(electionId);
+        return list == null ? 0 : list.size();
+    }
+
+    // the JSON is serialized once; builders are per emitter because build() is not idempotent
+    private void broadcast(UUID electionId, String name, String json) {
+        CopyOnWriteArrayList<Subscriber> list = subscribers.get(electionId);
+        if (list == null) return;
+
+        Event event = new Event(name, json);
+        for (Subscriber s : list) {
+            if (!s.pending.offer(event)) {
+                remove(s);
+                s.emitter.complete();
+                System.out.println("Results stream for " + electionId + ": dropped a subscriber "
+                        + s.pending.size() + " events behind");
+                continue;
+            }
+            schedule(s);
+        }
+    }
+
+    private void schedule(Subscriber s) {
+        if (!s.draining.compareAndSet(false, true)) return;
+        try {
+            senders.execute(() -> drain(s));
+        } catch (RejectedExecutionException e) {
+            s.draining.set(false); // shutting down
+        }
+    }
+
+    // one sender per subscriber at a time, so its events go out in order
+    private void drain(Subscriber s) {
+        Event event;
+        while ((event = s.pending.poll()) != null) {
+            try {
+                s.emitter.send(SseEmitter.event().name(event.name()).data(event.json(), MediaType.APPLICATION_JSON));
+            } catch (IOException | IllegalStateException e) {
+                // client went away; leave draining set so nothing more is scheduled for it
+                remove(s);
+                s.emitter.completeWithError(e);
+                return;
+            }
+        }
+        s.draining.set(false);
+        // an event queued after the last poll but before the flag cleared
+        if (!s.pending.isEmpty()) schedule(s);
+    }
+
+    private String toJson(UUID electionId, Map<UUID, Long> changed, Map<UUID, Long> totals) {
+        try {
+            return objectMapper.writeValueAsString(Map.of(
+                    "electionId", electionId,
+                    "deltas", changed,
+                    "totals", totals
+            ));
+        } catch (JsonProcessingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
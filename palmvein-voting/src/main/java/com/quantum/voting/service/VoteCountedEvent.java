@@ -0,0 +1,8 @@
+package com.quantum.voting.service;
+
+import java.util.UUID;
+
+/**
+ * Published by {@link VoteTallyService} once a ballot has committed and been counted.
+ */
+public record VoteCountedEvent(UUID electionId, UUID candidateId) {}
@@ -0,0 +1,152 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.repository.BallotRepository;
+import com.quantum.voting.repository.CandidateRepository;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * In-memory vote counts per candidate.
+ * Votes land on striped {@link LongAdder}s instead of a read-modify-write of the
+ * hot candidates row; unflushed deltas are written back in one JDBC batch of
+ * atomic increments. The ballots table stays the source of truth: counts are
+ * rebuilt from it on startup and reconciled against it when an election closes.
+ */
+@Service
+@RequiredArgsConstructor
+public class VoteTallyService {
+
+    private static final int CLOSED = Integer.MIN_VALUE;
+
+    private final BallotRepository ballotRepository;
+    private final CandidateRepository candidateRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final ApplicationEventPublisher eventPublisher;
+
+    private final Map<UUID, LongAdder> totals = new ConcurrentHashMap<>();
+    private final Map<UUID, LongAdder> pending = new ConcurrentHashMap<>();
+    // a flush's deltas leave pending before its UPDATE runs; a recount must not land in between
+    private final ReentrantLock flushLock = new ReentrantLock();
+    // per election: increments under way, plus the sign bit once its counts come from the close recount
+    private final Map<UUID, AtomicInteger> gates = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void rebuild() {
+        candidateRepository.reconcileVotesFromBallots();
+        totals.clear();
+        for (Object[] row : ballotRepository.countByCandidate()) {
+            adder(totals, (UUID) row[0]).add((Long) row[1]);
+        }
+    }
+
+    /**
+     * Count a vote once the surrounding transaction commits.
+     */
+    public void record(UUID electionId, UUID candidateId) {
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    increment(electionId, candidateId);
+                }
+            });
+        } else {
+            increment(electionId, candidateId);
+        }
+    }
+
+    private void increment(UUID electionId, UUID candidateId) {
+        AtomicInteger gate = gate(electionId);
+        try {
+            // the ballot committed before the close did, so the close recount already has it
+            if (gate.incrementAndGet() < 0) return;
+            adder(totals, candidateId).increment();
+            adder(pending, candidateId).increment();
+        } finally {
+            gate.decrementAndGet();
+        }
+        eventPublisher.publishEvent(new VoteCountedEvent(electionId, candidateId));
+    }
+
+    public long count(UUID candidateId) {
+        LongAdder total = totals.get(candidateId);
+        return total == null ? 0 : total.sum();
+    }
+
+    @Scheduled(fixedDelayString = "${tally.flush-millis:1000}")
+    @PreDestroy
+    public void flush() {
+        flushLock.lock();
+        try {
+            List<Object[]> batch = new ArrayList<>();
+            pending.forEach((candidateId, delta) -> {
+                long d = delta.sumThenReset();
+                if (d != 0) batch.add(new Object[]{d, candidateId});
+            });
+            if (batch.isEmpty()) return;
+
+            try {
+                jdbcTemplate.batchUpdate(
+                        "UPDATE candidates SET votes_count = votes_count + ? WHERE candidate_id = ?", batch);
+            } catch (RuntimeException e) {
+                // put the deltas back so the next flush retries them
+                for (Object[] row : batch) adder(pending, (UUID) row[1]).add((Long) row[0]);
+                throw e;
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    /**
+     * Make candidates.votes_count exact for a closed election from its ballots; call it once the
+     * close has committed. Later increments for the election are ignored and the ones under way are
+     * waited out, pending deltas for its candidates are dropped so the recount cannot be added twice,
+     * and it runs under the flush lock so a flush already under way lands before the recount.
+     */
+    public void reconcile(UUID electionId, List<UUID> candidateIds) {
+        AtomicInteger gate = gate(electionId);
+        gate.getAndUpdate(n -> n | CLOSED);
+        while ((gate.get() & ~CLOSED) != 0) Thread.onSpinWait();
+
+        flushLock.lock();
+        try {
+            for (UUID candidateId : candidateIds) {
+                LongAdder delta = pending.get(candidateId);
+                if (delta != null) delta.reset();
+            }
+            candidateRepository.reconcileVotesFromBallots(electionId);
+            for (Object[] row : ballotRepository.countByCandidate(electionId)) {
+                LongAdder total = adder(totals, (UUID) row[0]);
+                total.reset();
+                total.add((Long) row[1]);
+            }
+        } finally {
+            flushLock.unlock();
+        }
+    }
+
+    private AtomicInteger gate(UUID electionId) {
+        return gates.computeIfAbsent(electionId, id -> new AtomicInteger());
+    }
+
+    private static LongAdder adder(Map<UUID, LongAdder> map, UUID candidateId) {
+        return map.computeIfAbsent(candidateId, id -> new LongAdder());
+    }
+}
@@ -0,0 +1,225 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.journal.BallotJournal;
+import jakarta.annotation.PostConstruct;
+import lombok.RequiredArgsConstructor;
+import org.springframework.context.annotation.DependsOn;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Who has voted in which election, held in memory so the duplicate-vote check
+ * on the voting path is a hash probe instead of a query. Warmed at startup from
+ * the ballot journal (or the ballots table when it is off); the unique (voter_id, election_id) constraint on ballots still
+ * rejects anything that slips past (another node, a restart mid-request).
+ */
+@Service
+@RequiredArgsConstructor
+@DependsOn("entityManagerFactory") // ballots table must exist before warming
+public class VotedSetService {
+
+    private static final int STRIPES = 64;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final BallotJournal ballotJournal;
+
+    private final Map<UUID, VotedSet> elections = new ConcurrentHashMap<>();
+
+    @PostConstruct
+    public void warm() throws IOException {
+        elections.clear();
+        long started = System.currentTimeMillis();
+        long[] loaded = {0};
+        String source;
+        if (ballotJournal.isEnabled()) {
+            // at startup the journal is checked to belong to this database and to hold exactly its ballots
+            source = "journal";
+            ballotJournal.replay(e -> {
+                if (set(e.electionId()).add(e.voterId())) loaded[0]++;
+            });
+        } else {
+            source = "ballots table";
+            jdbcTemplate.query("SELECT election_id, voter_id FROM ballots", rs -> {
+                UUID electionId = rs.getObject(1, UUID.class);
+                UUID voterId = rs.getObject(2, UUID.class);
+                if (electionId != null && voterId != null && set(electionId).add(voterId)) loaded[0]++;
+            });
+        }
+        System.out.println("Voted set warmed from " + source + ": " + loaded[0] + " ballots across "
+                + elections.size() + " elections in " + (System.currentTimeMillis() - started) + " ms");
+    }
+
+    public boolean hasVoted(UUID electionId, UUID voterId) {
+        VotedSet set = elections.get(electionId);
+        return set != null && set.contains(voterId);
+    }
+
+    /**
+     * Mark the voter as having voted; false if they already had. Inside a transaction
+     * the mark is released again if it rolls back, so a failed vote can be retried.
+     */
+    public boolean claim(UUID electionId, UUID voterId) {
+        VotedSet set = set(electionId);
+        if (!set.add(voterId)) return false;
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    if (status != STATUS_COMMITTED) set.remove(voterId);
+                }
+            });
+        }
+        return true;
+    }
+
+    /**
+     * Undo a claim made outside a transaction whose write then failed.
+     */
+    public void release(UUID electionId, UUID voterId) {
+        VotedSet set = elections.get(electionId);
+        if (set != null) set.remove(voterId);
+    }
+
+    /**
+     * Drop a closed election's set; its ballots can no longer change.
+     */
+    public void forget(UUID electionId) {
+        elections.remove(electionId);
+    }
+
+    private VotedSet set(UUID electionId) {
+        return elections.computeIfAbsent(electionId, id -> new VotedSet());
+    }
+
+    /**
+     * Lock-striped set of UUIDs; each stripe is an open-addressing table of raw longs.
+     */
+    private static final class VotedSet {
+        private final UuidSet[] stripes = new UuidSet[STRIPES];
+
+        VotedSet() {
+            for (int i = 0; i < STRIPES; i++) stripes[i] = new UuidSet();
+        }
+
+        private UuidSet stripe(long hash) {
+            return stripes[(int) (hash >>> 58)];
+        }
+
+        boolean contains(UUID id) {
+            long h = UuidSet.hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return stripe(h).contains(id.getMostSignificantBits(), id.getLeastSignificantBits(), h);
+        }
+
+        boolean add(UUID id) {
+            long h = UuidSet.hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            return stripe(h).add(id.getMostSignificantBits(), id.getLeastSignificantBits(), h);
+        }
+
+        void remove(UUID id) {
+            long h = UuidSet.hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+            stripe(h).remove(id.getMostSignificantBits(), id.getLeastSignificantBits(), h);
+        }
+    }
+
+    /**
+     * Linear probing over interleaved (msb, lsb) pairs, 16 bytes per slot, no boxing.
+     * The all-zero UUID marks an empty slot, so it is tracked in a flag of its own.
+     * Deletes shift the following run back instead of leaving tombstones.
+     */
+    static final class UuidSet {
+        private static final int INITIAL_CAPACITY = 64;
+
+        private long[] table = new long[INITIAL_CAPACITY * 2];
+        private int size;
+        private boolean hasZero;
+
+        static long hash(long msb, long lsb) {
+            long h = msb * 0x9E3779B97F4A7C15L ^ lsb;
+            h ^= h >>> 33;
+            h *= 0xFF51AFD7ED558CCDL;
+            h ^= h >>> 33;
+            return h;
+        }
+
+        synchronized boolean contains(long msb, long lsb, long hash) {
+            if (msb == 0 && lsb == 0) return hasZero;
+            int mask = table.length / 2 - 1;
+            for (int i = (int) hash & mask; ; i = (i + 1) & mask) {
+                long m = table[2 * i], l = table[2 * i + 1];
+                if (m == 0 && l == 0) return false;
+                if (m == msb && l == lsb) return true;
+            }
+        }
+
+        synchronized boolean add(long msb, long lsb, long hash) {
+            if (msb == 0 && lsb == 0) {
+                if (hasZero) return false;
+                return hasZero = true;
+            }
+            int mask = table.length / 2 - 1;
+            int i = (int) hash & mask;
+            for (; ; i = (i + 1) & mask) {
+                long m = table[2 * i], l = table[2 * i + 1];
+                if (m == 0 && l == 0) break;
+                if (m == msb && l == lsb) return false;
+            }
+            table[2 * i] = msb;
+            table[2 * i + 1] = lsb;
+            if (++size * 4 > (mask + 1) * 3) resize();
+            return true;
+        }
+
+        synchronized void remove(long msb, long lsb, long hash) {
+            if (msb == 0 && lsb == 0) {
+                hasZero = false;
+                return;
+            }
+            int mask = table.length / 2 - 1;
+            int i = (int) hash & mask;
+            for (; ; i = (i + 1) & mask) {
+                long m = table[2 * i], l = table[2 * i + 1];
+                if (m == 0 && l == 0) return;
+                if (m == msb && l == lsb) break;
+            }
+            size--;
+
+            // backward-shift: pull later entries of the probe run into the hole
+            int hole = i;
+            for (int j = (hole + 1) & mask; ; j = (j + 1) & mask) {
+                long m = table[2 * j], l = table[2 * j + 1];
+                if (m == 0 && l == 0) break;
+                int home = (int) hash(m, l) & mask;
+                boolean movable = hole <= j ? (home <= hole || home > j) : (home <= hole && home > j);
+                if (movable) {
+                    table[2 * hole] = m;
+                    table[2 * hole + 1] = l;
+                    hole = j;
+                }
+            }
+            table[2 * hole] = 0;
+            table[2 * hole + 1] = 0;
+        }
+
+        private void resize() {
+            long[] old = table;
+            table = new long[old.length * 2];
+            int mask = table.length / 2 - 1;
+            for (int s = 0; s < old.length; s += 2) {
+                long m = old[s], l = old[s + 1];
+                if (m == 0 && l == 0) continue;
+                int i = (int) hash(m, l) & mask;
+                while (table[2 * i] != 0 || table[2 * i + 1] != 0) i = (i + 1) & mask;
+                table[2 * i] = m;
+                table[2 * i + 1] = l;
+            }
+        }
+    }
+}
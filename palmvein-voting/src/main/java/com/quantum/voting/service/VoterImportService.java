@@ -0,0 +1,263 @@
+package com.quantum.voting.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quantum.voting.entity.Voter;
+import com.quantum.voting.repository.VoterRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.PersistenceException;
+import lombok.RequiredArgsConstructor;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.core.NestedExceptionUtils;
+import org.springframework.dao.DataAccessException;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionException;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+
+/**
+ * Bulk voter roll import.
+ * Reads CSV or NDJSON line by line, de-duplicates on voterCode in memory and
+ * writes fixed-size chunks through Hibernate JDBC batching (voter IDs are
+ * client-generated UUIDs, so inserts batch without identity round trips).
+ * Progress and row-level errors are reported as they happen. A chunk the
+ * database rejects is retried row by row, each row in its own transaction, so
+ * only the offending lines are reported and the rest still land; if reading
+ * the input fails, a summary is still emitted before the exception propagates.
+ */
+@Service
+@RequiredArgsConstructor
+public class VoterImportService {
+
+    public enum Format { CSV, NDJSON }
+
+    private static final int MAX_REPORTED_ERRORS = 1000;
+
+    private record Row(long line, Voter voter) {}
+
+    private final VoterRepository voterRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    @Value("${voter.import.batch-size:500}")
+    private int batchSize;
+
+    /**
+     * Import voters from reader; every progress/error/summary line is handed to sink.
+     */
+    public Map<String, Object> importVoters(Reader reader, Format format,
+                                            Consumer<Map<String, Object>> sink) throws IOException {
+        BufferedReader in = new BufferedReader(reader, 64 * 1024);
+        Set<String> seen = new HashSet<>();
+        List<Row> chunk = new ArrayList<>(batchSize);
+        long[] counts = new long[4]; // processed, inserted, duplicates, errors
+
+        String[] header = null;
+        long lineNo = 0;
+        String line;
+        try {
+            while ((line = in.readLine()) != null) {
+                lineNo++;
+                if (line.isBlank()) continue;
+
+                if (format == Format.CSV && header == null) {
+                    header = splitCsv(line).toArray(new String[0]);
+                    continue;
+                }
+
+                counts[0]++;
+                try {
+                    Voter voter = format == Format.CSV ? fromCsv(header, line) : fromJson(line);
+                    if (!seen.add(voter.getVoterCode())) {
+                        counts[2]++;
+                        continue;
+                    }
+                    chunk.add(new Row(lineNo, voter));
+                } catch (Exception e) {
+                    rowFailed(lineNo, e.getMessage(), counts, sink);
+                }
+
+                if (chunk.size() >= batchSize) {
+                    writeChunk(chunk, counts, sink);
+                    sink.accept(report("progress", counts));
+                }
+            }
+            if (!chunk.isEmpty()) writeChunk(chunk, counts, sink);
+        } catch (IOException | RuntimeException e) {
+            // what was written stays written; tell the client how far it got
+            Map<String, Object> summary = report("summary", counts);
+            summary.put("aborted", "line " + lineNo + ": " + e.getMessage());
+            try {
+                sink.accept(summary);
+            } catch (RuntimeException sinkFailure) {
+                e.addSuppressed(sinkFailure);
+            }
+            throw e;
+        }
+
+        Map<String, Object> summary = report("summary", counts);
+        sink.accept(summary);
+        return summary;
+    }
+
+    private void writeChunk(List<Row> chunk, long[] counts, Consumer<Map<String, Object>> sink) {
+        List<Row> fresh = new ArrayList<>(chunk.size());
+        try {
+            Set<String> codes = new HashSet<>();
+            for (Row row : chunk) codes.add(row.voter().getVoterCode());
+            Set<String> existing = voterRepository.findExistingVoterCodes(codes);
+            for (Row row : chunk) {
+                if (existing.contains(row.voter().getVoterCode())) counts[2]++;
+                else fresh.add(row);
+            }
+        } catch (DataAccessException e) {
+            // nothing was written: the whole chunk failed
+            counts[3] += chunk.size();
+            Map<String, Object> error = new LinkedHashMap<>();
+            error.put("type", "error");
+            error.put("lines", chunk.get(0).line() + "-" + chunk.get(chunk.size() - 1).line());
+            error.put("rows", chunk.size());
+            error.put("message", message(e));
+            sink.accept(error);
+            chunk.clear();
+            return;
+        }
+        chunk.clear();
+
+        try {
+            insert(fresh);
+            counts[1] += fresh.size();
+        } catch (DataAccessException | PersistenceException | TransactionException e) {
+            // the chunk rolled back as a whole; find the rows the database refuses
+            for (Row row : fresh) {
+                try {
+                    insert(List.of(row));
+                    counts[1]++;
+                } catch (DataAccessException | PersistenceException | TransactionException rowFailure) {
+                    rowFailed(row.line(), message(rowFailure), counts, sink);
+                }
+            }
+        }
+    }
+
+    private void insert(List<Row> rows) {
+        transactionTemplate.executeWithoutResult(status -> {
+            for (Row row : rows) {
+                // a rolled-back attempt leaves its generated id behind
+                row.voter().setVoterId(null);
+                entityManager.persist(row.voter());
+            }
+            entityManager.flush();
+            entityManager.clear();
+        });
+    }
+
+    private void rowFailed(long line, String message, long[] counts, Consumer<Map<String, Object>> sink) {
+        counts[3]++;
+        if (counts[3] <= MAX_REPORTED_ERRORS) {
+            sink.accept(Map.of("type", "error", "line", line, "message", String.valueOf(message)));
+        }
+    }
+
+    private static String message(Exception e) {
+        return String.valueOf(NestedExceptionUtils.getMostSpecificCause(e).getMessage());
+    }
+
+    private Map<String, Object> report(String type, long[] counts) {
+        Map<String, Object> r = new LinkedHashMap<>();
+        r.put("type", type);
+        r.put("processed", counts[0]);
+        r.put("inserted", counts[1]);
+        r.put("duplicates", counts[2]);
+        r.put("errors", counts[3]);
+        return r;
+    }
+
+    private Voter fromJson(String line) throws IOException {
+        @SuppressWarnings("unchecked")
+        Map<String, Object> row = objectMapper.readValue(line, Map.class);
+        Map<String, String> fields = new HashMap<>();
+        row.forEach((k, v) -> fields.put(k, v == null ? null : v.toString()));
+        return toVoter(fields);
+    }
+
+    private Voter fromCsv(String[] header, String line) {
+        List<String> values = splitCsv(line);
+        if (values.size() != header.length) {
+            throw new IllegalArgumentException("Expected " + header.length + " columns, got " + values.size());
+        }
+        Map<String, String> fields = new HashMap<>();
+        for (int i = 0; i < header.length; i++) fields.put(header[i].trim(), values.get(i));
+        return toVoter(fields);
+    }
+
+    private Voter toVoter(Map<String, String> fields) {
+        String voterCode = trimToNull(fields.get("voterCode"));
+        String name = trimToNull(fields.get("name"));
+        if (voterCode == null) throw new IllegalArgumentException("voterCode required");
+        if (name == null) throw new IllegalArgumentException("name required");
+
+        Voter voter = new Voter();
+        voter.setVoterCode(voterCode);
+        voter.setName(name);
+        voter.setMobile(trimToNull(fields.get("mobile")));
+        voter.setDob(parseDob(trimToNull(fields.get("dob"))));
+        return voter;
+    }
+
+    private LocalDateTime parseDob(String dob) {
+        if (dob == null) return null;
+        return dob.length() <= 10 ? LocalDate.parse(dob).atStartOfDay() : LocalDateTime.parse(dob);
+    }
+
+    private String trimToNull(String s) {
+        if (s == null) return null;
+        String t = s.trim();
+        return t.isEmpty() ? null : t;
+    }
+
+    /** RFC 4180 style split: commas, double-quoted fields, "" as an escaped quote. */
+    static List<String> splitCsv(String line) {
+        List<String> out = new ArrayList<>();
+        StringBuilder field = new StringBuilder();
+        boolean quoted = false;
+        for (int i = 0; i < line.length(); i++) {
+            char c = line.charAt(i);
+            if (quoted) {
+                if (c == '"' && i + 1 < line.length() && line.charAt(i + 1) == '"') {
+                    field.append('"');
+                    i++;
+                } else if (c == '"') {
+                    quoted = false;
+                } else {
+                    field.append(c);
+                }
+            } else if (c == '"') {
+                quoted = true;
+            } else if (c == ',') {
+                out.add(field.toString());
+                field.setLength(0);
+            } else {
+                field.append(c);
+            }
+        }
+        out.add(field.toString());
+        return out;
+    }
+}
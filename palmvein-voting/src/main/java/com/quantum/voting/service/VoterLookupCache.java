@@ -0,0 +1,156 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.entity.Voter;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.function.Function;
+
+/**
+ * Bounded LRU near-cache of voter rows by voterCode for the login, scan, vote
+ * sequence. Holds detached copies of the plain Voter columns only (biometrics
+ * live in their own table) and hands out a fresh copy per hit, so callers
+ * can mutate what they get. Misses are not cached.
+ * <p>
+ * A miss parks a placeholder under its key while it loads. Invalidating the key
+ * removes it, and the load keeps its row only if its own placeholder is still
+ * there, so a slow read can never reinstate a row that was just changed, while
+ * invalidating one voter leaves loads of every other voter alone.
+ * Hits, misses and evictions are exported as palmvein.voter.cache.*.
+ */
+@Component
+public class VoterLookupCache {
+
+    public record Stats(long hits, long misses, long evictions, int size) {}
+
+    // voter is null while a load is in flight
+    private record Entry(Voter voter, long expiresAt) {}
+
+    private final LinkedHashMap<String, Entry> entries = new LinkedHashMap<>(256, 0.75f, true);
+    private final ReentrantLock lock = new ReentrantLock();
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+    private final int maxEntries;
+    private final long ttlMillis;
+
+    public VoterLookupCache(MeterRegistry registry,
+                            @Value("${voter.cache.max-entries:10000}") int maxEntries,
+                            @Value("${voter.cache.ttl-seconds:300}") long ttlSeconds) {
+        this.maxEntries = maxEntries;
+        this.ttlMillis = ttlSeconds * 1000;
+
+        FunctionCounter.builder("palmvein.voter.cache.requests", hits, LongAdder::sum)
+                .description("Voter lookups by voterCode").tags("result", "hit").register(registry);
+        FunctionCounter.builder("palmvein.voter.cache.requests", misses, LongAdder::sum)
+                .description("Voter lookups by voterCode").tags("result", "miss").register(registry);
+        FunctionCounter.builder("palmvein.voter.cache.evictions", evictions, LongAdder::sum)
+                .description("Voters dropped to stay under voter.cache.max-entries").register(registry);
+        Gauge.builder("palmvein.voter.cache.size", this, c -> c.stats().size()).register(registry);
+    }
+
+    public Optional<Voter> get(String voterCode, Function<String, Optional<Voter>> loader) {
+        if (maxEntries <= 0 || voterCode == null) return loader.apply(voterCode);
+
+        long now = System.currentTimeMillis();
+        Entry pending = new Entry(null, 0);
+        lock.lock();
+        try {
+            Entry entry = entries.get(voterCode);
+            if (entry != null && entry.voter() != null && entry.expiresAt() > now) {
+                hits.increment();
+                return Optional.of(copy(entry.voter()));
+            }
+            entries.put(voterCode, pending);
+            evictOverflow();
+        } finally {
+            lock.unlock();
+        }
+
+        misses.increment();
+        Optional<Voter> loaded = Optional.empty();
+        try {
+            loaded = loader.apply(voterCode);
+            return loaded;
+        } finally {
+            replace(voterCode, pending, loaded.map(voter -> new Entry(copy(voter), now + ttlMillis)).orElse(null));
+        }
+    }
+
+    /**
+     * Drop the voter now and, inside a transaction, once more after it completes,
+     * so a read racing the commit cannot cache the old row.
+     */
+    public void invalidate(String voterCode) {
+        if (voterCode == null) return;
+        remove(voterCode);
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCompletion(int status) {
+                    remove(voterCode);
+                }
+            });
+        }
+    }
+
+    public Stats stats() {
+        lock.lock();
+        try {
+            return new Stats(hits.sum(), misses.sum(), evictions.sum(), entries.size());
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private void remove(String voterCode) {
+        lock.lock();
+        try {
+            entries.remove(voterCode);
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // finish a load: only while its placeholder is still there (not invalidated, evicted or taken over)
+    private void replace(String voterCode, Entry pending, Entry loaded) {
+        lock.lock();
+        try {
+            if (entries.get(voterCode) != pending) return;
+            if (loaded == null) {
+                entries.remove(voterCode);
+            } else {
+                entries.put(voterCode, loaded);
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    // caller holds the lock
+    private void evictOverflow() {
+        Iterator<Map.Entry<String, Entry>> it = entries.entrySet().iterator();
+        while (entries.size() > maxEntries && it.hasNext()) {
+            it.next();
+            it.remove();
+            evictions.increment();
+        }
+    }
+
+    private static Voter copy(Voter v) {
+        return new Voter(v.getVoterId(), v.getVoterCode(), v.getName(), v.getMobile(), v.getDob(),
+                v.getRegisteredAt(), v.isLeftRegistered(), v.isRightRegistered(),
+                v.isHasVoted(), v.getLastVotedAt());
+    }
+}
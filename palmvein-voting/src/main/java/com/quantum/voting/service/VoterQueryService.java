@@ -0,0 +1,84 @@
+package com.quantum.voting.service;
+
+import com.fasterxml.jackson.core.JsonGenerator;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quantum.voting.DTO.VoterSummary;
+import com.quantum.voting.entity.Voter;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceContext;
+import jakarta.persistence.criteria.CriteriaBuilder;
+import jakarta.persistence.criteria.CriteriaQuery;
+import jakarta.persistence.criteria.Predicate;
+import jakarta.persistence.criteria.Root;
+import lombok.RequiredArgsConstructor;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Blob-free voter listings.
+ * Only the summary columns are selected, so the template BYTEAs and key never
+ * leave Postgres. Pages are keyed on voterCode (unique, indexed) rather than
+ * OFFSET, so page N costs the same as page 1.
+ */
+@Service
+@RequiredArgsConstructor
+public class VoterQueryService {
+
+    public static final int MAX_PAGE_SIZE = 1000;
+
+    private final ObjectMapper objectMapper;
+
+    @PersistenceContext
+    private EntityManager entityManager;
+
+    /**
+     * Up to limit voters with voterCode greater than after, optionally filtered.
+     */
+    public List<VoterSummary> page(String after, int limit, Boolean registered, Boolean voted) {
+        CriteriaBuilder cb = entityManager.getCriteriaBuilder();
+        CriteriaQuery<VoterSummary> q = cb.createQuery(VoterSummary.class);
+        Root<Voter> v = q.from(Voter.class);
+
+        q.select(cb.construct(VoterSummary.class,
+                v.get("voterId"), v.get("voterCode"), v.get("name"), v.get("mobile"), v.get("dob"),
+                v.get("registeredAt"), v.get("leftRegistered"), v.get("rightRegistered"),
+                v.get("hasVoted"), v.get("lastVotedAt")));
+
+        List<Predicate> where = new ArrayList<>();
+        if (after != null && !after.isEmpty()) where.add(cb.greaterThan(v.get("voterCode"), after));
+        if (registered != null) {
+            Predicate enrolled = cb.or(cb.isTrue(v.get("leftRegistered")), cb.isTrue(v.get("rightRegistered")));
+            where.add(registered ? enrolled : cb.not(enrolled));
+        }
+        if (voted != null) where.add(cb.equal(v.get("hasVoted"), voted));
+
+        q.where(where.toArray(new Predicate[0]));
+        q.orderBy(cb.asc(v.get("voterCode")));
+
+        return entityManager.createQuery(q)
+                .setMaxResults(Math.max(1, Math.min(limit, MAX_PAGE_SIZE)))
+                .getResultList();
+    }
+
+    /**
+     * Write every matching voter as one JSON array, a page at a time.
+     */
+    public void streamAll(OutputStream out, Boolean registered, Boolean voted) throws IOException {
+        try (JsonGenerator json = objectMapper.getFactory().createGenerator(out)) {
+            json.writeStartArray();
+            String after = null;
+            while (true) {
+                List<VoterSummary> page = page(after, MAX_PAGE_SIZE, registered, voted);
+                for (VoterSummary voter : page) objectMapper.writeValue(json, voter);
+                json.flush();
+                if (page.size() < MAX_PAGE_SIZE) break;
+                after = page.get(page.size() - 1).getVoterCode();
+            }
+            json.writeEndArray();
+        }
+    }
+}
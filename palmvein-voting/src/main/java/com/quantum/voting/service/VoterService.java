@@ -1,187 +1,308 @@
 package com.quantum.voting.service;
 
+import com.quantum.voting.DTO.BallotReceipt;
 import com.quantum.voting.entity.*;
+import com.quantum.voting.matching.DecryptedTemplateCache;
+import com.quantum.voting.matching.TemplateMatcher;
 import com.quantum.voting.repository.*;
+import com.quantum.voting.service.HotPathMetrics.Event;
+import com.quantum.voting.service.HotPathMetrics.Stage;
 import com.quantum.voting.utils.AESUtil;
+import com.quantum.voting.utils.AuditHashUtil;
+import com.quantum.voting.utils.TemplateCodec;
 import lombok.RequiredArgsConstructor;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.stereotype.Service;
-import org.springframework.transaction.annotation.Transactional;
-import org.apache.pdfbox.pdmodel.PDDocument;
-import org.apache.pdfbox.pdmodel.PDPage;
-import org.apache.pdfbox.pdmodel.PDPageContentStream;
-import org.apache.pdfbox.pdmodel.font.PDType1Font;
-
-import java.io.File;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Paths;
-import java.security.MessageDigest;
+
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
 import java.util.Base64;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
 
 @Service
 @RequiredArgsConstructor
 public class VoterService {
 
+    // nothing is written unless the election is still ACTIVE; the key-share lock makes a close wait for
+    // this vote to commit, and a vote queued behind a close re-reads the row and sees CLOSED
+    private static final String COMMIT_VOTE_SQL =
+            "WITH open AS (" +
+                    "SELECT election_id FROM elections WHERE election_id = ? AND status = 'ACTIVE' FOR KEY SHARE" +
+            "), ballot AS (" +
+                    "INSERT INTO ballots (ballot_id, voter_id, election_id, candidate_id, cast_at, vvp_generated, audit_hash) " +
+                    "SELECT ?, ?, election_id, ?, CAST(? AS timestamp), false, ? FROM open RETURNING ballot_id" +
+            "), job AS (" +
+                    "INSERT INTO vvpat_outbox (ballot_id, status, attempts, created_at) " +
+                    "SELECT ballot_id, 'PENDING', 0, CAST(? AS timestamp) FROM ballot" +
+            ") UPDATE voters SET has_voted = true, last_voted_at = ? WHERE voter_id = ? AND EXISTS (SELECT 1 FROM ballot)";
+
     private final VoterRepository voterRepository;
-    private final ElectionRepository electionRepository;
-    private final CandidateRepository candidateRepository;
-    private final BallotRepository ballotRepository;
+    private final VoterBiometricsRepository voterBiometricsRepository;
+    private final TemplateMatcher templateMatcher;
+    private final DecryptedTemplateCache decryptedTemplateCache;
+    private final VvpatService vvpatService;
+    private final VoteTallyService voteTallyService;
+    private final VotedSetService votedSetService;
+    private final VoterLookupCache voterLookupCache;
+    private final ElectionCatalog electionCatalog;
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditTreeService auditTreeService;
+    private final HotPathMetrics metrics;
 
     public Optional<Voter> login(String voterCode) {
-        return voterRepository.findByVoterCode(voterCode);
+        return voterLookupCache.get(voterCode, voterRepository::findByVoterCode);
     }
 
     /** Verify encrypted palm template sent from client */
     public double verifyPalmTemplateScore(Voter voter, String encryptedTemplateB64) {
+        if (encryptedTemplateB64 == null || encryptedTemplateB64.isBlank()) return 0.0;
+        byte[] combined;
+        long decodeStarted = metrics.start();
         try {
-            if (voter == null || encryptedTemplateB64 == null || encryptedTemplateB64.isBlank())
-                return 0.0;
-
-            byte[] keyBytes = voter.getTemplateEncryptionKey();
-            if (keyBytes == null || keyBytes.length == 0) return 0.0;
-
-            // decrypt incoming template
-            byte[] scannedPlain = AESUtil.decryptGCMBase64(encryptedTemplateB64, keyBytes);
-            if (scannedPlain == null || scannedPlain.length == 0) return 0.0;
-
-            double bestScore = 0.0;
-
-            // LEFT template
-            if (voter.getLeftTemplate() != null && voter.getLeftTemplate().length > 0) {
-                String leftEncB64 = new String(voter.getLeftTemplate(), StandardCharsets.UTF_8);
-                byte[] leftPlain = AESUtil.decryptGCMBase64(leftEncB64, keyBytes);
-                bestScore = Math.max(bestScore, byteArraySimilarity(leftPlain, scannedPlain));
-            }
+            combined = Base64.getDecoder().decode(encryptedTemplateB64);
+        } catch (IllegalArgumentException e) {
+            return 0.0;
+        } finally {
+            metrics.stop(Stage.SCAN_DECODE, decodeStarted);
+        }
+        return verifyPalmTemplateScore(voter, combined, combined.length);
+    }
 
-            // RIGHT template
-            if (voter.getRightTemplate() != null && voter.getRightTemplate().length > 0) {
-                String rightEncB64 = new String(voter.getRightTemplate(), StandardCharsets.UTF_8);
-                byte[] rightPlain = AESUtil.decryptGCMBase64(rightEncB64, keyBytes);
-                bestScore = Math.max(bestScore, byteArraySimilarity(rightPlain, scannedPlain));
-            }
+    /**
+     * Verify a raw nonce || ciphertext scan, e.g. an octet-stream body, without a Base64 hop.
+     */
+    public double verifyPalmTemplateScore(Voter voter, byte[] encrypted, int length) {
+        long started = metrics.start();
+        try {
+            if (voter == null || encrypted == null || length == 0)
+                return 0.0;
 
-            return bestScore;
+            return decryptedTemplateCache.withTemplates(voter.getVoterId(),
+                    () -> {
+                        metrics.count(Event.TEMPLATE_CACHE_MISS);
+                        long loadStarted = metrics.start();
+                        try {
+                            return loadTemplates(voter.getVoterId());
+                        } finally {
+                            metrics.stop(Stage.SCAN_LOAD, loadStarted);
+                        }
+                    },
+                    (keyBytes, leftPlain, rightPlain) -> {
+                        if (keyBytes == null || keyBytes.length == 0) return 0.0;
+
+                        // decrypt incoming template
+                        long stageStarted = metrics.start();
+                        byte[] scannedPlain = AESUtil.decryptGCM(encrypted, 0, length, keyBytes);
+                        metrics.stop(Stage.SCAN_DECRYPT, stageStarted);
+                        if (scannedPlain.length == 0) return 0.0;
+
+                        stageStarted = metrics.start();
+                        double left = templateMatcher.similarity(leftPlain, scannedPlain);
+                        double right = templateMatcher.similarity(rightPlain, scannedPlain);
+                        metrics.stop(Stage.SCAN_MATCH, stageStarted);
+                        metrics.scores(left, right);
+                        return Math.max(left, right);
+                    });
 
         } catch (Exception e) {
             return 0.0;
+        } finally {
+            metrics.stop(Stage.SCAN_TOTAL, started);
         }
     }
 
-    public boolean verifyPalmTemplate(Voter voter, String encryptedTemplateB64) {
-        return verifyPalmTemplateScore(voter, encryptedTemplateB64) >= 0.80;
-    }
+    /**
+     * Best-hand similarity of an already decrypted scan against each voter's full
+     * enrolled templates, through the template cache. Voters not cached are read in
+     * one query; 0 when none are enrolled, left out when they cannot be decrypted.
+     */
+    Map<UUID, Double> matchDecrypted(List<UUID> voterIds, byte[] scannedPlain) {
+        Set<UUID> uncached = new HashSet<>();
+        for (UUID voterId : voterIds) {
+            if (!decryptedTemplateCache.contains(voterId)) uncached.add(voterId);
+        }
+        Map<UUID, VoterBiometrics> rows = new HashMap<>();
+        if (!uncached.isEmpty()) {
+            for (VoterBiometrics bio : voterBiometricsRepository.findAllById(uncached)) rows.put(bio.getVoterId(), bio);
+        }
 
-    private double byteArraySimilarity(byte[] a, byte[] b) {
-        if (a == null || b == null || a.length == 0 || b.length == 0) return 0.0;
-        int len = Math.min(a.length, b.length);
-        double dot = 0.0, magA = 0.0, magB = 0.0;
-        for (int i = 0; i < len; i++) {
-            double va = a[i] & 0xFF;
-            double vb = b[i] & 0xFF;
-            dot += va * vb;
-            magA += va * va;
-            magB += vb * vb;
+        Map<UUID, Double> scores = new LinkedHashMap<>();
+        for (UUID voterId : voterIds) {
+            try {
+                scores.put(voterId, decryptedTemplateCache.withTemplates(voterId,
+                        () -> {
+                            metrics.count(Event.TEMPLATE_CACHE_MISS);
+                            // evicted since the check above: read it on its own
+                            return uncached.contains(voterId) ? templates(rows.get(voterId)) : loadTemplates(voterId);
+                        },
+                        (keyBytes, leftPlain, rightPlain) -> {
+                            if (keyBytes == null || keyBytes.length == 0) return 0.0;
+                            return Math.max(templateMatcher.similarity(leftPlain, scannedPlain),
+                                    templateMatcher.similarity(rightPlain, scannedPlain));
+                        }));
+            } catch (Exception e) {
+                System.out.println("Skipping unreadable templates for voter " + voterId);
+            }
         }
-        if (magA == 0.0 || magB == 0.0) return 0.0;
-        double cosine = dot / (Math.sqrt(magA) * Math.sqrt(magB));
-        return Math.min(1.0, Math.max(0.0, cosine));
+        return scores;
     }
 
-    public List<Election> getActiveElections() {
-        return electionRepository.findByStatus("ACTIVE");
+    private byte[][] loadTemplates(UUID voterId) throws Exception {
+        return templates(voterBiometricsRepository.findById(voterId).orElse(null));
     }
 
-    @Transactional
-    public Ballot castVote(Voter voter, UUID electionId, UUID candidateId) throws Exception {
-        Optional<Election> electionOpt = electionRepository.findById(electionId);
-        Optional<Candidate> candidateOpt = candidateRepository.findById(candidateId);
+    /**
+     * {key, left, right} for the matching path; all null without enrolled templates.
+     */
+    private byte[][] templates(VoterBiometrics bio) throws Exception {
+        if (bio == null || bio.getTemplateEncryptionKey() == null) return new byte[3][];
 
-        if (electionOpt.isEmpty() || candidateOpt.isEmpty()) return null;
-
-        Election election = electionOpt.get();
-        Candidate candidate = candidateOpt.get();
-
-        if (ballotRepository.existsByVoterAndElection(voter, election)) return null;
+        byte[][] plain = decryptStoredTemplates(bio);
+        return new byte[][]{bio.getTemplateEncryptionKey().clone(), plain[0], plain[1]};
+    }
 
-        Ballot ballot = new Ballot();
-        ballot.setVoter(voter);
-        ballot.setElection(election);
-        ballot.setCandidate(candidate);
-        ballot.setCastAt(LocalDateTime.now());
+    /**
+     * Decrypt both stored templates as {left, right}, upgrading legacy Base64 rows on the way.
+     */
+    byte[][] decryptStoredTemplates(VoterBiometrics bio) throws Exception {
+        byte[] keyBytes = bio.getTemplateEncryptionKey();
+        byte[][] plain = {
+                TemplateCodec.decrypt(bio.getLeftTemplate(), keyBytes),
+                TemplateCodec.decrypt(bio.getRightTemplate(), keyBytes)
+        };
+        migrateLegacyTemplates(bio);
+        return plain;
+    }
 
-        Ballot saved = ballotRepository.save(ballot);
+    private void migrateLegacyTemplates(VoterBiometrics bio) {
+        if (!TemplateCodec.isLegacy(bio.getLeftTemplate()) && !TemplateCodec.isLegacy(bio.getRightTemplate()))
+            return;
+
+        byte[] left = TemplateCodec.fromLegacy(bio.getLeftTemplate());
+        byte[] right = TemplateCodec.fromLegacy(bio.getRightTemplate());
+        // lost to a re-enrolment since the read; any legacy half it left is upgraded on a later read
+        int updated = voterBiometricsRepository.updateTemplates(bio.getVoterId(),
+                bio.getLeftTemplate(), bio.getRightTemplate(), left, right);
+        if (updated == 0) return;
+        bio.setLeftTemplate(left);
+        bio.setRightTemplate(right);
+    }
 
-        candidate.setVotesCount(candidate.getVotesCount() + 1);
-        candidateRepository.save(candidate);
+    public boolean verifyPalmTemplate(Voter voter, String encryptedTemplateB64) {
+        return verifyPalmTemplateScore(voter, encryptedTemplateB64) >= 0.80;
+    }
 
-        voter.setHasVoted(true);
-        voter.setLastVotedAt(LocalDateTime.now());
-        voterRepository.save(voter);
+    public List<ElectionCatalog.ElectionEntry> getActiveElections() {
+        return electionCatalog.snapshot().elections();
+    }
 
-        String pdfPath = generateVVPAT(saved);
-        saved.setVvpPath(pdfPath);
-        saved.setVvpGenerated(true);
-        saved.setAuditHash(generateAuditHash(saved, voter.getTemplateEncryptionKey()));
+    /**
+     * A vote is a single statement: the ballot, its VVPAT outbox row and the voter's
+     * has-voted flag are written by one data-modifying CTE in autocommit, so the
+     * commit is one round trip and all-or-nothing. Ballot ID, timestamp and audit
+     * hash are computed up front; nothing is read back or re-saved.
+     */
+    public BallotReceipt castVote(Voter voter, UUID electionId, UUID candidateId) throws Exception {
+        long started = metrics.start();
+        // active elections and their candidates come from the in-memory catalog, no queries
+        ElectionCatalog.ElectionEntry active = electionCatalog.active(electionId);
+        if (active == null || candidateId == null || !active.hasCandidate(candidateId)) {
+            metrics.count(Event.VOTE_REJECTED);
+            return null;
+        }
 
-        return ballotRepository.save(saved);
-    }
+        // memory check; the unique (voter_id, election_id) constraint backs it at commit
+        long stageStarted = metrics.start();
+        boolean claimed = votedSetService.claim(electionId, voter.getVoterId());
+        metrics.stop(Stage.VOTE_CLAIM, stageStarted);
+        if (!claimed) {
+            metrics.count(Event.VOTE_REJECTED);
+            return null;
+        }
 
-    private String generateVVPAT(Ballot ballot) throws Exception {
-        String folder = "vvpat";
-        File dir = new File(folder);
-        if (!dir.exists()) dir.mkdirs();
-
-        String pdfFile = folder + File.separator + ballot.getBallotId() + ".pdf";
-
-        try (PDDocument document = new PDDocument()) {
-            PDPage page = new PDPage();
-            document.addPage(page);
-
-            PDPageContentStream content = new PDPageContentStream(document, page);
-            content.setLeading(14.5f);
-            content.beginText();
-            content.setFont(PDType1Font.HELVETICA_BOLD, 16);
-            content.newLineAtOffset(50, 750);
-            content.showText("VVPAT - Quantum-Secured Palm Vein Voting");
-            content.newLine();
-            content.newLine();
-
-            content.setFont(PDType1Font.HELVETICA, 12);
-            content.showText("Ballot ID: " + ballot.getBallotId()); content.newLine();
-            content.showText("Voter: " + safe(ballot.getVoter().getName())); content.newLine();
-            content.showText("Voter Code: " + safe(ballot.getVoter().getVoterCode())); content.newLine();
-            content.showText("Election: " + safe(ballot.getElection().getTitle())); content.newLine();
-            content.showText("Candidate: " + safe(ballot.getCandidate().getLeaderName())); content.newLine();
-            content.showText("Party: " + safe(ballot.getCandidate().getPartyName())); content.newLine();
-            content.showText("City: " + safe(ballot.getCandidate().getCity())); content.newLine();
-            content.showText("Timestamp: " + ballot.getCastAt()); content.newLine();
-            content.newLine();
-            content.showText("QKD-Secured Audit Hash Included");
-            content.endText();
-            content.close();
-
-            document.save(pdfFile);
+        UUID ballotId = UUID.randomUUID();
+        // Postgres keeps microseconds; hash exactly what is stored so it can be recomputed
+        LocalDateTime castAt = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+        String auditHash;
+        boolean committed;
+        try {
+            stageStarted = metrics.start();
+            byte[] key = voterKey(voter.getVoterId());
+            metrics.stop(Stage.VOTE_KEY, stageStarted);
+
+            stageStarted = metrics.start();
+            auditHash = AuditHashUtil.generate(ballotId, voter.getVoterCode(), candidateId, castAt, key);
+            metrics.stop(Stage.VOTE_HASH, stageStarted);
+
+            stageStarted = metrics.start();
+            Timestamp ts = Timestamp.valueOf(castAt);
+            committed = jdbcTemplate.update(COMMIT_VOTE_SQL,
+                    electionId,
+                    ballotId, voter.getVoterId(), candidateId, ts, auditHash,
+                    ts,
+                    ts, voter.getVoterId()) > 0;
+            metrics.stop(Stage.VOTE_COMMIT, stageStarted);
+        } catch (Exception e) {
+            votedSetService.release(electionId, voter.getVoterId());
+            metrics.count(Event.VOTE_FAILED);
+            throw e;
+        }
+        if (!committed) {
+            // closed after the catalog check; nothing was written
+            votedSetService.release(electionId, voter.getVoterId());
+            metrics.count(Event.VOTE_REJECTED);
+            return null;
         }
 
-        return Paths.get(pdfFile).toAbsolutePath().toString();
+        // the vote stands from here on: nothing below may turn it into an error response
+        voter.setHasVoted(true);
+        voter.setLastVotedAt(castAt);
+        String voterCode = voter.getVoterCode();
+        UUID voterId = voter.getVoterId();
+
+        // journal + Merkle leaf; waits for the shared fsync, not for its own
+        long journalStarted = metrics.start();
+        afterCommit(ballotId, "audit record",
+                () -> auditTreeService.record(ballotId, electionId, candidateId, voterId, castAt, auditHash));
+        metrics.stop(Stage.VOTE_JOURNAL, journalStarted);
+
+        afterCommit(ballotId, "lookup cache invalidation", () -> voterLookupCache.invalidate(voterCode));
+        afterCommit(ballotId, "tally", () -> voteTallyService.record(electionId, candidateId));
+        // PDF rendering happens off the request thread
+        afterCommit(ballotId, "VVPAT dispatch", () -> vvpatService.dispatch(ballotId));
+
+        metrics.count(Event.VOTE_CAST);
+        metrics.stop(Stage.VOTE_TOTAL, started);
+
+        return new BallotReceipt("Vote cast successfully", ballotId, electionId, candidateId,
+                castAt, auditHash, false);
     }
 
-    private String safe(Object o) {
-        return (o == null) ? "" : o.toString();
+    /**
+     * Run one follow-up of a committed vote. A failure is logged and counted, not thrown:
+     * the ballot is in Postgres, and each of these is made good elsewhere (the journal and
+     * audit tree on the next start, the tally at close, the VVPAT by the outbox sweep).
+     */
+    private void afterCommit(UUID ballotId, String what, Runnable step) {
+        try {
+            step.run();
+        } catch (RuntimeException e) {
+            metrics.count(Event.VOTE_AFTER_COMMIT_FAILED);
+            System.out.println("Vote " + ballotId + " is recorded, but its " + what + " failed: " + e);
+        }
     }
 
-    private String generateAuditHash(Ballot ballot, byte[] sessionKey) throws Exception {
-        String data = ballot.getBallotId() + "|" +
-                safe(ballot.getVoter().getVoterCode()) + "|" +
-                safe(ballot.getCandidate().getCandidateId()) + "|" +
-                safe(ballot.getCastAt());
-
-        MessageDigest digest = MessageDigest.getInstance("SHA-256");
-        if (sessionKey != null && sessionKey.length > 0) digest.update(sessionKey);
-        byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
-        return Base64.getEncoder().encodeToString(hash);
+    /** Key from the template cache when the voter was just scanned, otherwise one narrow read. */
+    private byte[] voterKey(UUID voterId) {
+        byte[] key = decryptedTemplateCache.copyKey(voterId);
+        return key != null ? key : voterBiometricsRepository.findKeyByVoterId(voterId);
     }
 }
@@ -0,0 +1,281 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.entity.Ballot;
+import com.quantum.voting.entity.VvpatJob;
+import com.quantum.voting.journal.VvpatArchive;
+import com.quantum.voting.repository.BallotRepository;
+import com.quantum.voting.repository.VvpatJobRepository;
+import com.quantum.voting.service.HotPathMetrics.Event;
+import com.quantum.voting.service.HotPathMetrics.Stage;
+import jakarta.annotation.PreDestroy;
+import org.apache.pdfbox.pdmodel.PDDocument;
+import org.apache.pdfbox.pdmodel.PDPage;
+import org.apache.pdfbox.pdmodel.PDPageContentStream;
+import org.apache.pdfbox.pdmodel.font.PDType1Font;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Renders VVPAT receipts outside the vote transaction.
+ * castVote writes a {@link VvpatJob} next to the ballot; after commit the job is
+ * handed to a bounded worker pool, and a sweeper re-submits anything still
+ * PENDING (queue overflow, crash, restart). With spring.threads.virtual.enabled
+ * the workers are virtual threads; vvpat.workers still caps how many receipts
+ * render at once. Receipts go into the segmented {@link VvpatArchive} under
+ * vvpat.dir/archive (vvpat.archive.enabled=false keeps one file per ballot);
+ * receipts written as single files before the archive existed are still served.
+ */
+@Service
+public class VvpatService {
+
+    /** A receipt's bytes on disk: a slice of an archive segment, or a whole legacy file. */
+    public record StoredReceipt(Path file, long offset, long length, String etag) {}
+
+    private static final int SWEEP_BATCH = 200;
+
+    private final BallotRepository ballotRepository;
+    private final VvpatJobRepository vvpatJobRepository;
+    private final TransactionTemplate transactionTemplate;
+    private final ThreadPoolExecutor workers;
+    private final Set<UUID> inFlight = ConcurrentHashMap.newKeySet();
+    private final int maxAttempts;
+    private final File folder;
+    private final VvpatArchive archive;
+    private final HotPathMetrics metrics;
+
+    public VvpatService(BallotRepository ballotRepository,
+                        VvpatJobRepository vvpatJobRepository,
+                        TransactionTemplate transactionTemplate,
+                        HotPathMetrics metrics,
+                        @Value("${vvpat.workers:4}") int workerCount,
+                        @Value("${vvpat.queue-capacity:1000}") int queueCapacity,
+                        @Value("${vvpat.max-attempts:5}") int maxAttempts,
+                        @Value("${vvpat.dir:vvpat}") String folder,
+                        @Value("${vvpat.archive.enabled:true}") boolean archiveEnabled,
+                        @Value("${vvpat.archive.segment-bytes:67108864}") long archiveSegmentBytes,
+                        @Value("${spring.threads.virtual.enabled:false}") boolean virtualThreads) throws IOException {
+        this.ballotRepository = ballotRepository;
+        this.vvpatJobRepository = vvpatJobRepository;
+        this.transactionTemplate = transactionTemplate;
+        this.maxAttempts = maxAttempts;
+        this.folder = new File(folder);
+        this.metrics = metrics;
+        if (archiveEnabled) {
+            long started = System.currentTimeMillis();
+            this.archive = new VvpatArchive(Paths.get(folder, "archive"), archiveSegmentBytes);
+            System.out.println("VVPAT archive opened: " + archive.size() + " receipts in "
+                    + (System.currentTimeMillis() - started) + " ms");
+        } else {
+            this.archive = null;
+        }
+
+        AtomicInteger threadNo = new AtomicInteger();
+        ThreadFactory threads = virtualThreads
+                ? Thread.ofVirtual().name("vvpat-worker-", 1).factory()
+                : r -> {
+                    Thread t = new Thread(r, "vvpat-worker-" + threadNo.incrementAndGet());
+                    t.setDaemon(true);
+                    return t;
+                };
+        this.workers = new ThreadPoolExecutor(workerCount, workerCount, 0L, TimeUnit.MILLISECONDS,
+                new ArrayBlockingQueue<>(queueCapacity), threads);
+    }
+
+    /**
+     * The caller already committed the outbox row itself (the vote statement does); start rendering.
+     */
+    public void dispatch(UUID ballotId) {
+        submit(ballotId);
+    }
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void resumePending() {
+        sweep();
+    }
+
+    @Scheduled(fixedDelayString = "${vvpat.sweep-millis:5000}")
+    public void sweep() {
+        // only refill while the queue has room, otherwise we would just re-read the same rows
+        if (workers.getQueue().remainingCapacity() == 0) return;
+
+        List<VvpatJob> pending = vvpatJobRepository.findByStatusOrderByCreatedAt(
+                VvpatJob.PENDING, PageRequest.of(0, SWEEP_BATCH));
+        for (VvpatJob job : pending) submit(job.getBallotId());
+    }
+
+    private void submit(UUID ballotId) {
+        if (!inFlight.add(ballotId)) return;
+        try {
+            workers.execute(() -> {
+                try {
+                    process(ballotId);
+                } finally {
+                    inFlight.remove(ballotId);
+                }
+            });
+        } catch (RejectedExecutionException e) {
+            // queue full: the job stays PENDING and the sweeper picks it up later
+            inFlight.remove(ballotId);
+        }
+    }
+
+    private void process(UUID ballotId) {
+        try {
+            long started = metrics.start();
+            Ballot ballot = ballotRepository.findById(ballotId).orElse(null);
+            metrics.stop(Stage.VVPAT_LOAD, started);
+            if (ballot == null) {
+                finish(ballotId, VvpatJob.FAILED, "Ballot not found");
+                metrics.count(Event.VVPAT_FAILED);
+                return;
+            }
+
+            started = metrics.start();
+            byte[] pdf = renderVVPAT(ballot);
+            metrics.stop(Stage.VVPAT_RENDER, started);
+
+            started = metrics.start();
+            String pdfPath = archive != null
+                    ? archive.locator(archive.put(ballotId, pdf))
+                    : writeVVPAT(ballotId, pdf, folder);
+            metrics.stop(Stage.VVPAT_WRITE, started);
+
+            transactionTemplate.executeWithoutResult(status -> {
+                ballotRepository.markVvpGenerated(ballotId, pdfPath);
+                finish(ballotId, VvpatJob.DONE, null);
+            });
+            metrics.count(Event.VVPAT_DONE);
+
+        } catch (Exception e) {
+            metrics.count(Event.VVPAT_FAILED);
+            transactionTemplate.executeWithoutResult(status ->
+                    vvpatJobRepository.findById(ballotId).ifPresent(job -> {
+                        job.setAttempts(job.getAttempts() + 1);
+                        job.setLastError(String.valueOf(e.getMessage()));
+                        job.setStatus(job.getAttempts() >= maxAttempts ? VvpatJob.FAILED : VvpatJob.PENDING);
+                        job.setUpdatedAt(LocalDateTime.now());
+                        vvpatJobRepository.save(job);
+                    }));
+        }
+    }
+
+    /**
+     * Where a generated receipt's bytes are: its archive record, or the single file
+     * named in vvp_path for receipts written before the archive. Null if neither exists.
+     */
+    public StoredReceipt stored(Ballot ballot) {
+        VvpatArchive.Location location = archive != null ? archive.get(ballot.getBallotId()) : null;
+        if (location != null) {
+            return new StoredReceipt(archive.file(location), location.offset(), location.length(), location.etag());
+        }
+        if (ballot.getVvpPath() == null) return null;
+        File file = new File(ballot.getVvpPath());
+        if (!file.isFile()) return null;
+        return new StoredReceipt(file.toPath(), 0, file.length(),
+                "\"" + Long.toHexString(file.lastModified()) + "-" + Long.toHexString(file.length()) + "\"");
+    }
+
+    private void finish(UUID ballotId, String status, String error) {
+        vvpatJobRepository.findById(ballotId).ifPresent(job -> {
+            job.setStatus(status);
+            job.setLastError(error);
+            job.setUpdatedAt(LocalDateTime.now());
+            vvpatJobRepository.save(job);
+        });
+    }
+
+    /**
+     * Lay out and serialise the receipt PDF in memory. This and writeVVPAT are static
+     * and public only so palmvein-voting-benchmarks can time them without a Spring context.
+     */
+    public static byte[] renderVVPAT(Ballot ballot) throws IOException {
+        try (PDDocument document = new PDDocument()) {
+            PDPage page = new PDPage();
+            document.addPage(page);
+
+            PDPageContentStream content = new PDPageContentStream(document, page);
+            content.setLeading(14.5f);
+            content.beginText();
+            content.setFont(PDType1Font.HELVETICA_BOLD, 16);
+            content.newLineAtOffset(50, 750);
+            content.showText("VVPAT - Quantum-Secured Palm Vein Voting");
+            content.newLine();
+            content.newLine();
+
+            content.setFont(PDType1Font.HELVETICA, 12);
+            content.showText("Ballot ID: " + ballot.getBallotId()); content.newLine();
+            content.showText("Voter: " + safe(ballot.getVoter().getName())); content.newLine();
+            content.showText("Voter Code: " + safe(ballot.getVoter().getVoterCode())); content.newLine();
+            content.showText("Election: " + safe(ballot.getElection().getTitle())); content.newLine();
+            content.showText("Candidate: " + safe(ballot.getCandidate().getLeaderName())); content.newLine();
+            content.showText("Party: " + safe(ballot.getCandidate().getPartyName())); content.newLine();
+            content.showText("City: " + safe(ballot.getCandidate().getCity())); content.newLine();
+            content.showText("Timestamp: " + ballot.getCastAt()); content.newLine();
+            content.newLine();
+            content.showText("QKD-Secured Audit Hash Included");
+            content.endText();
+            content.close();
+
+            ByteArrayOutputStream pdf = new ByteArrayOutputStream(4096);
+            document.save(pdf);
+            return pdf.toByteArray();
+        }
+    }
+
+    /**
+     * Write a rendered receipt as dir/&lt;ballotId&gt;.pdf; returns the absolute path.
+     */
+    public static String writeVVPAT(UUID ballotId, byte[] pdf, File dir) throws IOException {
+        if (!dir.exists()) dir.mkdirs();
+
+        String pdfFile = dir.getPath() + File.separator + ballotId + ".pdf";
+
+        // fsync before the job is marked DONE so a crash cannot leave a DONE row without a file
+        try (FileOutputStream out = new FileOutputStream(pdfFile)) {
+            out.write(pdf);
+            out.getFD().sync();
+        }
+
+        return Paths.get(pdfFile).toAbsolutePath().toString();
+    }
+
+    private static String safe(Object o) {
+        return (o == null) ? "" : o.toString();
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        workers.shutdown();
+        workers.awaitTermination(10, TimeUnit.SECONDS);
+        if (archive != null) {
+            try {
+                archive.close();
+            } catch (IOException e) {
+                System.out.println("VVPAT archive close failed: " + e.getMessage());
+            }
+        }
+    }
+}
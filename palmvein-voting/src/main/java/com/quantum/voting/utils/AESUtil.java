@@ -4,15 +4,91 @@ import javax.crypto.Cipher;
 import javax.crypto.KeyGenerator;
 import javax.crypto.SecretKey;
 import javax.crypto.spec.GCMParameterSpec;
-import javax.crypto.spec.SecretKeySpec;
+import java.security.GeneralSecurityException;
 import java.security.SecureRandom;
+import java.util.Arrays;
 import java.util.Base64;
+import java.util.concurrent.ArrayBlockingQueue;
 
 public class AESUtil {
 
     private static final int AES_KEY_SIZE = 256;        // bits
     private static final int GCM_TAG_LENGTH = 128;      // bits
     private static final int GCM_NONCE_LENGTH = 12;     // bytes (96-bit recommended)
+    private static final int GCM_TAG_BYTES = GCM_TAG_LENGTH / 8;
+
+    // SecureRandom is thread-safe; seeding one per call is the expensive part
+    private static final SecureRandom RANDOM = new SecureRandom();
+
+    // Cipher is not thread-safe, so callers borrow one from a small shared pool; one per
+    // thread would mean one per virtual thread, each built for a single request
+    private static final ArrayBlockingQueue<CipherSlot> POOL =
+            new ArrayBlockingQueue<>(Math.max(4, 2 * Runtime.getRuntime().availableProcessors()));
+
+    private static final class CipherSlot {
+        final Cipher cipher;
+        final byte[] nonce = new byte[GCM_NONCE_LENGTH];
+        SlotKey lastKey;
+
+        CipherSlot() {
+            try {
+                cipher = Cipher.getInstance("AES/GCM/NoPadding");
+            } catch (GeneralSecurityException e) {
+                throw new IllegalStateException("AES/GCM not available", e);
+            }
+        }
+
+        SecretKey key(byte[] keyBytes) {
+            if (lastKey == null || !Arrays.equals(lastKey.bytes, keyBytes)) {
+                clear();
+                lastKey = new SlotKey(keyBytes.clone());
+            }
+            return lastKey;
+        }
+
+        void clear() {
+            if (lastKey != null) lastKey.destroy();
+            lastKey = null;
+        }
+    }
+
+    // unlike SecretKeySpec, its one copy of the key can be zeroed
+    private static final class SlotKey implements SecretKey {
+        final byte[] bytes;
+
+        SlotKey(byte[] bytes) {
+            this.bytes = bytes;
+        }
+
+        @Override
+        public String getAlgorithm() {
+            return "AES";
+        }
+
+        @Override
+        public String getFormat() {
+            return "RAW";
+        }
+
+        @Override
+        public byte[] getEncoded() {
+            return bytes.clone();
+        }
+
+        @Override
+        public void destroy() {
+            Arrays.fill(bytes, (byte) 0);
+        }
+    }
+
+    private static CipherSlot borrow() {
+        CipherSlot slot = POOL.poll();
+        return slot != null ? slot : new CipherSlot();
+    }
+
+    private static void release(CipherSlot slot) {
+        if (!POOL.offer(slot)) slot.clear();
+    }
 
     /**
      * Generate a new AES-256 key (for prototype)
@@ -42,55 +118,81 @@ public class AESUtil {
      */
     public static byte[] generateSessionKeyBytes() {
         byte[] bytes = new byte[32]; // 256-bit
-        new SecureRandom().nextBytes(bytes);
+        RANDOM.nextBytes(bytes);
         return bytes;
     }
 
+    /**
+     * Size of nonce || ciphertext || tag for a plaintext of the given length
+     */
+    public static int encryptedLength(int plainLength) {
+        return GCM_NONCE_LENGTH + plainLength + GCM_TAG_BYTES;
+    }
+
+    /**
+     * Size of the plaintext inside a nonce || ciphertext || tag record
+     */
+    public static int decryptedLength(int combinedLength) {
+        return combinedLength - GCM_NONCE_LENGTH - GCM_TAG_BYTES;
+    }
+
     /**
      * AES-GCM encryption for palm templates
      * Output: Base64( nonce || ciphertext )
      */
     public static String encryptGCM(byte[] data, byte[] keyBytes) throws Exception {
-        byte[] nonce = new byte[GCM_NONCE_LENGTH];
-        new SecureRandom().nextBytes(nonce);
-
-        SecretKey key = new SecretKeySpec(keyBytes, "AES");
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
-        cipher.init(Cipher.ENCRYPT_MODE, key, spec);
-
-        byte[] encrypted = cipher.doFinal(data);
-
-        // combine (nonce || ciphertext)
-        byte[] combined = new byte[nonce.length + encrypted.length];
-        System.arraycopy(nonce, 0, combined, 0, nonce.length);
-        System.arraycopy(encrypted, 0, combined, nonce.length, encrypted.length);
-
+        byte[] combined = new byte[encryptedLength(data.length)];
+        encryptGCM(data, 0, data.length, keyBytes, combined, 0);
         return Base64.getEncoder().encodeToString(combined);
     }
 
+    /**
+     * AES-GCM encryption into a caller buffer.
+     * Writes nonce || ciphertext at out[outOffset] and returns the bytes written.
+     */
+    public static int encryptGCM(byte[] data, int offset, int length, byte[] keyBytes,
+                                 byte[] out, int outOffset) throws GeneralSecurityException {
+        CipherSlot slot = borrow();
+        try {
+            RANDOM.nextBytes(slot.nonce);
+            System.arraycopy(slot.nonce, 0, out, outOffset, GCM_NONCE_LENGTH);
+
+            slot.cipher.init(Cipher.ENCRYPT_MODE, slot.key(keyBytes),
+                    new GCMParameterSpec(GCM_TAG_LENGTH, slot.nonce));
+            return GCM_NONCE_LENGTH + slot.cipher.doFinal(data, offset, length, out, outOffset + GCM_NONCE_LENGTH);
+        } finally {
+            release(slot);
+        }
+    }
+
     /**
      * AES-GCM decryption for palm templates
      * Accepts Base64( nonce || ciphertext )
      */
     public static byte[] decryptGCMBase64(String encryptedBase64, byte[] keyBytes) throws Exception {
         byte[] combined = Base64.getDecoder().decode(encryptedBase64);
+        return decryptGCM(combined, 0, combined.length, keyBytes);
+    }
 
-        if (combined.length < GCM_NONCE_LENGTH) {
-            throw new IllegalArgumentException("Invalid encrypted template");
+    /**
+     * AES-GCM decryption straight from a nonce || ciphertext record, no copies of either part.
+     */
+    public static byte[] decryptGCM(byte[] combined, int offset, int length, byte[] keyBytes)
+            throws GeneralSecurityException {
+        checkLength(length);
+        CipherSlot slot = borrow();
+        try {
+            slot.cipher.init(Cipher.DECRYPT_MODE, slot.key(keyBytes),
+                    new GCMParameterSpec(GCM_TAG_LENGTH, combined, offset, GCM_NONCE_LENGTH));
+            return slot.cipher.doFinal(combined, offset + GCM_NONCE_LENGTH, length - GCM_NONCE_LENGTH);
+        } finally {
+            release(slot);
         }
+    }
 
-        byte[] nonce = new byte[GCM_NONCE_LENGTH];
-        byte[] cipherBytes = new byte[combined.length - GCM_NONCE_LENGTH];
-
-        System.arraycopy(combined, 0, nonce, 0, GCM_NONCE_LENGTH);
-        System.arraycopy(combined, GCM_NONCE_LENGTH, cipherBytes, 0, cipherBytes.length);
-
-        SecretKey key = new SecretKeySpec(keyBytes, "AES");
-        Cipher cipher = Cipher.getInstance("AES/GCM/NoPadding");
-        GCMParameterSpec spec = new GCMParameterSpec(GCM_TAG_LENGTH, nonce);
-        cipher.init(Cipher.DECRYPT_MODE, key, spec);
-
-        return cipher.doFinal(cipherBytes);
+    private static void checkLength(int length) {
+        if (length < GCM_NONCE_LENGTH + GCM_TAG_BYTES) {
+            throw new IllegalArgumentException("Invalid encrypted template");
+        }
     }
 }
@@ -0,0 +1,32 @@
+package com.quantum.voting.utils;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.time.LocalDateTime;
+import java.util.Base64;
+import java.util.UUID;
+
+public class AuditHashUtil {
+
+    /**
+     * Base64 SHA-256 over (sessionKey ||) "ballotId|voterCode|candidateId|castAt",
+     * the hash printed on the voter's receipt.
+     */
+    public static String generate(UUID ballotId, String voterCode, UUID candidateId,
+                                  LocalDateTime castAt, byte[] sessionKey) throws NoSuchAlgorithmException {
+        String data = ballotId + "|" +
+                safe(voterCode) + "|" +
+                safe(candidateId) + "|" +
+                safe(castAt);
+
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+        if (sessionKey != null && sessionKey.length > 0) digest.update(sessionKey);
+        byte[] hash = digest.digest(data.getBytes(StandardCharsets.UTF_8));
+        return Base64.getEncoder().encodeToString(hash);
+    }
+
+    private static String safe(Object o) {
+        return (o == null) ? "" : o.toString();
+    }
+}
@@ -0,0 +1,37 @@
+package com.quantum.voting.utils;
+
+import org.springframework.web.multipart.MaxUploadSizeExceededException;
+
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Reads raw upload bodies straight into one exactly-sized array, with a hard size cap.
+ */
+public final class BinaryBody {
+
+    private BinaryBody() {}
+
+    /**
+     * @param declaredLength Content-Length or part size, or -1 when the body is chunked
+     * @throws MaxUploadSizeExceededException if the body is larger than maxBytes
+     */
+    public static byte[] read(InputStream in, long declaredLength, int maxBytes) throws IOException {
+        if (declaredLength > maxBytes) {
+            throw new MaxUploadSizeExceededException(maxBytes);
+        }
+        if (declaredLength >= 0) {
+            byte[] body = new byte[(int) declaredLength];
+            int n = in.readNBytes(body, 0, body.length);
+            if (n < body.length) throw new EOFException("Body ended after " + n + " of " + body.length + " bytes");
+            return body;
+        }
+
+        byte[] body = in.readNBytes(maxBytes + 1);
+        if (body.length > maxBytes) {
+            throw new MaxUploadSizeExceededException(maxBytes);
+        }
+        return body;
+    }
+}
@@ -0,0 +1,114 @@
+package com.quantum.voting.utils;
+
+import jakarta.servlet.http.HttpServletRequest;
+import jakarta.servlet.http.HttpServletResponse;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpRange;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.channels.WritableByteChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * Sends a byte region of a file (a whole file, or one record of an archive segment)
+ * with ETag / If-None-Match and single-range Range / If-Range support. On Tomcat's
+ * NIO connector the region is handed to its sendfile path, which does
+ * FileChannel.transferTo straight into the socket (zero-copy). Where sendfile is
+ * unavailable (TLS, other containers) we transferTo the response stream, which
+ * still never holds the whole body in memory.
+ */
+public final class FileRegionResponse {
+
+    private static final String SENDFILE_SUPPORT = "org.apache.tomcat.sendfile.support";
+    private static final String SENDFILE_FILENAME = "org.apache.tomcat.sendfile.filename";
+    private static final String SENDFILE_START = "org.apache.tomcat.sendfile.start";
+    private static final String SENDFILE_END = "org.apache.tomcat.sendfile.end";
+
+    private FileRegionResponse() {}
+
+    /**
+     * @param offset where the content starts in {@code file}
+     * @param length content length; Range positions are relative to {@code offset}
+     */
+    public static void send(HttpServletRequest request, HttpServletResponse response, Path file,
+                            long offset, long length, String etag, String contentType,
+                            String contentDisposition) throws IOException {
+        response.setHeader(HttpHeaders.ETAG, etag);
+        response.setHeader(HttpHeaders.ACCEPT_RANGES, "bytes");
+
+        if (matches(request.getHeader(HttpHeaders.IF_NONE_MATCH), etag)) {
+            response.setStatus(HttpServletResponse.SC_NOT_MODIFIED);
+            return;
+        }
+
+        long start = 0;
+        long count = length;
+        String range = request.getHeader(HttpHeaders.RANGE);
+        String ifRange = request.getHeader(HttpHeaders.IF_RANGE);
+        if (range != null && (ifRange == null || ifRange.equals(etag))) {
+            List<HttpRange> ranges;
+            try {
+                ranges = HttpRange.parseRanges(range);
+            } catch (IllegalArgumentException e) {
+                notSatisfiable(response, length);
+                return;
+            }
+            // several ranges would need multipart/byteranges; a full 200 is allowed instead
+            if (ranges.size() == 1) {
+                start = ranges.get(0).getRangeStart(length);
+                long end = ranges.get(0).getRangeEnd(length);
+                if (start >= length || start > end) {
+                    notSatisfiable(response, length);
+                    return;
+                }
+                count = end - start + 1;
+                response.setStatus(HttpServletResponse.SC_PARTIAL_CONTENT);
+                response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes " + start + "-" + end + "/" + length);
+            }
+        }
+
+        response.setContentType(contentType);
+        if (contentDisposition != null) response.setHeader(HttpHeaders.CONTENT_DISPOSITION, contentDisposition);
+        response.setContentLengthLong(count);
+        if ("HEAD".equals(request.getMethod()) || count == 0) return;
+
+        if (Boolean.TRUE.equals(request.getAttribute(SENDFILE_SUPPORT))) {
+            request.setAttribute(SENDFILE_FILENAME, file.toAbsolutePath().toString());
+            request.setAttribute(SENDFILE_START, offset + start);
+            request.setAttribute(SENDFILE_END, offset + start + count);
+            return;
+        }
+
+        try (FileChannel channel = FileChannel.open(file, StandardOpenOption.READ)) {
+            OutputStream out = response.getOutputStream();
+            WritableByteChannel target = Channels.newChannel(out);
+            long pos = offset + start;
+            long end = pos + count;
+            while (pos < end) {
+                long n = channel.transferTo(pos, end - pos, target);
+                if (n <= 0) throw new IOException("File ended before " + end + ": " + file);
+                pos += n;
+            }
+            out.flush();
+        }
+    }
+
+    private static void notSatisfiable(HttpServletResponse response, long length) {
+        response.setStatus(HttpServletResponse.SC_REQUESTED_RANGE_NOT_SATISFIABLE);
+        response.setHeader(HttpHeaders.CONTENT_RANGE, "bytes */" + length);
+    }
+
+    private static boolean matches(String ifNoneMatch, String etag) {
+        if (ifNoneMatch == null) return false;
+        for (String tag : ifNoneMatch.split(",")) {
+            String t = tag.trim();
+            if (t.equals("*") || t.equals(etag) || t.equals("W/" + etag)) return true;
+        }
+        return false;
+    }
+}
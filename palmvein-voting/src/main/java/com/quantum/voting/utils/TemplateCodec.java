@@ -0,0 +1,89 @@
+package com.quantum.voting.utils;
+
+import java.security.GeneralSecurityException;
+import java.util.Base64;
+
+/**
+ * Binary record format for palm templates stored in the voter_biometrics BYTEA columns.
+ *
+ * <pre>
+ *   [0]  magic 0xB7   (high bit set: never a Base64 character)
+ *   [1]  magic 0x50
+ *   [2]  version      (1)
+ *   [3]  algorithm    (1 = AES-256-GCM, 128-bit tag)
+ *   [4]  nonce        (12 bytes)
+ *   [16] ciphertext || tag
+ * </pre>
+ *
+ * Rows written before this format hold the UTF-8 bytes of Base64(nonce || ciphertext);
+ * {@link #decrypt} still reads them and {@link #fromLegacy} re-frames them without decrypting.
+ */
+public final class TemplateCodec {
+
+    private static final byte MAGIC_0 = (byte) 0xB7;
+    private static final byte MAGIC_1 = 0x50;
+    private static final byte VERSION = 1;
+    private static final byte ALG_AES_GCM = 1;
+    public static final int HEADER_LENGTH = 4;
+
+    private TemplateCodec() {
+    }
+
+    /**
+     * Encrypt a raw template into a versioned binary record
+     */
+    public static byte[] encrypt(byte[] plain, byte[] keyBytes) throws GeneralSecurityException {
+        byte[] record = new byte[HEADER_LENGTH + AESUtil.encryptedLength(plain.length)];
+        writeHeader(record);
+        AESUtil.encryptGCM(plain, 0, plain.length, keyBytes, record, HEADER_LENGTH);
+        return record;
+    }
+
+    /**
+     * Decrypt a stored template in either format; null when nothing is stored
+     */
+    public static byte[] decrypt(byte[] stored, byte[] keyBytes) throws GeneralSecurityException {
+        if (stored == null || stored.length == 0) return null;
+        if (isLegacy(stored)) {
+            byte[] combined = Base64.getDecoder().decode(stored);
+            return AESUtil.decryptGCM(combined, 0, combined.length, keyBytes);
+        }
+        checkHeader(stored);
+        return AESUtil.decryptGCM(stored, HEADER_LENGTH, stored.length - HEADER_LENGTH, keyBytes);
+    }
+
+    /**
+     * True for rows still holding Base64 text
+     */
+    public static boolean isLegacy(byte[] stored) {
+        return stored != null && stored.length > 0 && (stored[0] & 0x80) == 0;
+    }
+
+    /**
+     * Re-frame a legacy Base64 row as a binary record; the ciphertext is unchanged
+     */
+    public static byte[] fromLegacy(byte[] stored) {
+        if (!isLegacy(stored)) return stored;
+        byte[] combined = Base64.getDecoder().decode(stored);
+        byte[] record = new byte[HEADER_LENGTH + combined.length];
+        writeHeader(record);
+        System.arraycopy(combined, 0, record, HEADER_LENGTH, combined.length);
+        return record;
+    }
+
+    private static void writeHeader(byte[] record) {
+        record[0] = MAGIC_0;
+        record[1] = MAGIC_1;
+        record[2] = VERSION;
+        record[3] = ALG_AES_GCM;
+    }
+
+    private static void checkHeader(byte[] record) {
+        if (record.length < HEADER_LENGTH || record[0] != MAGIC_0 || record[1] != MAGIC_1) {
+            throw new IllegalArgumentException("Invalid template record");
+        }
+        if (record[2] != VERSION || record[3] != ALG_AES_GCM) {
+            throw new IllegalArgumentException("Unsupported template record version " + record[2]);
+        }
+    }
+}
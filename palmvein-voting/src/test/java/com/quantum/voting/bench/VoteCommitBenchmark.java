@@ -0,0 +1,237 @@
+package com.quantum.voting.bench;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.UUID;
+
+/**
+ * Votes per second on one Postgres connection: the old JPA-shaped vote
+ * (lookups, insert, counter update, voter update, ballot re-save, outbox insert,
+ * commit) against the single-statement commit used by VoterService.castVote.
+ * Works in a throwaway schema, which it drops afterwards.
+ *
+ * <pre>
+ * mvn -q test-compile exec:java -Dexec.classpathScope=test \
+ *     -Dexec.mainClass=com.quantum.voting.bench.VoteCommitBenchmark \
+ *     -Dexec.args="jdbc:postgresql://localhost:5432/palmvein_voting postgres secret 20000"
+ * </pre>
+ *
+ * Three runs of 20000 votes (10000 per path) on embedded Postgres 16.2, one
+ * core, JDK 21: legacy 349-1219 votes/s (0.82-2.86 ms/vote), single statement
+ * 5809-6620 votes/s (0.15-0.17 ms/vote). That server runs with fsync and
+ * synchronous_commit off, so these are round trips and statement work only;
+ * both paths commit once per vote, and on a durable server the WAL flush adds
+ * the same cost to each.
+ */
+public class VoteCommitBenchmark {
+
+	private static final String COMMIT_VOTE_SQL =
+			"WITH open AS (" +
+					"SELECT election_id FROM elections WHERE election_id = ? AND status = 'ACTIVE' FOR KEY SHARE" +
+			"), ballot AS (" +
+					"INSERT INTO ballots (ballot_id, voter_id, election_id, candidate_id, cast_at, vvp_generated, audit_hash) " +
+					"SELECT ?, ?, election_id, ?, CAST(? AS timestamp), false, ? FROM open RETURNING ballot_id" +
+			"), job AS (" +
+					"INSERT INTO vvpat_outbox (ballot_id, status, attempts, created_at) " +
+					"SELECT ballot_id, 'PENDING', 0, CAST(? AS timestamp) FROM ballot" +
+			") UPDATE voters SET has_voted = true, last_voted_at = ? WHERE voter_id = ? AND EXISTS (SELECT 1 FROM ballot)";
+
+	public static void main(String[] args) throws Exception {
+		if (args.length < 3) {
+			System.err.println("usage: VoteCommitBenchmark <jdbcUrl> <user> <password> [votes]");
+			System.exit(2);
+		}
+		int votes = args.length > 3 ? Integer.parseInt(args[3]) : 20_000;
+		String schema = "vote_bench_" + System.currentTimeMillis();
+
+		try (Connection conn = DriverManager.getConnection(args[0], args[1], args[2])) {
+			try {
+				setUp(conn, schema, votes * 2);
+				UUID election = UUID.randomUUID();
+				UUID candidate = UUID.randomUUID();
+				seedElection(conn, election, candidate);
+
+				// warm both paths on voters the timed runs do not use
+				int warm = Math.min(2_000, votes / 10);
+				runLegacy(conn, election, candidate, voterIds(conn, 0, warm));
+				runSingleStatement(conn, election, candidate, voterIds(conn, warm, warm));
+
+				int from = warm * 2;
+				UUID[] legacyVoters = voterIds(conn, from, votes / 2);
+				UUID[] newVoters = voterIds(conn, from + votes / 2, votes / 2);
+
+				long t0 = System.nanoTime();
+				runLegacy(conn, election, candidate, legacyVoters);
+				long legacyNanos = System.nanoTime() - t0;
+
+				t0 = System.nanoTime();
+				runSingleStatement(conn, election, candidate, newVoters);
+				long newNanos = System.nanoTime() - t0;
+
+				report("legacy (9 statements + commit)", legacyVoters.length, legacyNanos);
+				report("single statement (autocommit)", newVoters.length, newNanos);
+			} finally {
+				conn.setAutoCommit(true);
+				try (Statement st = conn.createStatement()) {
+					st.execute("DROP SCHEMA IF EXISTS " + schema + " CASCADE");
+				}
+			}
+		}
+	}
+
+	private static void report(String name, int votes, long nanos) {
+		System.out.printf("%-32s %8d votes  %9.0f votes/s  %7.3f ms/vote%n",
+				name, votes, votes / (nanos / 1e9), nanos / 1e6 / votes);
+	}
+
+	/**
+	 * The vote as it was: two lookups, exists check, insert, counter update,
+	 * voter update, key read, ballot re-save, outbox insert, all in one transaction.
+	 */
+	private static void runLegacy(Connection conn, UUID election, UUID candidate, UUID[] voters) throws SQLException {
+		conn.setAutoCommit(false);
+		try (PreparedStatement findElection = conn.prepareStatement("SELECT status FROM elections WHERE election_id = ?");
+			 PreparedStatement findCandidate = conn.prepareStatement("SELECT election_id FROM candidates WHERE candidate_id = ?");
+			 PreparedStatement exists = conn.prepareStatement("SELECT 1 FROM ballots WHERE voter_id = ? AND election_id = ?");
+			 PreparedStatement insertBallot = conn.prepareStatement(
+					 "INSERT INTO ballots (ballot_id, voter_id, election_id, candidate_id, cast_at, vvp_generated) VALUES (?, ?, ?, ?, ?, false)");
+			 PreparedStatement bumpCandidate = conn.prepareStatement(
+					 "UPDATE candidates SET votes_count = votes_count + 1 WHERE candidate_id = ?");
+			 PreparedStatement updateVoter = conn.prepareStatement(
+					 "UPDATE voters SET has_voted = true, last_voted_at = ? WHERE voter_id = ?");
+			 PreparedStatement findKey = conn.prepareStatement(
+					 "SELECT template_encryption_key FROM voter_biometrics WHERE voter_id = ?");
+			 PreparedStatement resaveBallot = conn.prepareStatement(
+					 "UPDATE ballots SET audit_hash = ?, vvp_generated = false, vvp_path = NULL WHERE ballot_id = ?");
+			 PreparedStatement insertJob = conn.prepareStatement(
+					 "INSERT INTO vvpat_outbox (ballot_id, status, attempts, created_at) VALUES (?, 'PENDING', 0, ?)")) {
+			for (UUID voter : voters) {
+				findElection.setObject(1, election);
+				drain(findElection);
+				findCandidate.setObject(1, candidate);
+				drain(findCandidate);
+				exists.setObject(1, voter);
+				exists.setObject(2, election);
+				drain(exists);
+
+				UUID ballot = UUID.randomUUID();
+				Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+				insertBallot.setObject(1, ballot);
+				insertBallot.setObject(2, voter);
+				insertBallot.setObject(3, election);
+				insertBallot.setObject(4, candidate);
+				insertBallot.setTimestamp(5, now);
+				insertBallot.executeUpdate();
+
+				bumpCandidate.setObject(1, candidate);
+				bumpCandidate.executeUpdate();
+
+				updateVoter.setTimestamp(1, now);
+				updateVoter.setObject(2, voter);
+				updateVoter.executeUpdate();
+
+				findKey.setObject(1, voter);
+				drain(findKey);
+
+				resaveBallot.setString(1, "hash-" + ballot);
+				resaveBallot.setObject(2, ballot);
+				resaveBallot.executeUpdate();
+
+				insertJob.setObject(1, ballot);
+				insertJob.setTimestamp(2, now);
+				insertJob.executeUpdate();
+
+				conn.commit();
+			}
+		} finally {
+			conn.setAutoCommit(true);
+		}
+	}
+
+	private static void runSingleStatement(Connection conn, UUID election, UUID candidate, UUID[] voters) throws SQLException {
+		conn.setAutoCommit(true);
+		try (PreparedStatement commitVote = conn.prepareStatement(COMMIT_VOTE_SQL)) {
+			for (UUID voter : voters) {
+				UUID ballot = UUID.randomUUID();
+				Timestamp now = Timestamp.valueOf(LocalDateTime.now());
+				commitVote.setObject(1, election);
+				commitVote.setObject(2, ballot);
+				commitVote.setObject(3, voter);
+				commitVote.setObject(4, candidate);
+				commitVote.setTimestamp(5, now);
+				commitVote.setString(6, "hash-" + ballot);
+				commitVote.setTimestamp(7, now);
+				commitVote.setTimestamp(8, now);
+				commitVote.setObject(9, voter);
+				if (commitVote.executeUpdate() != 1) throw new IllegalStateException("vote not recorded");
+			}
+		}
+	}
+
+	private static void drain(PreparedStatement query) throws SQLException {
+		try (ResultSet rs = query.executeQuery()) {
+			while (rs.next()) {
+				rs.getObject(1);
+			}
+		}
+	}
+
+	private static void setUp(Connection conn, String schema, int voters) throws SQLException {
+		try (Statement st = conn.createStatement()) {
+			st.execute("CREATE SCHEMA " + schema);
+			st.execute("SET search_path TO " + schema);
+			st.execute("CREATE TABLE voters (voter_id uuid PRIMARY KEY, voter_code varchar(255) UNIQUE NOT NULL, " +
+					"has_voted boolean NOT NULL DEFAULT false, last_voted_at timestamp(6))");
+			st.execute("CREATE TABLE voter_biometrics (voter_id uuid PRIMARY KEY, template_encryption_key bytea)");
+			st.execute("CREATE TABLE elections (election_id uuid PRIMARY KEY, status varchar(255))");
+			st.execute("CREATE TABLE candidates (candidate_id uuid PRIMARY KEY, " +
+					"election_id uuid REFERENCES elections, votes_count integer NOT NULL DEFAULT 0)");
+			st.execute("CREATE TABLE ballots (ballot_id uuid PRIMARY KEY, voter_id uuid REFERENCES voters, " +
+					"election_id uuid REFERENCES elections, candidate_id uuid REFERENCES candidates, " +
+					"cast_at timestamp(6), vvp_generated boolean NOT NULL, vvp_path varchar(255), audit_hash varchar(255), " +
+					"CONSTRAINT uk_ballots_voter_election UNIQUE (voter_id, election_id))");
+			st.execute("CREATE TABLE vvpat_outbox (ballot_id uuid PRIMARY KEY, status varchar(255) NOT NULL, " +
+					"attempts integer NOT NULL, last_error varchar(255), created_at timestamp(6), updated_at timestamp(6))");
+			st.execute("INSERT INTO voters (voter_id, voter_code) " +
+					"SELECT gen_random_uuid(), 'V' || g FROM generate_series(1, " + voters + ") g");
+			st.execute("INSERT INTO voter_biometrics SELECT voter_id, gen_random_bytes(32) FROM voters");
+			st.execute("ANALYZE");
+		} catch (SQLException e) {
+			// gen_random_bytes needs pgcrypto; the key content does not matter here
+			if (!e.getMessage().contains("gen_random_bytes")) throw e;
+			try (Statement st = conn.createStatement()) {
+				st.execute("INSERT INTO voter_biometrics SELECT voter_id, decode(md5(voter_code), 'hex') FROM voters");
+				st.execute("ANALYZE");
+			}
+		}
+	}
+
+	private static void seedElection(Connection conn, UUID election, UUID candidate) throws SQLException {
+		try (PreparedStatement e = conn.prepareStatement("INSERT INTO elections VALUES (?, 'ACTIVE')");
+			 PreparedStatement c = conn.prepareStatement("INSERT INTO candidates VALUES (?, ?, 0)")) {
+			e.setObject(1, election);
+			e.executeUpdate();
+			c.setObject(1, candidate);
+			c.setObject(2, election);
+			c.executeUpdate();
+		}
+	}
+
+	private static UUID[] voterIds(Connection conn, int offset, int count) throws SQLException {
+		UUID[] ids = new UUID[count];
+		try (PreparedStatement q = conn.prepareStatement("SELECT voter_id FROM voters ORDER BY voter_code OFFSET ? LIMIT ?")) {
+			q.setInt(1, offset);
+			q.setInt(2, count);
+			try (ResultSet rs = q.executeQuery()) {
+				for (int i = 0; rs.next(); i++) ids[i] = rs.getObject(1, UUID.class);
+			}
+		}
+		return ids;
+	}
+}
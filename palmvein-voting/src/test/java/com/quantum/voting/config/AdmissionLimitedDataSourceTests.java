@@ -0,0 +1,162 @@
+package com.quantum.voting.config;
+
+import com.quantum.voting.controller.VoterController;
+import com.quantum.voting.entity.Voter;
+import com.quantum.voting.repository.BallotRepository;
+import com.quantum.voting.service.AuditTreeService;
+import com.quantum.voting.service.ElectionCatalog;
+import com.quantum.voting.service.IdentificationService;
+import com.quantum.voting.service.VoterService;
+import com.quantum.voting.service.VvpatService;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.ResponseEntity;
+import org.springframework.jdbc.CannotGetJdbcConnectionException;
+import org.springframework.jdbc.datasource.DataSourceUtils;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLTransientConnectionException;
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertInstanceOf;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+class AdmissionLimitedDataSourceTests {
+
+	private DataSource target;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		target = mock(DataSource.class);
+		doAnswer(inv -> mock(Connection.class)).when(target).getConnection();
+	}
+
+	private static void awaitWaiting(AdmissionLimitedDataSource ds, int count) throws InterruptedException {
+		long deadline = System.currentTimeMillis() + 5_000;
+		while (ds.waiting() < count && System.currentTimeMillis() < deadline) Thread.sleep(5);
+		assertEquals(count, ds.waiting());
+	}
+
+	@Test
+	void closingReleasesThePermitOnce() throws Exception {
+		AdmissionLimitedDataSource ds = new AdmissionLimitedDataSource(target, 1, 0, 0);
+
+		Connection first = ds.getConnection();
+		assertEquals(1, ds.active());
+		first.close();
+		first.close();
+		assertEquals(0, ds.active());
+
+		// a second close must not have handed out a phantom permit
+		try (Connection second = ds.getConnection();
+			 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			assertThrows(SQLTransientConnectionException.class, () -> rethrow(executor.submit(() -> ds.getConnection())));
+		}
+		assertEquals(1, ds.rejected());
+	}
+
+	@Test
+	void nestedCheckoutOnTheSameThreadTakesNoPermit() throws Exception {
+		AdmissionLimitedDataSource ds = new AdmissionLimitedDataSource(target, 1, 0, 0);
+
+		try (Connection outer = ds.getConnection(); Connection inner = ds.getConnection()) {
+			assertEquals(1, ds.active());
+			assertEquals(1, ds.nested());
+		}
+		assertEquals(0, ds.active());
+		verify(target, times(2)).getConnection();
+	}
+
+	@Test
+	void waitTimeoutAndFullQueueAreRejected() throws Exception {
+		AdmissionLimitedDataSource ds = new AdmissionLimitedDataSource(target, 1, 1, 5_000);
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Connection holder = ds.getConnection();
+			Future<Connection> queued = executor.submit(() -> ds.getConnection());
+			awaitWaiting(ds, 1);
+
+			// the one queue slot is taken: turned away at once, without waiting
+			long start = System.nanoTime();
+			Exception full = assertThrows(Exception.class, () -> executor.submit(() -> ds.getConnection()).get());
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < 1_000);
+			assertInstanceOf(SQLTransientConnectionException.class, full.getCause());
+			assertTrue(full.getCause().getMessage().contains("queue full"), full.getCause().getMessage());
+
+			holder.close();
+			queued.get(5, TimeUnit.SECONDS).close();
+		}
+		assertEquals(1, ds.rejected());
+		assertEquals(0, ds.active());
+
+		AdmissionLimitedDataSource shortWait = new AdmissionLimitedDataSource(target, 1, 1, 50);
+		try (Connection holder = shortWait.getConnection();
+			 ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			Exception timedOut = assertThrows(Exception.class, () -> executor.submit(() -> shortWait.getConnection()).get());
+			assertTrue(timedOut.getCause().getMessage().contains("No DB connection admitted within 50 ms"));
+		}
+		assertEquals(1, shortWait.rejected());
+		assertEquals(0, shortWait.waiting());
+	}
+
+	@Test
+	void admissionTimeoutSurfacesAsRetryableServiceUnavailable() throws Exception {
+		AdmissionLimitedDataSource ds = new AdmissionLimitedDataSource(target, 1, 4, 50);
+		Voter voter = new Voter();
+		VoterService voterService = mock(VoterService.class);
+		doReturn(Optional.of(voter)).when(voterService).login("V1");
+		// what the vote transaction does first: check out a connection through Spring
+		doAnswer(inv -> {
+			Connection con = DataSourceUtils.getConnection(ds);
+			DataSourceUtils.releaseConnection(con, ds);
+			return null;
+		}).when(voterService).castVote(any(), any(), any());
+
+		VoterController controller = new VoterController(voterService, mock(BallotRepository.class),
+				mock(IdentificationService.class), mock(ElectionCatalog.class), mock(AuditTreeService.class),
+				mock(VvpatService.class));
+
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			// another request holds the only connection for longer than the admission wait
+			Connection holder = ds.getConnection();
+			assertThrows(CannotGetJdbcConnectionException.class,
+					() -> rethrow(executor.submit(() -> DataSourceUtils.getConnection(ds))));
+
+			ResponseEntity<Object> response = executor.submit(
+					() -> controller.castVote("V1", UUID.randomUUID(), UUID.randomUUID())).get();
+			assertEquals(503, response.getStatusCode().value());
+			assertEquals("1", response.getHeaders().getFirst(HttpHeaders.RETRY_AFTER));
+			assertEquals(2, ds.rejected());
+
+			holder.close();
+			// once the connection is back, the same vote goes through to the service
+			response = executor.submit(() -> controller.castVote("V1", UUID.randomUUID(), UUID.randomUUID())).get();
+			assertEquals(400, response.getStatusCode().value());
+		}
+		assertEquals(0, ds.active());
+	}
+
+	private static void rethrow(Future<?> future) throws Throwable {
+		try {
+			future.get();
+		} catch (ExecutionException e) {
+			throw e.getCause();
+		}
+	}
+}
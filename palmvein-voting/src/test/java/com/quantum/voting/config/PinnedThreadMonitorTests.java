@@ -0,0 +1,50 @@
+package com.quantum.voting.config;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class PinnedThreadMonitorTests {
+
+	private final Object lock = new Object();
+
+	private void sleepHoldingMonitor(long millis) {
+		synchronized (lock) {
+			try {
+				Thread.sleep(millis);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		}
+	}
+
+	@Test
+	void virtualThreadBlockedInsideSynchronizedIsCounted() throws Exception {
+		SimpleMeterRegistry registry = new SimpleMeterRegistry();
+		PinnedThreadMonitor monitor = new PinnedThreadMonitor(registry, 20);
+		assertEquals(0, registry.get("palmvein.virtual.pinned").counter().count());
+
+		monitor.start();
+		try {
+			try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+				// under the threshold: not an event
+				executor.submit(() -> sleepHoldingMonitor(1)).get();
+				executor.submit(() -> sleepHoldingMonitor(100)).get();
+			}
+			// JFR hands events to the stream about once a second
+			long deadline = System.currentTimeMillis() + 10_000;
+			while (registry.get("palmvein.virtual.pinned").counter().count() < 1
+					&& System.currentTimeMillis() < deadline) {
+				Thread.sleep(50);
+			}
+			assertEquals(1, registry.get("palmvein.virtual.pinned").counter().count());
+		} finally {
+			monitor.stop();
+		}
+		assertEquals(1, registry.getMeters().size());
+	}
+}
@@ -0,0 +1,173 @@
+package com.quantum.voting.journal;
+
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.boot.actuate.health.Status;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+
+import java.nio.file.Path;
+import java.sql.ResultSet;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.time.temporal.ChronoUnit;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+
+class BallotJournalTests {
+
+	private static final long WINDOW_SECONDS = 600;
+
+	@TempDir
+	Path dir;
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final LocalDateTime now = LocalDateTime.now().truncatedTo(ChronoUnit.MICROS);
+
+	// the ballots table, and the statements run against it
+	private final List<Row> ballots = new ArrayList<>();
+	private final List<String> queries = new ArrayList<>();
+	private JdbcTemplate jdbcTemplate;
+	private BallotJournal journal;
+
+	private record Row(UUID ballotId, UUID electionId, UUID candidateId, UUID voterId, LocalDateTime castAt) {}
+
+	@BeforeEach
+	void setUp() throws Exception {
+		// a database that already has its journal identity
+		jdbcTemplate = mock(JdbcTemplate.class);
+		doReturn(List.of(UUID.randomUUID())).when(jdbcTemplate).queryForList(anyString(), eq(UUID.class));
+		doAnswer(inv -> {
+			LocalDateTime before = inv.<Timestamp>getArgument(2).toLocalDateTime();
+			return ballots.stream().filter(r -> r.castAt().isBefore(before)).count();
+		}).when(jdbcTemplate).queryForObject(anyString(), eq(Long.class), any(Object[].class));
+		doAnswer(inv -> {
+			String sql = inv.getArgument(0);
+			queries.add(sql);
+			LocalDateTime from = sql.contains("cast_at >= ?") ? inv.<Timestamp>getArgument(2).toLocalDateTime() : null;
+			RowCallbackHandler handler = inv.getArgument(1);
+			for (Row r : ballots) {
+				if (from == null || !r.castAt().isBefore(from)) handler.processRow(resultSet(r));
+			}
+			return null;
+		}).when(jdbcTemplate).query(anyString(), any(RowCallbackHandler.class), any(Object[].class));
+		journal = open();
+	}
+
+	private BallotJournal open() throws Exception {
+		BallotJournal opened = new BallotJournal(jdbcTemplate, registry, true, dir.toString(),
+				64 * JournalFile.RECORD_BYTES, 0, WINDOW_SECONDS);
+		opened.open();
+		return opened;
+	}
+
+	private static ResultSet resultSet(Row r) throws Exception {
+		ResultSet rs = mock(ResultSet.class);
+		doReturn(r.ballotId()).when(rs).getObject(1, UUID.class);
+		doReturn(r.electionId()).when(rs).getObject(2, UUID.class);
+		doReturn(r.candidateId()).when(rs).getObject(3, UUID.class);
+		doReturn(r.voterId()).when(rs).getObject(4, UUID.class);
+		doReturn(Timestamp.valueOf(r.castAt())).when(rs).getTimestamp(5);
+		return rs;
+	}
+
+	private Row ballot(LocalDateTime castAt) {
+		Row r = new Row(UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), castAt);
+		ballots.add(r);
+		return r;
+	}
+
+	// a vote: committed to the table, then journaled
+	private long vote(LocalDateTime castAt) {
+		Row r = ballot(castAt);
+		return journal.append(r.ballotId(), r.electionId(), r.candidateId(), r.voterId(), r.castAt(), new byte[32]);
+	}
+
+	private List<UUID> journaled() throws Exception {
+		List<UUID> ids = new ArrayList<>();
+		journal.replay(e -> ids.add(e.ballotId()));
+		return ids;
+	}
+
+	private double failures(String stage) {
+		return registry.get("palmvein.journal.failures").tag("stage", stage).counter().count();
+	}
+
+	@Test
+	void healthyJournalIsUp() {
+		assertTrue(journal.awaitDurable(vote(now)));
+		assertEquals(Status.UP, journal.health().getStatus());
+		assertEquals(0, registry.get("palmvein.journal.degraded").gauge().value());
+	}
+
+	@Test
+	void failedAppendDegradesTheJournal() throws Exception {
+		assertTrue(journal.awaitDurable(vote(now)));
+		// the file goes away under the running service
+		journal.close();
+
+		assertEquals(0, vote(now));
+		assertEquals(0, vote(now));
+		assertFalse(journal.awaitDurable(0));
+
+		assertEquals(BallotJournal.DEGRADED, journal.health().getStatus());
+		assertTrue(journal.health().getDetails().get("failure").toString().contains("closed"));
+		assertEquals(2, failures("append"));
+		assertEquals(1, registry.get("palmvein.journal.degraded").gauge().value());
+	}
+
+	@Test
+	void restartReadsOnlyTheTail() throws Exception {
+		vote(now.minusDays(1));
+		vote(now.minusHours(1));
+		journal.awaitDurable(vote(now.minusSeconds(5)));
+		// committed, then the process died before it was journaled
+		Row lost = ballot(now);
+		journal.close();
+
+		queries.clear();
+		journal = open();
+		assertEquals(List.of(ballots.get(0).ballotId(), ballots.get(1).ballotId(), ballots.get(2).ballotId(),
+				lost.ballotId()), journaled());
+		assertFalse(queries.isEmpty());
+		queries.forEach(sql -> assertTrue(sql.contains("WHERE cast_at >= ?"), sql));
+	}
+
+	@Test
+	void countMismatchBeforeTheTailComparesEverything() throws Exception {
+		journal.awaitDurable(vote(now));
+		// a ballot cast long before the journal's latest, never journaled
+		Row old = ballot(now.minusDays(2));
+		journal.close();
+
+		queries.clear();
+		journal = open();
+		assertTrue(journaled().contains(old.ballotId()));
+		assertTrue(queries.stream().anyMatch(sql -> !sql.contains("WHERE")));
+	}
+
+	@Test
+	void journaledBallotMissingFromTheTableStopsStartup() throws Exception {
+		vote(now.minusHours(2));
+		journal.awaitDurable(vote(now));
+		journal.close();
+		// the database was restored from a backup taken before the last vote
+		ballots.remove(1);
+
+		assertThrows(IllegalStateException.class, this::open);
+	}
+}
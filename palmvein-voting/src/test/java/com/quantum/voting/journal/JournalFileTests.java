@@ -0,0 +1,173 @@
+package com.quantum.voting.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Stream;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class JournalFileTests {
+
+	private static final int RECORDS_PER_SEGMENT = 4;
+	private static final long SEGMENT_BYTES = RECORDS_PER_SEGMENT * JournalFile.RECORD_BYTES;
+
+	@TempDir
+	Path dir;
+
+	private JournalFile open() throws IOException {
+		return new JournalFile(dir, SEGMENT_BYTES, 0);
+	}
+
+	private static List<UUID> append(JournalFile file, int n) throws IOException {
+		List<UUID> ballots = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			UUID ballotId = UUID.randomUUID();
+			byte[] audit = new byte[32];
+			audit[0] = (byte) i;
+			file.awaitDurable(file.append(ballotId, UUID.randomUUID(), UUID.randomUUID(), UUID.randomUUID(), i, audit));
+			ballots.add(ballotId);
+		}
+		return ballots;
+	}
+
+	private static List<UUID> replay(JournalFile file) throws IOException {
+		List<UUID> ballots = new ArrayList<>();
+		file.replay(e -> {
+			assertEquals(ballots.size() + 1, e.seq());
+			ballots.add(e.ballotId());
+		});
+		return ballots;
+	}
+
+	private Path segment(int no) {
+		return dir.resolve(String.format("ballots-%06d.journal", no));
+	}
+
+	private void overwrite(int segment, int record, byte[] bytes) throws IOException {
+		try (FileChannel ch = FileChannel.open(segment(segment), StandardOpenOption.WRITE)) {
+			ch.write(ByteBuffer.wrap(bytes), (long) record * JournalFile.RECORD_BYTES);
+		}
+	}
+
+	private void flipByte(int segment, int record, int offset) throws IOException {
+		long pos = (long) record * JournalFile.RECORD_BYTES + offset;
+		try (FileChannel ch = FileChannel.open(segment(segment), StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+			ByteBuffer b = ByteBuffer.allocate(1);
+			ch.read(b, pos);
+			b.put(0, (byte) (b.get(0) ^ 1)).flip();
+			ch.write(b, pos);
+		}
+	}
+
+	@Test
+	void rollsOverAndReplaysInOrderAfterReopen() throws Exception {
+		List<UUID> written;
+		byte[] head;
+		try (JournalFile file = open()) {
+			written = append(file, 10);
+			head = file.headHash();
+		}
+		try (Stream<Path> files = Files.list(dir)) {
+			assertEquals(3, files.count());
+		}
+
+		try (JournalFile file = open()) {
+			assertEquals(10, file.size());
+			assertArrayEquals(head, file.headHash());
+			assertEquals(written, replay(file));
+
+			written.addAll(append(file, 3));
+			assertEquals(written, replay(file));
+		}
+		try (JournalFile file = open()) {
+			assertEquals(written, replay(file));
+		}
+	}
+
+	@Test
+	void tornTailIsCutAtTheFirstBadRecord() throws Exception {
+		List<UUID> written;
+		try (JournalFile file = open()) {
+			written = append(file, 7);
+		}
+		// last segment holds seqs 5..7: lose seq 6 as if its page never reached disk, keep 7
+		overwrite(2, 1, new byte[JournalFile.RECORD_BYTES]);
+
+		try (JournalFile file = open()) {
+			assertEquals(5, file.size());
+			assertEquals(written.subList(0, 5), replay(file));
+			written = new ArrayList<>(written.subList(0, 5));
+			written.addAll(append(file, 4));
+		}
+		try (JournalFile file = open()) {
+			assertEquals(9, file.size());
+			assertEquals(written, replay(file));
+		}
+	}
+
+	@Test
+	void halfWrittenLastRecordIsDropped() throws Exception {
+		List<UUID> written;
+		try (JournalFile file = open()) {
+			written = append(file, 3);
+		}
+		flipByte(1, 2, JournalFile.RECORD_BYTES - 1);
+
+		try (JournalFile file = open()) {
+			assertEquals(2, file.size());
+			assertEquals(written.subList(0, 2), replay(file));
+		}
+	}
+
+	@Test
+	void tamperingBeforeTheLastSegmentFailsToOpen() throws Exception {
+		try (JournalFile file = open()) {
+			append(file, 9);
+		}
+		flipByte(1, 2, 20);
+
+		IOException e = assertThrows(IOException.class, this::open);
+		assertTrue(e.getMessage().contains("ballots-000001.journal"), e.getMessage());
+	}
+
+	@Test
+	void gapBeforeTheLastSegmentFailsToOpen() throws Exception {
+		try (JournalFile file = open()) {
+			append(file, 9);
+		}
+		overwrite(2, 0, new byte[JournalFile.RECORD_BYTES]);
+
+		assertThrows(IOException.class, this::open);
+	}
+
+	@Test
+	void identityHeaderRoundTrips() throws Exception {
+		assertNull(JournalFile.readIdentity(dir));
+		assertFalse(JournalFile.hasSegments(dir));
+
+		UUID identity = UUID.randomUUID();
+		JournalFile.writeIdentity(dir, identity);
+		assertEquals(identity, JournalFile.readIdentity(dir));
+
+		try (JournalFile file = open()) {
+			append(file, 1);
+		}
+		assertTrue(JournalFile.hasSegments(dir));
+		assertEquals(identity, JournalFile.readIdentity(dir));
+	}
+}
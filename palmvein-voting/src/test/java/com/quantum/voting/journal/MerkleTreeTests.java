@@ -0,0 +1,120 @@
+package com.quantum.voting.journal;
+
+import org.junit.jupiter.api.Test;
+
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class MerkleTreeTests {
+
+	private static List<byte[]> leaves(int n, long seed) {
+		Random random = new Random(seed);
+		List<byte[]> leaves = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			byte[] audit = new byte[32];
+			random.nextBytes(audit);
+			leaves.add(MerkleTree.leaf(new UUID(random.nextLong(), random.nextLong()), audit));
+		}
+		return leaves;
+	}
+
+	// whole-tree recomputation with the same rule: pair up, carry an odd last node unchanged
+	private static byte[] naiveRoot(List<byte[]> level) throws Exception {
+		if (level.isEmpty()) return MessageDigest.getInstance("SHA-256").digest();
+		while (level.size() > 1) {
+			List<byte[]> up = new ArrayList<>();
+			for (int i = 0; i < level.size(); i += 2) {
+				if (i + 1 == level.size()) {
+					up.add(level.get(i));
+					continue;
+				}
+				MessageDigest d = MessageDigest.getInstance("SHA-256");
+				d.update((byte) 0x01);
+				d.update(level.get(i));
+				d.update(level.get(i + 1));
+				up.add(d.digest());
+			}
+			level = up;
+		}
+		return level.get(0);
+	}
+
+	@Test
+	void rootMatchesNaiveRebuildAtEverySize() throws Exception {
+		List<byte[]> leaves = leaves(300, 1);
+		MerkleTree tree = new MerkleTree();
+		assertArrayEquals(naiveRoot(List.of()), tree.root());
+		for (int n = 1; n <= leaves.size(); n++) {
+			assertEquals(n - 1, tree.append(leaves.get(n - 1)));
+			assertArrayEquals(naiveRoot(leaves.subList(0, n)), tree.root(), "size " + n);
+		}
+	}
+
+	@Test
+	void everyProofVerifiesAgainstTheRoot() {
+		for (int n : new int[]{1, 2, 3, 5, 8, 13, 64, 100, 257}) {
+			List<byte[]> leaves = leaves(n, n);
+			MerkleTree tree = new MerkleTree();
+			leaves.forEach(tree::append);
+			byte[] root = tree.root();
+			for (int i = 0; i < n; i++) {
+				MerkleTree.Proof proof = tree.proof(i);
+				assertEquals(i, proof.leafIndex());
+				assertEquals(n, proof.size());
+				assertArrayEquals(leaves.get(i), proof.leaf());
+				assertArrayEquals(root, proof.root());
+				assertTrue(MerkleTree.verify(proof.leaf(), proof.path(), root), "leaf " + i + " of " + n);
+			}
+		}
+	}
+
+	@Test
+	void flippedLeafOrPathFailsVerification() {
+		List<byte[]> leaves = leaves(37, 7);
+		MerkleTree tree = new MerkleTree();
+		leaves.forEach(tree::append);
+		byte[] root = tree.root();
+
+		for (int i = 0; i < leaves.size(); i++) {
+			MerkleTree.Proof proof = tree.proof(i);
+			byte[] flipped = proof.leaf().clone();
+			flipped[i % flipped.length] ^= 1;
+			assertFalse(MerkleTree.verify(flipped, proof.path(), root), "flipped leaf " + i);
+
+			if (!proof.path().isEmpty()) {
+				List<MerkleTree.Step> path = new ArrayList<>(proof.path());
+				MerkleTree.Step s = path.get(0);
+				path.set(0, new MerkleTree.Step(s.hash(), !s.left()));
+				assertFalse(MerkleTree.verify(proof.leaf(), path, root), "swapped side " + i);
+			}
+		}
+	}
+
+	@Test
+	void oldProofDoesNotVerifyAgainstALaterRoot() {
+		List<byte[]> leaves = leaves(10, 3);
+		MerkleTree tree = new MerkleTree();
+		leaves.subList(0, 9).forEach(tree::append);
+		MerkleTree.Proof before = tree.proof(8);
+		tree.append(leaves.get(9));
+		assertFalse(MerkleTree.verify(before.leaf(), before.path(), tree.root()));
+		assertTrue(MerkleTree.verify(before.leaf(), tree.proof(8).path(), tree.root()));
+	}
+
+	@Test
+	void proofOutOfRangeIsRejected() {
+		MerkleTree tree = new MerkleTree();
+		tree.append(leaves(1, 9).get(0));
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.proof(1));
+		assertThrows(IndexOutOfBoundsException.class, () -> tree.proof(-1));
+	}
+}
@@ -0,0 +1,164 @@
+package com.quantum.voting.journal;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VvpatArchiveTests {
+
+	private static final long SEGMENT_BYTES = 1024;
+
+	@TempDir
+	Path dir;
+
+	private final Random random = new Random(11);
+
+	private VvpatArchive open() throws IOException {
+		return new VvpatArchive(dir, SEGMENT_BYTES);
+	}
+
+	private byte[] pdf(int length) {
+		byte[] pdf = new byte[length];
+		random.nextBytes(pdf);
+		return pdf;
+	}
+
+	private Map<UUID, byte[]> put(VvpatArchive archive, int n, int length) throws IOException {
+		Map<UUID, byte[]> stored = new LinkedHashMap<>();
+		for (int i = 0; i < n; i++) {
+			UUID ballotId = UUID.randomUUID();
+			byte[] pdf = pdf(length);
+			archive.put(ballotId, pdf);
+			stored.put(ballotId, pdf);
+		}
+		return stored;
+	}
+
+	private static void assertHolds(VvpatArchive archive, Map<UUID, byte[]> stored) throws IOException {
+		assertEquals(stored.size(), archive.size());
+		for (Map.Entry<UUID, byte[]> e : stored.entrySet()) {
+			VvpatArchive.Location location = archive.get(e.getKey());
+			assertNotNull(location, "missing " + e.getKey());
+			assertArrayEquals(e.getValue(), archive.read(location));
+		}
+	}
+
+	private Path file(int segment, String suffix) {
+		return dir.resolve(String.format("vvpat-%06d%s", segment, suffix));
+	}
+
+	private static void truncate(Path file, long size) throws IOException {
+		try (FileChannel ch = FileChannel.open(file, StandardOpenOption.WRITE)) {
+			ch.truncate(size);
+		}
+	}
+
+	@Test
+	void rollsOverIntoNewSegmentsAndReopens() throws Exception {
+		Map<UUID, byte[]> stored;
+		try (VvpatArchive archive = open()) {
+			stored = put(archive, 10, 300);
+			assertHolds(archive, stored);
+		}
+		// three 328-byte records fit in a 1 KB segment
+		assertTrue(Files.exists(file(4, ".seg")));
+		assertTrue(Files.size(file(1, ".seg")) <= SEGMENT_BYTES);
+
+		try (VvpatArchive archive = open()) {
+			assertHolds(archive, stored);
+			stored.putAll(put(archive, 2, 300));
+			assertHolds(archive, stored);
+		}
+	}
+
+	@Test
+	void secondPutKeepsTheFirstCopy() throws Exception {
+		try (VvpatArchive archive = open()) {
+			UUID ballotId = UUID.randomUUID();
+			byte[] first = pdf(100);
+			VvpatArchive.Location location = archive.put(ballotId, first);
+			assertEquals(location, archive.put(ballotId, pdf(100)));
+			assertArrayEquals(first, archive.read(location));
+			assertEquals(1, archive.size());
+		}
+	}
+
+	@Test
+	void tornTailIsCut() throws Exception {
+		Map<UUID, byte[]> stored;
+		try (VvpatArchive archive = open()) {
+			stored = put(archive, 2, 200);
+		}
+		long goodSize = Files.size(file(1, ".seg"));
+		// half a record header written when the process died
+		try (FileChannel ch = FileChannel.open(file(1, ".seg"), StandardOpenOption.WRITE)) {
+			ch.write(ByteBuffer.allocate(12).putInt(VvpatArchive.MAGIC).putLong(42).flip(), goodSize);
+		}
+
+		try (VvpatArchive archive = open()) {
+			assertEquals(goodSize, Files.size(file(1, ".seg")));
+			assertHolds(archive, stored);
+			stored.putAll(put(archive, 1, 200));
+		}
+		try (VvpatArchive archive = open()) {
+			assertHolds(archive, stored);
+		}
+	}
+
+	@Test
+	void recordsTheIndexMissedAreReindexed() throws Exception {
+		Map<UUID, byte[]> stored;
+		try (VvpatArchive archive = open()) {
+			stored = put(archive, 3, 200);
+		}
+		// the index keeps one entry and half of the next
+		truncate(file(1, ".idx"), 32 + 10);
+
+		try (VvpatArchive archive = open()) {
+			assertHolds(archive, stored);
+		}
+		assertEquals(3 * 32, Files.size(file(1, ".idx")));
+	}
+
+	@Test
+	void indexEntriesWhoseBytesWereLostAreDropped() throws Exception {
+		Map<UUID, byte[]> stored;
+		try (VvpatArchive archive = open()) {
+			stored = put(archive, 3, 200);
+		}
+		// the data file lost the end of the third record, the index did not
+		truncate(file(1, ".seg"), Files.size(file(1, ".seg")) - 50);
+
+		UUID lost = stored.keySet().stream().skip(2).findFirst().orElseThrow();
+		try (VvpatArchive archive = open()) {
+			assertNull(archive.get(lost));
+			stored.remove(lost);
+			assertHolds(archive, stored);
+		}
+		assertEquals(2 * 32, Files.size(file(1, ".idx")));
+	}
+
+	@Test
+	void closedArchiveRefusesWrites() throws Exception {
+		VvpatArchive archive = open();
+		archive.close();
+		assertThrows(IOException.class, () -> archive.put(UUID.randomUUID(), pdf(10)));
+	}
+}
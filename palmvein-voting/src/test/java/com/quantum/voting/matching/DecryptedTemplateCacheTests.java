@@ -0,0 +1,136 @@
+package com.quantum.voting.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class DecryptedTemplateCacheTests {
+
+	// every {key, left, right} a loader handed out, to check it was zeroed
+	private final List<byte[][]> loaded = new ArrayList<>();
+
+	private DecryptedTemplateCache.Loader loader(int fill, int length) {
+		return () -> {
+			byte[][] plain = new byte[3][length];
+			for (byte[] part : plain) Arrays.fill(part, (byte) fill);
+			loaded.add(plain);
+			return plain;
+		};
+	}
+
+	private static int left(DecryptedTemplateCache cache, UUID voterId, DecryptedTemplateCache.Loader loader) throws Exception {
+		return cache.withTemplates(voterId, loader, (key, left, right) -> (int) left[0]);
+	}
+
+	private static boolean wiped(byte[][] plain) {
+		for (byte[] part : plain) {
+			for (byte b : part) if (b != 0) return false;
+		}
+		return true;
+	}
+
+	@Test
+	void leastRecentlyUsedVoterIsEvictedAndWiped() throws Exception {
+		DecryptedTemplateCache cache = new DecryptedTemplateCache(2, 1 << 20, 60);
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID(), c = UUID.randomUUID();
+
+		left(cache, a, loader(1, 8));
+		left(cache, b, loader(2, 8));
+		// a is now the most recently used, so b goes first
+		assertEquals(1, left(cache, a, loader(9, 8)));
+		left(cache, c, loader(3, 8));
+
+		assertEquals(2, cache.size());
+		assertTrue(cache.contains(a));
+		assertFalse(cache.contains(b));
+		assertTrue(cache.contains(c));
+		assertTrue(wiped(loaded.get(1)));
+		assertFalse(wiped(loaded.get(0)));
+		assertEquals(3, loaded.size());
+	}
+
+	@Test
+	void byteBoundEvictsTheEldestButKeepsTheNewest() throws Exception {
+		// left + right count towards the bound, the key does not
+		DecryptedTemplateCache cache = new DecryptedTemplateCache(100, 40, 60);
+		UUID a = UUID.randomUUID(), b = UUID.randomUUID(), c = UUID.randomUUID();
+
+		left(cache, a, loader(1, 16));
+		left(cache, b, loader(2, 16));
+		assertFalse(cache.contains(a));
+		assertTrue(wiped(loaded.get(0)));
+
+		// bigger than the whole bound on its own: still cached until the next one
+		left(cache, c, loader(3, 64));
+		assertTrue(cache.contains(c));
+		assertFalse(cache.contains(b));
+	}
+
+	@Test
+	void expiredTemplatesAreWipedBySweep() throws Exception {
+		DecryptedTemplateCache cache = new DecryptedTemplateCache(16, 1 << 20, 0);
+		UUID voter = UUID.randomUUID();
+
+		assertEquals(1, left(cache, voter, loader(1, 8)));
+		assertFalse(wiped(loaded.get(0)));
+
+		cache.sweepExpired();
+		assertEquals(0, cache.size());
+		assertTrue(wiped(loaded.get(0)));
+		assertNull(cache.copyKey(voter));
+	}
+
+	@Test
+	void invalidateDuringLoadDiscardsTheStaleRead() throws Exception {
+		DecryptedTemplateCache cache = new DecryptedTemplateCache(16, 1 << 20, 60);
+		UUID voter = UUID.randomUUID();
+		UUID other = UUID.randomUUID();
+		AtomicInteger calls = new AtomicInteger();
+
+		// the re-enrollment commits while the first read of the old row is in flight
+		DecryptedTemplateCache.Loader racing = () -> {
+			byte[][] plain = loader(calls.incrementAndGet(), 8).load();
+			if (calls.get() == 1) cache.invalidate(voter);
+			return plain;
+		};
+
+		assertEquals(2, left(cache, voter, racing));
+		assertEquals(2, calls.get());
+		assertTrue(wiped(loaded.get(0)));
+		assertEquals(2, left(cache, voter, loader(9, 8)));
+
+		// invalidating one voter leaves another voter's load alone
+		DecryptedTemplateCache.Loader unrelated = () -> {
+			byte[][] plain = loader(5, 8).load();
+			cache.invalidate(voter);
+			return plain;
+		};
+		assertEquals(5, left(cache, other, unrelated));
+		assertTrue(cache.contains(other));
+		assertFalse(cache.contains(voter));
+	}
+
+	@Test
+	void failedLoadLeavesNothingBehind() throws Exception {
+		DecryptedTemplateCache cache = new DecryptedTemplateCache(16, 1 << 20, 60);
+		UUID voter = UUID.randomUUID();
+
+		DecryptedTemplateCache.Loader failing = () -> {
+			throw new IllegalStateException("row gone");
+		};
+		assertThrows(IllegalStateException.class, () -> left(cache, voter, failing));
+		assertEquals(0, cache.size());
+		assertEquals(4, left(cache, voter, loader(4, 8)));
+		assertTrue(cache.contains(voter));
+	}
+}
@@ -0,0 +1,42 @@
+package com.quantum.voting.matching;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+class TemplateMatcherTests {
+
+	private final TemplateMatcher scalar = new ScalarTemplateMatcher();
+	private final TemplateMatcher vector = new VectorTemplateMatcher();
+
+	@Test
+	void vectorMatchesScalarOnRandomTemplates() {
+		Random random = new Random(42);
+		for (int len : new int[]{1, 7, 31, 32, 33, 255, 4096, 100_003, 1 << 20}) {
+			byte[] a = new byte[len];
+			byte[] b = new byte[len + 5];
+			random.nextBytes(a);
+			random.nextBytes(b);
+			assertEquals(scalar.similarity(a, b), vector.similarity(a, b), "length " + len);
+		}
+	}
+
+	@Test
+	void vectorMatchesScalarOnSaturatedTemplates() {
+		byte[] a = new byte[1 << 20];
+		byte[] b = new byte[1 << 20];
+		Arrays.fill(a, (byte) 0xFF);
+		Arrays.fill(b, (byte) 0xFE);
+		assertEquals(scalar.similarity(a, b), vector.similarity(a, b));
+	}
+
+	@Test
+	void emptyOrZeroTemplatesScoreZero() {
+		assertEquals(0.0, vector.similarity(new byte[0], new byte[]{1}));
+		assertEquals(0.0, vector.similarity(null, new byte[]{1}));
+		assertEquals(0.0, vector.similarity(new byte[64], new byte[64]));
+	}
+}
@@ -0,0 +1,135 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.entity.Candidate;
+import com.quantum.voting.entity.Election;
+import com.quantum.voting.repository.ElectionRepository;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class ElectionCatalogTests {
+
+	// what findWithCandidatesByStatus("ACTIVE") returns right now
+	private final List<Election> active = new ArrayList<>();
+	private int queries;
+	private ElectionCatalog catalog;
+
+	@BeforeEach
+	void setUp() {
+		ElectionRepository repository = mock(ElectionRepository.class);
+		doAnswer(inv -> {
+			queries++;
+			return List.copyOf(active);
+		}).when(repository).findWithCandidatesByStatus(anyString());
+		catalog = new ElectionCatalog(repository);
+	}
+
+	@AfterEach
+	void tearDown() {
+		if (TransactionSynchronizationManager.isSynchronizationActive()) {
+			TransactionSynchronizationManager.clearSynchronization();
+		}
+	}
+
+	private static Election election(String title, LocalDateTime start, String... candidates) {
+		Election e = new Election();
+		e.setElectionId(UUID.randomUUID());
+		e.setTitle(title);
+		e.setStartTime(start);
+		e.setStatus("ACTIVE");
+		List<Candidate> list = new ArrayList<>();
+		for (String name : candidates) {
+			Candidate c = new Candidate();
+			c.setCandidateId(UUID.randomUUID());
+			c.setLeaderName(name);
+			c.setElection(e);
+			list.add(c);
+		}
+		e.setCandidates(list);
+		return e;
+	}
+
+	@Test
+	void rebuildPublishesANewVersionedSnapshot() {
+		Election later = election("Later", LocalDateTime.of(2026, 11, 2, 8, 0), "A");
+		Election sooner = election("Sooner", LocalDateTime.of(2026, 11, 1, 8, 0), "B", "C");
+		Election unscheduled = election("Unscheduled", null);
+		active.addAll(List.of(later, unscheduled, sooner));
+
+		catalog.rebuild();
+		ElectionCatalog.Snapshot first = catalog.snapshot();
+		// by start time, elections without one last
+		assertEquals(List.of("Sooner", "Later", "Unscheduled"),
+				first.elections().stream().map(ElectionCatalog.ElectionEntry::title).toList());
+		ElectionCatalog.ElectionEntry entry = catalog.active(sooner.getElectionId());
+		assertTrue(entry.hasCandidate(sooner.getCandidates().get(1).getCandidateId()));
+		assertEquals(false, entry.hasCandidate(later.getCandidates().get(0).getCandidateId()));
+
+		active.remove(later);
+		catalog.rebuild();
+		assertTrue(catalog.snapshot().version() > first.version());
+		assertNull(catalog.active(later.getElectionId()));
+		assertNull(catalog.active(null));
+		// the old snapshot is untouched for readers still holding it
+		assertEquals(3, first.elections().size());
+	}
+
+	@Test
+	void refreshOutsideATransactionRebuildsAtOnce() {
+		Election e = election("Now", null, "A");
+		active.add(e);
+
+		catalog.refresh();
+		assertNotNull(catalog.active(e.getElectionId()));
+		assertEquals(1, queries);
+	}
+
+	@Test
+	void refreshInsideATransactionWaitsForTheCommit() {
+		catalog.rebuild();
+		long before = catalog.snapshot().version();
+		Election e = election("Created", null, "A");
+
+		TransactionSynchronizationManager.initSynchronization();
+		catalog.refresh();
+		// the row is not committed yet, so the catalog must not read it
+		active.add(e);
+		assertEquals(1, queries);
+		assertNull(catalog.active(e.getElectionId()));
+
+		for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) s.afterCommit();
+		assertEquals(2, queries);
+		assertNotNull(catalog.active(e.getElectionId()));
+		assertTrue(catalog.snapshot().version() > before);
+	}
+
+	@Test
+	void rolledBackTransactionLeavesTheCatalogAlone() {
+		catalog.rebuild();
+		long before = catalog.snapshot().version();
+
+		TransactionSynchronizationManager.initSynchronization();
+		catalog.refresh();
+		for (TransactionSynchronization s : TransactionSynchronizationManager.getSynchronizations()) {
+			s.afterCompletion(TransactionSynchronization.STATUS_ROLLED_BACK);
+		}
+
+		assertEquals(1, queries);
+		assertEquals(before, catalog.snapshot().version());
+	}
+}
@@ -0,0 +1,83 @@
+package com.quantum.voting.service;
+
+import io.micrometer.core.instrument.Meter;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.distribution.CountAtBucket;
+import io.micrometer.core.instrument.distribution.HistogramSnapshot;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HotPathMetricsTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+	private static Set<String> tagPairs(Iterable<? extends Meter> meters, String first, String second) {
+		Set<String> pairs = new HashSet<>();
+		for (Meter m : meters) pairs.add(m.getId().getTag(first) + "/" + m.getId().getTag(second));
+		return pairs;
+	}
+
+	@Test
+	void everyStageAndEventIsRegisteredUpFront() {
+		new HotPathMetrics(registry, true, true);
+
+		// one timer per stage, each under its own op/stage tags
+		Set<String> stages = tagPairs(registry.get("palmvein.stage").timers(), "op", "stage");
+		assertEquals(HotPathMetrics.Stage.values().length, stages.size());
+		assertTrue(stages.containsAll(Set.of("scan/aes-gcm", "scan/total", "vote/db-commit", "vote/journal",
+				"vvpat/pdf-render", "register/db-save")), stages.toString());
+
+		Set<String> events = tagPairs(registry.get("palmvein.events").counters(), "op", "event");
+		assertEquals(HotPathMetrics.Event.values().length, events.size());
+		assertTrue(events.containsAll(Set.of("scan/template-cache-miss", "vote/cast", "vote/after-commit-failed",
+				"vvpat/failed")), events.toString());
+
+		assertEquals(Set.of("left", "right", "best"), new HashSet<>(registry.get("palmvein.match.score")
+				.summaries().stream().map(s -> s.getId().getTag("hand")).toList()));
+	}
+
+	@Test
+	void stagesEventsAndScoresRecordUnderTheirTags() throws Exception {
+		HotPathMetrics metrics = new HotPathMetrics(registry, true, false);
+
+		long started = metrics.start();
+		Thread.sleep(5);
+		metrics.stop(HotPathMetrics.Stage.VOTE_COMMIT, started);
+		metrics.count(HotPathMetrics.Event.VOTE_CAST);
+		metrics.count(HotPathMetrics.Event.VOTE_CAST);
+		metrics.scores(0.82, 0.91);
+
+		Timer commit = registry.get("palmvein.stage").tags("op", "vote", "stage", "db-commit").timer();
+		assertEquals(1, commit.count());
+		assertTrue(commit.totalTime(TimeUnit.MILLISECONDS) >= 5, String.valueOf(commit.totalTime(TimeUnit.MILLISECONDS)));
+		assertEquals(0, registry.get("palmvein.stage").tags("op", "vote", "stage", "total").timer().count());
+		assertEquals(2, registry.get("palmvein.events").tags("op", "vote", "event", "cast").counter().count());
+		assertEquals(0, registry.get("palmvein.events").tags("op", "vote", "event", "failed").counter().count());
+
+		assertEquals(910, registry.get("palmvein.match.score").tag("hand", "best").summary().max(), 1e-9);
+		assertEquals(820, registry.get("palmvein.match.score").tag("hand", "left").summary().max(), 1e-9);
+		// 0.82 lands between the buckets either side of the 0.80 threshold, not in the last one
+		HistogramSnapshot left = registry.get("palmvein.match.score").tag("hand", "left").summary().takeSnapshot();
+		for (CountAtBucket bucket : left.histogramCounts()) {
+			assertEquals(bucket.bucket() >= 850 ? 1 : 0, bucket.count(), "le " + bucket.bucket());
+		}
+	}
+
+	@Test
+	void disabledRegistersNothingAndNeverReadsTheClock() {
+		HotPathMetrics metrics = new HotPathMetrics(registry, false, true);
+
+		assertEquals(0, metrics.start());
+		metrics.stop(HotPathMetrics.Stage.SCAN_TOTAL, 0);
+		metrics.count(HotPathMetrics.Event.VOTE_FAILED);
+		metrics.scores(0.5, 0.6);
+		assertTrue(registry.getMeters().isEmpty());
+	}
+}
@@ -0,0 +1,178 @@
+package com.quantum.voting.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.web.servlet.mvc.method.annotation.SseEmitter;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verifyNoInteractions;
+
+class ResultsStreamServiceTests {
+
+	private final UUID electionId = UUID.randomUUID();
+	private final UUID candidateId = UUID.randomUUID();
+
+	// records what it is sent; a gated one blocks in send like a dashboard on a slow link
+	private static final class RecordingEmitter extends SseEmitter {
+		final List<String> events = new CopyOnWriteArrayList<>();
+		final CountDownLatch gate;
+		volatile boolean completed;
+
+		RecordingEmitter(CountDownLatch gate) {
+			this.gate = gate;
+		}
+
+		@Override
+		public void send(SseEventBuilder builder) throws IOException {
+			try {
+				gate.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				throw new IOException(e);
+			}
+			events.add(builder.build().stream().map(d -> d.getData().toString()).collect(Collectors.joining()));
+		}
+
+		@Override
+		public void complete() {
+			completed = true;
+		}
+
+		boolean await(int count) throws InterruptedException {
+			long deadline = System.currentTimeMillis() + 5_000;
+			while (events.size() < count && System.currentTimeMillis() < deadline) Thread.sleep(5);
+			return events.size() >= count;
+		}
+	}
+
+	private final CountDownLatch open = new CountDownLatch(0);
+	private final CountDownLatch slowLink = new CountDownLatch(1);
+	private final Queue<RecordingEmitter> nextEmitters = new ArrayDeque<>();
+
+	private ElectionCatalog electionCatalog;
+	private ResultsStreamService service;
+
+	@BeforeEach
+	void setUp() {
+		VoteTallyService tally = mock(VoteTallyService.class);
+		doReturn(7L).when(tally).count(candidateId);
+		electionCatalog = mock(ElectionCatalog.class);
+		doReturn(new ElectionCatalog.ElectionEntry(electionId, "General", null, null, "ACTIVE",
+				List.of(new ElectionCatalog.CandidateEntry(candidateId, "A", "P", "C"))))
+				.when(electionCatalog).active(electionId);
+
+		service = new ResultsStreamService(tally, electionCatalog, new ObjectMapper()) {
+			@Override
+			SseEmitter newEmitter() {
+				return nextEmitters.remove();
+			}
+		};
+		ReflectionTestUtils.setField(service, "senderCount", 2);
+		ReflectionTestUtils.setField(service, "maxPending", 2);
+		service.start();
+	}
+
+	@AfterEach
+	void tearDown() {
+		slowLink.countDown();
+		service.stop();
+	}
+
+	private RecordingEmitter subscribe(CountDownLatch gate) {
+		RecordingEmitter emitter = new RecordingEmitter(gate);
+		nextEmitters.add(emitter);
+		assertEquals(emitter, service.subscribe(electionId));
+		return emitter;
+	}
+
+	private void votesThenWindow(int votes) {
+		for (int i = 0; i < votes; i++) service.onVoteCounted(new VoteCountedEvent(electionId, candidateId));
+		service.publish();
+	}
+
+	@SuppressWarnings("unchecked")
+	private Map<UUID, ?> subscriberLists() {
+		return (Map<UUID, ?>) ReflectionTestUtils.getField(service, "subscribers");
+	}
+
+	@Test
+	void electionOutsideTheCatalogIsNotStreamed() {
+		VoteTallyService tally = mock(VoteTallyService.class);
+		ResultsStreamService standalone = new ResultsStreamService(tally, electionCatalog, new ObjectMapper());
+
+		assertNull(standalone.subscribe(UUID.randomUUID()));
+		assertEquals(0, standalone.subscriberCount(electionId));
+		verifyNoInteractions(tally);
+	}
+
+	@Test
+	void everySubscriberGetsTheSnapshotThenEachWindow() throws Exception {
+		RecordingEmitter first = subscribe(open);
+		RecordingEmitter second = subscribe(open);
+		assertEquals(2, service.subscriberCount(electionId));
+
+		votesThenWindow(3);
+		// a window without votes sends nothing
+		service.publish();
+
+		for (RecordingEmitter e : List.of(first, second)) {
+			assertTrue(e.await(2));
+			assertEquals(2, e.events.size());
+			assertTrue(e.events.get(0).contains("event:snapshot"), e.events.get(0));
+			assertTrue(e.events.get(0).contains("\"" + candidateId + "\":7"));
+			assertTrue(e.events.get(1).contains("event:tally"), e.events.get(1));
+			assertTrue(e.events.get(1).contains("\"deltas\":{\"" + candidateId + "\":3}"), e.events.get(1));
+		}
+	}
+
+	@Test
+	void slowSubscriberIsDroppedWithoutHoldingUpTheRest() throws Exception {
+		RecordingEmitter slow = subscribe(slowLink);
+		RecordingEmitter fast = subscribe(open);
+
+		// the slow sender is stuck on the snapshot; two windows fill its queue, the third overflows it
+		for (int window = 0; window < 3; window++) {
+			votesThenWindow(1);
+			assertTrue(fast.await(window + 2));
+		}
+
+		assertTrue(slow.completed);
+		assertFalse(fast.completed);
+		assertEquals(1, service.subscriberCount(electionId));
+		votesThenWindow(1);
+		assertTrue(fast.await(5));
+	}
+
+	@Test
+	void lastSubscriberLeavingDropsTheElection() throws Exception {
+		RecordingEmitter slow = subscribe(slowLink);
+		for (int window = 0; window < 3; window++) votesThenWindow(1);
+
+		assertTrue(slow.completed);
+		assertEquals(0, service.subscriberCount(electionId));
+		assertTrue(subscriberLists().isEmpty());
+
+		// the next window forgets its counts, and later votes are not kept
+		service.publish();
+		service.onVoteCounted(new VoteCountedEvent(electionId, candidateId));
+		assertTrue(((Map<?, ?>) ReflectionTestUtils.getField(service, "deltas")).isEmpty());
+	}
+}
@@ -0,0 +1,130 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.repository.BallotRepository;
+import com.quantum.voting.repository.CandidateRepository;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.context.ApplicationEventPublisher;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class VoteTallyServiceTests {
+
+	private final UUID electionId = UUID.randomUUID();
+	private final UUID candidateId = UUID.randomUUID();
+
+	// candidates.votes_count for the one candidate, and how many ballots exist for it
+	private final AtomicLong votesCount = new AtomicLong();
+	private final AtomicLong ballots = new AtomicLong();
+
+	private final CountDownLatch flushEntered = new CountDownLatch(1);
+	private final CountDownLatch releaseFlush = new CountDownLatch(1);
+	private final CountDownLatch reconciled = new CountDownLatch(1);
+
+	private JdbcTemplate jdbcTemplate;
+	private VoteTallyService tally;
+
+	@BeforeEach
+	void setUp() {
+		BallotRepository ballotRepository = mock(BallotRepository.class);
+		CandidateRepository candidateRepository = mock(CandidateRepository.class);
+		jdbcTemplate = mock(JdbcTemplate.class);
+
+		doAnswer(inv -> {
+			votesCount.set(ballots.get());
+			reconciled.countDown();
+			return 1;
+		}).when(candidateRepository).reconcileVotesFromBallots(any(UUID.class));
+		doAnswer(inv -> List.<Object[]>of(new Object[]{candidateId, ballots.get()}))
+				.when(ballotRepository).countByCandidate(any(UUID.class));
+
+		tally = new VoteTallyService(ballotRepository, candidateRepository, jdbcTemplate,
+				mock(ApplicationEventPublisher.class));
+	}
+
+	private void stallingBatchUpdate() {
+		doAnswer(inv -> {
+			flushEntered.countDown();
+			assertTrue(releaseFlush.await(5, TimeUnit.SECONDS));
+			List<Object[]> batch = inv.getArgument(1);
+			for (Object[] row : batch) votesCount.addAndGet((Long) row[0]);
+			return new int[batch.size()];
+		}).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+	}
+
+	private void vote(int n) {
+		for (int i = 0; i < n; i++) {
+			tally.record(electionId, candidateId);
+			ballots.incrementAndGet();
+		}
+	}
+
+	@Test
+	void reconcileWaitsForAFlushInFlight() throws Exception {
+		stallingBatchUpdate();
+		vote(3);
+
+		Thread flusher = new Thread(tally::flush);
+		flusher.start();
+		assertTrue(flushEntered.await(5, TimeUnit.SECONDS));
+
+		// the deltas have left pending but are not in the table yet
+		Thread closer = new Thread(() -> tally.reconcile(electionId, List.of(candidateId)));
+		closer.start();
+		assertFalse(reconciled.await(200, TimeUnit.MILLISECONDS), "recount ran before the flush landed");
+
+		releaseFlush.countDown();
+		flusher.join(5_000);
+		closer.join(5_000);
+
+		assertEquals(3, votesCount.get());
+	}
+
+	private void applyingBatchUpdate() {
+		doAnswer(inv -> {
+			List<Object[]> batch = inv.getArgument(1);
+			for (Object[] row : batch) votesCount.addAndGet((Long) row[0]);
+			return new int[batch.size()];
+		}).when(jdbcTemplate).batchUpdate(anyString(), anyList());
+	}
+
+	@Test
+	void reconcileDropsPendingDeltas() {
+		applyingBatchUpdate();
+		vote(2);
+
+		tally.reconcile(electionId, List.of(candidateId));
+		tally.flush();
+
+		assertEquals(2, votesCount.get());
+	}
+
+	@Test
+	void incrementArrivingAfterTheCloseRecountIsNotCountedTwice() {
+		applyingBatchUpdate();
+		vote(2);
+		// this ballot committed before the close, but its increment runs after the recount
+		ballots.incrementAndGet();
+
+		tally.reconcile(electionId, List.of(candidateId));
+		tally.record(electionId, candidateId);
+		tally.flush();
+
+		assertEquals(3, votesCount.get());
+		assertEquals(3, tally.count(candidateId));
+	}
+}
@@ -0,0 +1,163 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.journal.BallotJournal;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Random;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.Mockito.mock;
+
+class VotedSetServiceTests {
+
+	// a fresh UuidSet has 64 slots
+	private static final int MASK = 63;
+
+	private final Random random = new Random(15);
+
+	private static boolean add(VotedSetService.UuidSet set, UUID id) {
+		long m = id.getMostSignificantBits(), l = id.getLeastSignificantBits();
+		return set.add(m, l, VotedSetService.UuidSet.hash(m, l));
+	}
+
+	private static boolean contains(VotedSetService.UuidSet set, UUID id) {
+		long m = id.getMostSignificantBits(), l = id.getLeastSignificantBits();
+		return set.contains(m, l, VotedSetService.UuidSet.hash(m, l));
+	}
+
+	private static void remove(VotedSetService.UuidSet set, UUID id) {
+		long m = id.getMostSignificantBits(), l = id.getLeastSignificantBits();
+		set.remove(m, l, VotedSetService.UuidSet.hash(m, l));
+	}
+
+	private UUID withHome(int slot) {
+		while (true) {
+			UUID id = new UUID(random.nextLong(), random.nextLong());
+			long h = VotedSetService.UuidSet.hash(id.getMostSignificantBits(), id.getLeastSignificantBits());
+			if (((int) h & MASK) == slot) return id;
+		}
+	}
+
+	// one probe run that starts at the end of the table and wraps past slot 0
+	private List<UUID> wrappingRun() {
+		List<UUID> ids = new ArrayList<>();
+		for (int i = 0; i < 4; i++) ids.add(withHome(62));
+		for (int i = 0; i < 2; i++) ids.add(withHome(63));
+		for (int i = 0; i < 2; i++) ids.add(withHome(0));
+		ids.add(withHome(1));
+		ids.add(withHome(3));
+		return ids;
+	}
+
+	private static void assertHolds(VotedSetService.UuidSet set, List<UUID> all, Set<UUID> present) {
+		for (UUID id : all) assertEquals(present.contains(id), contains(set, id), id.toString());
+	}
+
+	@Test
+	void removingAnyEntryOfAWrappingRunKeepsTheRestReachable() {
+		List<UUID> run = wrappingRun();
+		for (UUID removed : run) {
+			VotedSetService.UuidSet set = new VotedSetService.UuidSet();
+			run.forEach(id -> assertTrue(add(set, id)));
+
+			remove(set, removed);
+			Set<UUID> present = new HashSet<>(run);
+			present.remove(removed);
+			assertHolds(set, run, present);
+			// the freed slot is usable again
+			assertTrue(add(set, removed));
+		}
+	}
+
+	@Test
+	void removingAWrappingRunInAnyOrderEmptiesIt() {
+		List<UUID> run = wrappingRun();
+		for (int round = 0; round < 50; round++) {
+			VotedSetService.UuidSet set = new VotedSetService.UuidSet();
+			run.forEach(id -> add(set, id));
+			List<UUID> order = new ArrayList<>(run);
+			Collections.shuffle(order, random);
+
+			Set<UUID> present = new HashSet<>(run);
+			for (UUID id : order) {
+				remove(set, id);
+				present.remove(id);
+				assertHolds(set, run, present);
+			}
+		}
+	}
+
+	@Test
+	void matchesHashSetAcrossResizes() {
+		List<UUID> pool = new ArrayList<>();
+		for (int i = 0; i < 5_000; i++) pool.add(new UUID(random.nextLong(), random.nextLong()));
+
+		VotedSetService.UuidSet set = new VotedSetService.UuidSet();
+		Set<UUID> reference = new HashSet<>();
+		for (int op = 0; op < 200_000; op++) {
+			UUID id = pool.get(random.nextInt(pool.size()));
+			// biased towards adds so the table grows well past its first size
+			if (random.nextInt(3) > 0) {
+				assertEquals(reference.add(id), add(set, id));
+			} else {
+				remove(set, id);
+				reference.remove(id);
+			}
+			if (op % 1000 == 0) assertHolds(set, pool, reference);
+		}
+		assertHolds(set, pool, reference);
+		assertTrue(reference.size() > 1000);
+	}
+
+	@Test
+	void zeroUuidIsTrackedApartFromTheTable() {
+		UUID zero = new UUID(0, 0);
+		VotedSetService.UuidSet set = new VotedSetService.UuidSet();
+		List<UUID> run = wrappingRun();
+		run.forEach(id -> add(set, id));
+
+		assertFalse(contains(set, zero));
+		assertTrue(add(set, zero));
+		assertFalse(add(set, zero));
+		assertTrue(contains(set, zero));
+
+		remove(set, zero);
+		assertFalse(contains(set, zero));
+		assertHolds(set, run, new HashSet<>(run));
+
+		// removing something absent leaves the flag alone
+		assertTrue(add(set, zero));
+		remove(set, new UUID(0, 1));
+		assertTrue(contains(set, zero));
+	}
+
+	@Test
+	void claimReleaseAndHasVoted() {
+		VotedSetService service = new VotedSetService(mock(JdbcTemplate.class), mock(BallotJournal.class));
+		UUID election = UUID.randomUUID();
+		UUID other = UUID.randomUUID();
+		UUID voter = UUID.randomUUID();
+
+		assertFalse(service.hasVoted(election, voter));
+		assertTrue(service.claim(election, voter));
+		assertFalse(service.claim(election, voter));
+		assertTrue(service.hasVoted(election, voter));
+		assertFalse(service.hasVoted(other, voter));
+
+		service.release(election, voter);
+		assertFalse(service.hasVoted(election, voter));
+		assertTrue(service.claim(election, voter));
+
+		service.forget(election);
+		assertFalse(service.hasVoted(election, voter));
+	}
+}
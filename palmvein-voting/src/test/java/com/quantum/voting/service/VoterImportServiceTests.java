@@ -0,0 +1,162 @@
+package com.quantum.voting.service;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.quantum.voting.entity.Voter;
+import com.quantum.voting.repository.VoterRepository;
+import jakarta.persistence.EntityManager;
+import jakarta.persistence.PersistenceException;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.StringReader;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyCollection;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+
+class VoterImportServiceTests {
+
+	// the voters table: voterCode -> row, written only by a flush that succeeds
+	private final Map<String, Voter> table = new LinkedHashMap<>();
+	// what the current transaction has persisted but not flushed
+	private final List<Voter> pending = new ArrayList<>();
+	private final List<Map<String, Object>> lines = new ArrayList<>();
+
+	private VoterImportService service;
+
+	@BeforeEach
+	void setUp() {
+		VoterRepository voterRepository = mock(VoterRepository.class);
+		EntityManager entityManager = mock(EntityManager.class);
+
+		doAnswer(inv -> {
+			Set<String> existing = new HashSet<>();
+			for (Object code : inv.<Collection<?>>getArgument(0)) {
+				if (table.containsKey(code)) existing.add((String) code);
+			}
+			return existing;
+		}).when(voterRepository).findExistingVoterCodes(anyCollection());
+		doAnswer(inv -> {
+			Voter voter = inv.getArgument(0);
+			if (voter.getVoterId() != null) throw new PersistenceException("detached entity passed to persist");
+			voter.setVoterId(UUID.randomUUID());
+			pending.add(voter);
+			return null;
+		}).when(entityManager).persist(any());
+		// mobile stands in for a column the database rejects
+		doAnswer(inv -> {
+			List<Voter> batch = new ArrayList<>(pending);
+			pending.clear();
+			for (Voter v : batch) {
+				if ("bad".equals(v.getMobile())) throw new PersistenceException("value too long for mobile");
+			}
+			batch.forEach(v -> table.put(v.getVoterCode(), v));
+			return null;
+		}).when(entityManager).flush();
+
+		service = new VoterImportService(voterRepository,
+				new TransactionTemplate(mock(PlatformTransactionManager.class)), new ObjectMapper());
+		ReflectionTestUtils.setField(service, "entityManager", entityManager);
+		ReflectionTestUtils.setField(service, "batchSize", 3);
+	}
+
+	private Map<String, Object> run(String body, VoterImportService.Format format) throws Exception {
+		return service.importVoters(new StringReader(body), format, lines::add);
+	}
+
+	private List<Map<String, Object>> errors() {
+		return lines.stream().filter(l -> "error".equals(l.get("type"))).toList();
+	}
+
+	@Test
+	void csvHonoursQuotesAndEscapedQuotes() throws Exception {
+		assertEquals(List.of("a", "b,c", "say \"hi\"", ""), VoterImportService.splitCsv("a,\"b,c\",\"say \"\"hi\"\"\","));
+
+		Map<String, Object> summary = run("""
+				voterCode,name,mobile,dob
+				V1,"Rao, Anil",98450,1990-04-01
+				V2,"Asha ""Ash"" K",,
+				""", VoterImportService.Format.CSV);
+
+		assertEquals(2L, summary.get("inserted"));
+		assertEquals("Rao, Anil", table.get("V1").getName());
+		assertEquals(LocalDateTime.of(1990, 4, 1, 0, 0), table.get("V1").getDob());
+		assertEquals("Asha \"Ash\" K", table.get("V2").getName());
+		assertNull(table.get("V2").getMobile());
+	}
+
+	@Test
+	void ndjsonRowsAndBadLinesAreReportedByLine() throws Exception {
+		Map<String, Object> summary = run("""
+				{"voterCode":"V1","name":"Anil","dob":"1990-04-01T08:30:00"}
+				{"voterCode":"V2"}
+				not json
+
+				{"voterCode":"V3","name":"Bina","mobile":"98450"}
+				""", VoterImportService.Format.NDJSON);
+
+		assertEquals(4L, summary.get("processed"));
+		assertEquals(2L, summary.get("inserted"));
+		assertEquals(2L, summary.get("errors"));
+		assertEquals(List.of(2L, 3L), errors().stream().map(e -> e.get("line")).toList());
+		assertEquals("name required", errors().get(0).get("message"));
+		assertEquals(LocalDateTime.of(1990, 4, 1, 8, 30), table.get("V1").getDob());
+	}
+
+	@Test
+	void duplicatesInTheFileAndInTheTableAreSkipped() throws Exception {
+		Voter enrolled = new Voter();
+		enrolled.setVoterCode("V2");
+		enrolled.setName("Already here");
+		table.put("V2", enrolled);
+
+		Map<String, Object> summary = run("""
+				voterCode,name
+				V1,Anil
+				V1,Anil again
+				V2,Bina
+				V3,Chitra
+				""", VoterImportService.Format.CSV);
+
+		assertEquals(4L, summary.get("processed"));
+		assertEquals(2L, summary.get("inserted"));
+		assertEquals(2L, summary.get("duplicates"));
+		assertEquals(0L, summary.get("errors"));
+		assertEquals("Anil", table.get("V1").getName());
+		assertEquals("Already here", table.get("V2").getName());
+	}
+
+	@Test
+	void rejectedChunkIsRetriedRowByRow() throws Exception {
+		// lines 2-4 are one chunk, line 5 the next
+		Map<String, Object> summary = run("""
+				voterCode,name,mobile
+				V1,Anil,98450
+				V2,Bina,bad
+				V3,Chitra,98451
+				V4,Dev,98452
+				""", VoterImportService.Format.CSV);
+
+		assertEquals(3L, summary.get("inserted"));
+		assertEquals(1L, summary.get("errors"));
+		assertEquals(Set.of("V1", "V3", "V4"), table.keySet());
+		assertEquals(1, errors().size());
+		assertEquals(3L, errors().get(0).get("line"));
+		assertEquals("value too long for mobile", errors().get(0).get("message"));
+	}
+}
@@ -0,0 +1,117 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.entity.Voter;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.Optional;
+import java.util.UUID;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class VoterLookupCacheTests {
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private final VoterLookupCache cache = new VoterLookupCache(registry, 2, 300);
+	private final AtomicInteger loads = new AtomicInteger();
+
+	private static Voter voter(String code, boolean hasVoted) {
+		Voter v = new Voter();
+		v.setVoterId(UUID.randomUUID());
+		v.setVoterCode(code);
+		v.setHasVoted(hasVoted);
+		return v;
+	}
+
+	private Function<String, Optional<Voter>> loader(boolean hasVoted) {
+		return code -> {
+			loads.incrementAndGet();
+			return Optional.of(voter(code, hasVoted));
+		};
+	}
+
+	// a load that waits until released, as a slow read of the row as it was before the vote
+	private CompletableFuture<Optional<Voter>> slowLoad(String code, CountDownLatch started, CountDownLatch release) {
+		return CompletableFuture.supplyAsync(() -> cache.get(code, c -> {
+			started.countDown();
+			try {
+				assertTrue(release.await(5, TimeUnit.SECONDS));
+			} catch (InterruptedException e) {
+				throw new IllegalStateException(e);
+			}
+			return Optional.of(voter(c, false));
+		}));
+	}
+
+	private double requests(String result) {
+		return registry.get("palmvein.voter.cache.requests").tag("result", result).functionCounter().count();
+	}
+
+	@Test
+	void hitsHandOutCopies() {
+		Voter first = cache.get("V1", loader(false)).orElseThrow();
+		Voter second = cache.get("V1", loader(false)).orElseThrow();
+		assertEquals(1, loads.get());
+		assertNotSame(first, second);
+		second.setHasVoted(true);
+		assertFalse(cache.get("V1", loader(false)).orElseThrow().isHasVoted());
+
+		assertEquals(2, requests("hit"));
+		assertEquals(1, requests("miss"));
+	}
+
+	@Test
+	void invalidatingTheKeyDropsALoadInFlight() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Optional<Voter>> stale = slowLoad("V1", started, release);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		cache.invalidate("V1");
+		release.countDown();
+		stale.get(5, TimeUnit.SECONDS);
+
+		assertTrue(cache.get("V1", loader(true)).orElseThrow().isHasVoted());
+		assertEquals(1, loads.get());
+	}
+
+	@Test
+	void invalidatingAnotherKeyKeepsALoadInFlight() throws Exception {
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		CompletableFuture<Optional<Voter>> load = slowLoad("V1", started, release);
+		assertTrue(started.await(5, TimeUnit.SECONDS));
+
+		cache.invalidate("V2");
+		release.countDown();
+		load.get(5, TimeUnit.SECONDS);
+
+		cache.get("V1", loader(true));
+		assertEquals(0, loads.get());
+		assertEquals(1, requests("hit"));
+	}
+
+	@Test
+	void missesAreNotCachedAndOverflowIsEvicted() {
+		assertTrue(cache.get("NOBODY", code -> Optional.empty()).isEmpty());
+		assertEquals(0, cache.stats().size());
+
+		cache.get("V1", loader(false));
+		cache.get("V2", loader(false));
+		cache.get("V3", loader(false));
+		assertEquals(2, cache.stats().size());
+		assertEquals(1, registry.get("palmvein.voter.cache.evictions").functionCounter().count());
+
+		// V1 was least recently used
+		cache.get("V1", loader(false));
+		assertEquals(4, loads.get());
+	}
+}
@@ -0,0 +1,150 @@
+package com.quantum.voting.service;
+
+import com.quantum.voting.DTO.BallotReceipt;
+import com.quantum.voting.entity.Voter;
+import com.quantum.voting.entity.VoterBiometrics;
+import com.quantum.voting.journal.BallotJournal;
+import com.quantum.voting.matching.DecryptedTemplateCache;
+import com.quantum.voting.matching.ScalarTemplateMatcher;
+import com.quantum.voting.repository.VoterBiometricsRepository;
+import com.quantum.voting.repository.VoterRepository;
+import com.quantum.voting.utils.AESUtil;
+import com.quantum.voting.utils.TemplateCodec;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.UUID;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+
+class VoterServiceTests {
+
+	private final Random random = new Random(2);
+	private final DecryptedTemplateCache cache = new DecryptedTemplateCache(16, 1 << 20, 60);
+	private final List<Collection<UUID>> batches = new ArrayList<>();
+	private final Map<UUID, VoterBiometrics> table = new HashMap<>();
+
+	private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+	private VoterBiometricsRepository biometrics;
+	private VvpatService vvpatService;
+	private VoteTallyService voteTallyService;
+	private AuditTreeService auditTreeService;
+	private ElectionCatalog electionCatalog;
+	private JdbcTemplate jdbcTemplate;
+	private VoterService service;
+
+	@BeforeEach
+	void setUp() {
+		biometrics = mock(VoterBiometricsRepository.class);
+		doAnswer(inv -> {
+			Collection<UUID> ids = inv.getArgument(0);
+			batches.add(List.copyOf(ids));
+			return ids.stream().filter(table::containsKey).map(table::get).toList();
+		}).when(biometrics).findAllById(any());
+
+		vvpatService = mock(VvpatService.class);
+		voteTallyService = mock(VoteTallyService.class);
+		auditTreeService = mock(AuditTreeService.class);
+		electionCatalog = mock(ElectionCatalog.class);
+		jdbcTemplate = mock(JdbcTemplate.class);
+		service = new VoterService(mock(VoterRepository.class), biometrics, new ScalarTemplateMatcher(), cache,
+				vvpatService, voteTallyService,
+				new VotedSetService(mock(JdbcTemplate.class), mock(BallotJournal.class)),
+				new VoterLookupCache(registry, 0, 0), electionCatalog,
+				jdbcTemplate, auditTreeService,
+				new HotPathMetrics(registry, true, false));
+	}
+
+	private byte[] template() {
+		byte[] t = new byte[512];
+		random.nextBytes(t);
+		return t;
+	}
+
+	private UUID enrol(byte[] left, byte[] right) throws Exception {
+		UUID voterId = UUID.randomUUID();
+		byte[] key = AESUtil.generateSessionKeyBytes();
+		table.put(voterId, new VoterBiometrics(voterId, TemplateCodec.encrypt(left, key),
+				TemplateCodec.encrypt(right, key), key));
+		return voterId;
+	}
+
+	@Test
+	void shortlistIsFetchedInOneQueryAndThenServedFromTheCache() throws Exception {
+		byte[] scan = template();
+		UUID match = enrol(template(), scan);
+		UUID other = enrol(template(), template());
+		UUID notEnrolled = UUID.randomUUID();
+		List<UUID> shortlist = List.of(other, match, notEnrolled);
+
+		Map<UUID, Double> scores = service.matchDecrypted(shortlist, scan);
+		assertEquals(1, batches.size());
+		assertEquals(3, batches.get(0).size());
+		assertEquals(1.0, scores.get(match), 1e-9);
+		assertTrue(scores.get(other) < 0.9);
+		assertEquals(0.0, scores.get(notEnrolled));
+
+		// a retry of the scan is served from the cache
+		assertEquals(scores, service.matchDecrypted(shortlist, scan));
+		assertEquals(1, batches.size());
+		verify(biometrics, never()).findById(any());
+	}
+
+	@Test
+	void unreadableTemplatesAreLeftOut() throws Exception {
+		byte[] scan = template();
+		UUID good = enrol(scan, template());
+		UUID broken = enrol(template(), template());
+		table.get(broken).setTemplateEncryptionKey(AESUtil.generateSessionKeyBytes());
+
+		Map<UUID, Double> scores = service.matchDecrypted(List.of(broken, good), scan);
+		assertFalse(scores.containsKey(broken));
+		assertEquals(1.0, scores.get(good), 1e-9);
+	}
+
+	@Test
+	void failuresAfterTheCommitDoNotFailTheVote() throws Exception {
+		UUID electionId = UUID.randomUUID();
+		UUID candidateId = UUID.randomUUID();
+		doReturn(new ElectionCatalog.ElectionEntry(electionId, "General", null, null, "ACTIVE",
+				List.of(new ElectionCatalog.CandidateEntry(candidateId, "A", "P", "C"))))
+				.when(electionCatalog).active(electionId);
+		doReturn(AESUtil.generateSessionKeyBytes()).when(biometrics).findKeyByVoterId(any());
+		doReturn(1).when(jdbcTemplate).update(anyString(), any(Object[].class));
+		doThrow(new IllegalStateException("journal full")).when(auditTreeService)
+				.record(any(), any(), any(), any(), any(), any());
+		doThrow(new IllegalStateException("queue full")).when(vvpatService).dispatch(any());
+
+		Voter voter = new Voter();
+		voter.setVoterId(UUID.randomUUID());
+		voter.setVoterCode("V1");
+		BallotReceipt receipt = service.castVote(voter, electionId, candidateId);
+
+		assertNotNull(receipt);
+		assertTrue(voter.isHasVoted());
+		// the steps after a failed one still ran
+		verify(voteTallyService).record(electionId, candidateId);
+		verify(vvpatService).dispatch(receipt.getBallotId());
+		assertEquals(2, registry.get("palmvein.events").tags("op", "vote", "event", "after-commit-failed").counter().count());
+		assertEquals(1, registry.get("palmvein.events").tags("op", "vote", "event", "cast").counter().count());
+	}
+}
@@ -0,0 +1,114 @@
+package com.quantum.voting.utils;
+
+import org.junit.jupiter.api.Test;
+
+import javax.crypto.AEADBadTagException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class AESUtilTests {
+
+	private final Random random = new Random(4);
+	private final byte[] key = AESUtil.generateSessionKeyBytes();
+
+	private byte[] bytes(int length) {
+		byte[] b = new byte[length];
+		random.nextBytes(b);
+		return b;
+	}
+
+	@Test
+	void roundTripsFromAndIntoTheMiddleOfArrays() throws Exception {
+		for (int length : new int[]{0, 1, 15, 16, 17, 4096}) {
+			byte[] source = bytes(length + 10);
+			byte[] out = bytes(AESUtil.encryptedLength(length) + 9);
+			byte[] before = out.clone();
+
+			int written = AESUtil.encryptGCM(source, 5, length, key, out, 7);
+			assertEquals(AESUtil.encryptedLength(length), written);
+			// nothing outside [7, 7 + written) is touched
+			assertArrayEquals(Arrays.copyOf(before, 7), Arrays.copyOf(out, 7));
+			assertArrayEquals(Arrays.copyOfRange(before, 7 + written, out.length),
+					Arrays.copyOfRange(out, 7 + written, out.length));
+
+			byte[] plain = AESUtil.decryptGCM(out, 7, written, key);
+			assertArrayEquals(Arrays.copyOfRange(source, 5, 5 + length), plain, "length " + length);
+			assertEquals(length, AESUtil.decryptedLength(written));
+		}
+	}
+
+	@Test
+	void base64FormRoundTrips() throws Exception {
+		byte[] plain = bytes(100);
+		assertArrayEquals(plain, AESUtil.decryptGCMBase64(AESUtil.encryptGCM(plain, key), key));
+	}
+
+	@Test
+	void anyFlippedBitIsRejected() throws Exception {
+		byte[] record = new byte[AESUtil.encryptedLength(64)];
+		AESUtil.encryptGCM(bytes(64), 0, 64, key, record, 0);
+
+		// nonce, first and last ciphertext byte, tag
+		for (int at : new int[]{0, 11, 12, 75, record.length - 1}) {
+			byte[] tampered = record.clone();
+			tampered[at] ^= 1;
+			assertThrows(AEADBadTagException.class, () -> AESUtil.decryptGCM(tampered, 0, tampered.length, key),
+					"byte " + at);
+		}
+		assertThrows(AEADBadTagException.class,
+				() -> AESUtil.decryptGCM(record, 0, record.length - 1, key));
+		assertThrows(IllegalArgumentException.class,
+				() -> AESUtil.decryptGCM(record, 0, AESUtil.encryptedLength(0) - 1, key));
+	}
+
+	@Test
+	void switchingKeysNeverDecryptsUnderTheOldOne() throws Exception {
+		byte[] other = AESUtil.generateSessionKeyBytes();
+		byte[] plain = bytes(32);
+		byte[] underKey = new byte[AESUtil.encryptedLength(32)];
+		byte[] underOther = new byte[AESUtil.encryptedLength(32)];
+
+		for (int round = 0; round < 3; round++) {
+			AESUtil.encryptGCM(plain, 0, 32, key, underKey, 0);
+			AESUtil.encryptGCM(plain, 0, 32, other, underOther, 0);
+			assertArrayEquals(plain, AESUtil.decryptGCM(underKey, 0, underKey.length, key));
+			assertArrayEquals(plain, AESUtil.decryptGCM(underOther, 0, underOther.length, other));
+			assertThrows(AEADBadTagException.class, () -> AESUtil.decryptGCM(underKey, 0, underKey.length, other));
+		}
+
+		// the caller's key array is copied, not kept: changing it afterwards changes nothing
+		byte[] mutable = key.clone();
+		AESUtil.encryptGCM(plain, 0, 32, mutable, underKey, 0);
+		Arrays.fill(mutable, (byte) 0);
+		assertArrayEquals(plain, AESUtil.decryptGCM(underKey, 0, underKey.length, key));
+	}
+
+	@Test
+	void manyVirtualThreadsShareThePool() throws Exception {
+		List<Future<?>> results = new ArrayList<>();
+		try (ExecutorService executor = Executors.newVirtualThreadPerTaskExecutor()) {
+			for (int t = 0; t < 500; t++) {
+				byte[] threadKey = AESUtil.generateSessionKeyBytes();
+				byte[] plain = bytes(256);
+				results.add(executor.submit(() -> {
+					byte[] record = new byte[AESUtil.encryptedLength(plain.length)];
+					for (int i = 0; i < 20; i++) {
+						AESUtil.encryptGCM(plain, 0, plain.length, threadKey, record, 0);
+						assertArrayEquals(plain, AESUtil.decryptGCM(record, 0, record.length, threadKey));
+					}
+					return null;
+				}));
+			}
+			for (Future<?> result : results) result.get();
+		}
+	}
+}
@@ -0,0 +1,157 @@
+package com.quantum.voting.utils;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.springframework.http.HttpHeaders;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.mock.web.MockHttpServletResponse;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class FileRegionResponseTests {
+
+	private static final String ETAG = "\"5eed-64\"";
+	private static final int OFFSET = 7;
+	private static final int LENGTH = 100;
+
+	@TempDir
+	Path dir;
+
+	private Path file;
+	private byte[] content;
+
+	@BeforeEach
+	void setUp() throws Exception {
+		content = new byte[LENGTH];
+		for (int i = 0; i < LENGTH; i++) content[i] = (byte) ('a' + i % 26);
+		// the region sits between other records, as in an archive segment
+		byte[] segment = new byte[OFFSET + LENGTH + 9];
+		Arrays.fill(segment, (byte) '#');
+		System.arraycopy(content, 0, segment, OFFSET, LENGTH);
+		file = dir.resolve("vvpat-000001.seg");
+		Files.write(file, segment);
+	}
+
+	private MockHttpServletResponse send(MockHttpServletRequest request) throws Exception {
+		MockHttpServletResponse response = new MockHttpServletResponse();
+		FileRegionResponse.send(request, response, file, OFFSET, LENGTH, ETAG, "application/pdf",
+				"inline; filename=\"receipt.pdf\"");
+		return response;
+	}
+
+	private static MockHttpServletRequest get(String... headers) {
+		MockHttpServletRequest request = new MockHttpServletRequest("GET", "/ballot/1/vvp");
+		for (int i = 0; i < headers.length; i += 2) request.addHeader(headers[i], headers[i + 1]);
+		return request;
+	}
+
+	private byte[] slice(int from, int to) {
+		return Arrays.copyOfRange(content, from, to);
+	}
+
+	@Test
+	void wholeRegionWithValidators() throws Exception {
+		MockHttpServletResponse response = send(get());
+		assertEquals(200, response.getStatus());
+		assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+		assertEquals("bytes", response.getHeader(HttpHeaders.ACCEPT_RANGES));
+		assertEquals(String.valueOf(LENGTH), response.getHeader(HttpHeaders.CONTENT_LENGTH));
+		assertEquals("application/pdf", response.getContentType());
+		assertArrayEquals(content, response.getContentAsByteArray());
+	}
+
+	@Test
+	void singleRangeIsPartialContent() throws Exception {
+		MockHttpServletResponse response = send(get(HttpHeaders.RANGE, "bytes=10-19"));
+		assertEquals(206, response.getStatus());
+		assertEquals("bytes 10-19/100", response.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertEquals("10", response.getHeader(HttpHeaders.CONTENT_LENGTH));
+		assertArrayEquals(slice(10, 20), response.getContentAsByteArray());
+	}
+
+	@Test
+	void openAndSuffixRanges() throws Exception {
+		MockHttpServletResponse open = send(get(HttpHeaders.RANGE, "bytes=95-"));
+		assertEquals(206, open.getStatus());
+		assertEquals("bytes 95-99/100", open.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(slice(95, 100), open.getContentAsByteArray());
+
+		MockHttpServletResponse suffix = send(get(HttpHeaders.RANGE, "bytes=-3"));
+		assertEquals(206, suffix.getStatus());
+		assertArrayEquals(slice(97, 100), suffix.getContentAsByteArray());
+
+		MockHttpServletResponse past = send(get(HttpHeaders.RANGE, "bytes=90-500"));
+		assertEquals("bytes 90-99/100", past.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(slice(90, 100), past.getContentAsByteArray());
+	}
+
+	@Test
+	void ifRangeHonoursOnlyTheCurrentEtag() throws Exception {
+		MockHttpServletResponse current = send(get(HttpHeaders.RANGE, "bytes=0-4", HttpHeaders.IF_RANGE, ETAG));
+		assertEquals(206, current.getStatus());
+		assertArrayEquals(slice(0, 5), current.getContentAsByteArray());
+
+		MockHttpServletResponse stale = send(get(HttpHeaders.RANGE, "bytes=0-4", HttpHeaders.IF_RANGE, "\"old\""));
+		assertEquals(200, stale.getStatus());
+		assertNull(stale.getHeader(HttpHeaders.CONTENT_RANGE));
+		assertArrayEquals(content, stale.getContentAsByteArray());
+	}
+
+	@Test
+	void unsatisfiableRangeIs416() throws Exception {
+		for (String range : new String[]{"bytes=100-", "bytes=500-600", "bytes=oops"}) {
+			MockHttpServletResponse response = send(get(HttpHeaders.RANGE, range));
+			assertEquals(416, response.getStatus(), range);
+			assertEquals("bytes */100", response.getHeader(HttpHeaders.CONTENT_RANGE), range);
+			assertEquals(0, response.getContentAsByteArray().length, range);
+		}
+	}
+
+	@Test
+	void severalRangesFallBackToTheWholeRegion() throws Exception {
+		MockHttpServletResponse response = send(get(HttpHeaders.RANGE, "bytes=0-1,5-6"));
+		assertEquals(200, response.getStatus());
+		assertArrayEquals(content, response.getContentAsByteArray());
+	}
+
+	@Test
+	void matchingIfNoneMatchIs304() throws Exception {
+		for (String tag : new String[]{ETAG, "\"other\", " + ETAG, "W/" + ETAG, "*"}) {
+			MockHttpServletResponse response = send(get(HttpHeaders.IF_NONE_MATCH, tag));
+			assertEquals(304, response.getStatus(), tag);
+			assertEquals(ETAG, response.getHeader(HttpHeaders.ETAG));
+			assertEquals(0, response.getContentAsByteArray().length, tag);
+		}
+		assertEquals(200, send(get(HttpHeaders.IF_NONE_MATCH, "\"other\"")).getStatus());
+	}
+
+	@Test
+	void headSendsHeadersOnly() throws Exception {
+		MockHttpServletRequest request = get(HttpHeaders.RANGE, "bytes=0-9");
+		request.setMethod("HEAD");
+		MockHttpServletResponse response = send(request);
+		assertEquals(206, response.getStatus());
+		assertEquals("10", response.getHeader(HttpHeaders.CONTENT_LENGTH));
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+
+	@Test
+	void sendfileGetsTheAbsoluteFileRegion() throws Exception {
+		MockHttpServletRequest request = get(HttpHeaders.RANGE, "bytes=10-19");
+		request.setAttribute("org.apache.tomcat.sendfile.support", Boolean.TRUE);
+		MockHttpServletResponse response = send(request);
+
+		assertEquals(206, response.getStatus());
+		assertEquals(file.toAbsolutePath().toString(), request.getAttribute("org.apache.tomcat.sendfile.filename"));
+		assertEquals((long) OFFSET + 10, request.getAttribute("org.apache.tomcat.sendfile.start"));
+		assertEquals((long) OFFSET + 20, request.getAttribute("org.apache.tomcat.sendfile.end"));
+		assertEquals(0, response.getContentAsByteArray().length);
+	}
+}
@@ -0,0 +1,96 @@
+package com.quantum.voting.utils;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.security.GeneralSecurityException;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class TemplateCodecTests {
+
+	private final byte[] key = AESUtil.generateSessionKeyBytes();
+
+	private static byte[] template(int length) {
+		byte[] plain = new byte[length];
+		new Random(length).nextBytes(plain);
+		return plain;
+	}
+
+	// what rows held before the binary format: the UTF-8 bytes of Base64(nonce || ciphertext)
+	private byte[] legacyRow(byte[] plain) throws Exception {
+		return AESUtil.encryptGCM(plain, key).getBytes(StandardCharsets.US_ASCII);
+	}
+
+	@Test
+	void encryptDecryptRoundTrips() throws Exception {
+		for (int length : new int[]{1, 16, 511, 4096}) {
+			byte[] plain = template(length);
+			byte[] record = TemplateCodec.encrypt(plain, key);
+			assertEquals(TemplateCodec.HEADER_LENGTH + AESUtil.encryptedLength(length), record.length);
+			assertFalse(TemplateCodec.isLegacy(record));
+			assertArrayEquals(plain, TemplateCodec.decrypt(record, key), "length " + length);
+		}
+	}
+
+	@Test
+	void nothingStoredDecryptsToNull() throws Exception {
+		assertNull(TemplateCodec.decrypt(null, key));
+		assertNull(TemplateCodec.decrypt(new byte[0], key));
+	}
+
+	@Test
+	void legacyRowsAreDetectedReadAndReframed() throws Exception {
+		byte[] plain = template(600);
+		byte[] legacy = legacyRow(plain);
+		assertTrue(TemplateCodec.isLegacy(legacy));
+		assertArrayEquals(plain, TemplateCodec.decrypt(legacy, key));
+
+		byte[] framed = TemplateCodec.fromLegacy(legacy);
+		assertFalse(TemplateCodec.isLegacy(framed));
+		assertEquals(TemplateCodec.HEADER_LENGTH + AESUtil.encryptedLength(plain.length), framed.length);
+		assertArrayEquals(plain, TemplateCodec.decrypt(framed, key));
+	}
+
+	@Test
+	void fromLegacyLeavesOtherRowsAlone() throws Exception {
+		byte[] record = TemplateCodec.encrypt(template(32), key);
+		assertSame(record, TemplateCodec.fromLegacy(record));
+		assertNull(TemplateCodec.fromLegacy(null));
+		assertFalse(TemplateCodec.isLegacy(null));
+		assertFalse(TemplateCodec.isLegacy(new byte[0]));
+	}
+
+	@Test
+	void badMagicOrVersionIsRejected() throws Exception {
+		byte[] record = TemplateCodec.encrypt(template(64), key);
+
+		byte[] badMagic = record.clone();
+		badMagic[1] ^= 1;
+		assertThrows(IllegalArgumentException.class, () -> TemplateCodec.decrypt(badMagic, key));
+
+		byte[] badVersion = record.clone();
+		badVersion[2] = 9;
+		assertThrows(IllegalArgumentException.class, () -> TemplateCodec.decrypt(badVersion, key));
+
+		byte[] truncated = {record[0], record[1]};
+		assertThrows(IllegalArgumentException.class, () -> TemplateCodec.decrypt(truncated, key));
+	}
+
+	@Test
+	void tamperedCiphertextOrWrongKeyFails() throws Exception {
+		byte[] record = TemplateCodec.encrypt(template(64), key);
+		byte[] tampered = record.clone();
+		tampered[tampered.length - 1] ^= 1;
+		assertThrows(GeneralSecurityException.class, () -> TemplateCodec.decrypt(tampered, key));
+		assertThrows(GeneralSecurityException.class,
+				() -> TemplateCodec.decrypt(record, AESUtil.generateSessionKeyBytes()));
+	}
+}